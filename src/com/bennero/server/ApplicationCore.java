@@ -24,43 +24,74 @@
 package com.bennero.server;
 
 import com.bennero.common.PageData;
-import com.bennero.common.Sensor;
-import com.bennero.common.TransitionType;
 import com.bennero.common.logging.LogLevel;
 import com.bennero.common.logging.Logger;
 import com.bennero.common.messages.FileDataPositions;
+import com.bennero.common.messages.MessageType;
 import com.bennero.common.networking.AddressInformation;
 import com.bennero.common.networking.DiscoveredNetworkList;
 import com.bennero.common.networking.NetworkUtils;
 import com.bennero.common.osspecific.OSUtils;
+import com.bennero.server.alert.AlertAction;
+import com.bennero.server.alert.AlertEngine;
+import com.bennero.server.benchmark.PageSoakTest;
+import com.bennero.server.benchmark.RenderBenchmark;
+import com.bennero.server.data.DeadbandFilter;
+import com.bennero.server.data.SensorDescriptor;
+import com.bennero.server.data.SensorHistory;
+import com.bennero.server.data.SensorRollups;
+import com.bennero.server.data.SensorValueStore;
+import com.bennero.server.derived.DerivedSensors;
 import com.bennero.server.event.*;
+import com.bennero.server.history.HistoryLog;
+import com.bennero.server.image.BackgroundImageCache;
+import com.bennero.server.metrics.IngestMetrics;
 import com.bennero.server.network.Server;
 import com.bennero.server.pages.*;
+import com.bennero.server.quality.IdleMonitor;
+import com.bennero.server.quality.QualityGovernor;
 import com.bennero.server.serial.SerialListener;
 import com.bennero.server.ui.DisconnectButton;
+import com.bennero.server.ui.MainPaneManager;
+import com.bennero.server.ui.PerformanceHud;
 import javafx.animation.Animation;
-import javafx.animation.Transition;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
 import javafx.event.Event;
 import javafx.event.EventHandler;
-import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
+import javafx.scene.input.InputEvent;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
+import javafx.stage.Screen;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Application class that controls all of the hardware monitor subsystems
@@ -73,27 +104,78 @@ public class ApplicationCore extends Application {
     enum CommunicationMode {
         Serial,
         Network,
+        Benchmark,
+        Soak,
     }
 
     public static final int WINDOW_WIDTH_PX = 800;
     public static final int WINDOW_HEIGHT_PX = 480;
+    private static final long BACKGROUND_IMAGE_CACHE_BUDGET_BYTES = 32L * 1024L * 1024L;
+    private static final double DEFAULT_QUALITY_BUDGET_MS = 8.0;
+    private static final double MIN_RENDER_SCALE = 0.25;
+    private static final long DEFAULT_PREWARM_LEAD_MS = 1000;
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 30000;
+    private static final int DEFAULT_HISTORY_CAPACITY = 36000;
+    private static final long DEFAULT_ROLLUP_PERIOD_HOURS = 24;
+    private static final int HISTORY_SEGMENT_BYTES = 4 * 1024 * 1024;
+    private static final int HISTORY_MAX_SEGMENTS = 16;
+    private static final long HISTORY_FLUSH_INTERVAL_MS = 5000;
+    private static final float ALERT_HYSTERESIS = 0.02f;
+    private static final long DEFAULT_ALERT_DURATION_MS = 3000;
+    private static final Duration ALERT_FLASH_INTERVAL = Duration.millis(500);
     private static final String CLASS_NAME = ApplicationCore.class.getSimpleName();
-    private HashMap<Byte, Sensor> sensorMap = new HashMap<>();
+    private SensorValueStore sensorValueStore = new SensorValueStore();
+    private DeadbandFilter deadbandFilter;
+    private SensorHistory sensorHistory;
+    private SensorRollups sensorRollups;
+    private CellOverlays cellOverlays;
+    private HistoryLog historyLog;
+    private AlertEngine alertEngine;
+    private DerivedSensors derivedSensors;
+
+    // Sensor values are recorded by the thread that receives sensor updates, and the values of derived sensors by the
+    // JavaFX application thread. The history, alerts, rollups and history log each expect one writer at a time, so
+    // every write to them is made while holding this lock.
+    private final Object recordLock = new Object();
+    private AlertAction alertAction = AlertAction.FLASH;
+    private final Set<Byte> firingAlerts = new LinkedHashSet<>();
+    private Timeline alertFlasher;
+    private boolean alertFlashVisible;
+    private QualityGovernor qualityGovernor = new QualityGovernor(DEFAULT_QUALITY_BUDGET_MS);
+    private LayoutTransaction layoutTransaction = new LayoutTransaction();
+    private IngestMetrics ingestMetrics = new IngestMetrics();
     private StackPane mainPane;
 
     private Thread serverThread;
-    private Thread pageRollerThread;
     private Server server;
     private PageRoller pageRoller;
+    private PageOutput pageOutput;
+
+    // Page rollers of the additional screens, by the IDs of the pages that they show. Pages that are not assigned to
+    // an additional screen are shown on the primary screen.
+    private final Map<Byte, PageRoller> screenPageRollers = new HashMap<>();
+    private final List<PageRoller> screenRollers = new ArrayList<>();
+    private final List<PageOutput> screenOutputs = new ArrayList<>();
+
+    // Next page ID of every page whichever screen shows it, so that each screen follows the rotation set in the editor
+    // across the pages of the other screens
+    private final Map<Byte, Byte> nextPageIds = new HashMap<>();
     private CommunicationMode connectionMode;
+    private BackgroundImageCache backgroundImageCache;
+    private boolean snapshotTransitions;
+    private SensorRenderMode sensorRenderMode = SensorRenderMode.CONTROL;
+    private long prewarmLeadMs = DEFAULT_PREWARM_LEAD_MS;
+
+    private MainPaneManager mainPaneManager;
+    private PerformanceHud performanceHud;
 
-    private DisconnectButton disconnectButton;
+    private IdleMonitor idleMonitor;
+    private boolean displayPowered = true;
 
     private void displayNetworkConnectionEntryPage(final String networkDevice,
                                                    final String networkSsid,
                                                    final String previousConnectionError) {
-        mainPane.getChildren().clear();
-        mainPane.getChildren().add(new NetworkConnectionEntryPage(networkDevice, networkSsid, previousConnectionError,
+        mainPaneManager.setContent(new NetworkConnectionEntryPage(networkDevice, networkSsid, previousConnectionError,
                 event -> // Back button selected event
                 {
                     displayNetworkSelectionPage();
@@ -115,8 +197,7 @@ public class ApplicationCore extends Application {
 
     private void displayNetworkConnectionEntryPage(final String networkDevice,
                                                    final String networkSsid) {
-        mainPane.getChildren().clear();
-        mainPane.getChildren().add(new NetworkConnectionEntryPage(networkDevice, networkSsid,
+        mainPaneManager.setContent(new NetworkConnectionEntryPage(networkDevice, networkSsid,
                 event -> // Back button selected event
                 {
                     displayNetworkSelectionPage();
@@ -137,13 +218,11 @@ public class ApplicationCore extends Application {
     }
 
     private void displayDiscoveringNetworksPage() {
-        mainPane.getChildren().clear();
-        mainPane.getChildren().add(new InformationPage("Discovering Networks"));
+        mainPaneManager.setContent(new InformationPage("Discovering Networks"));
     }
 
     private void displayNetworkErrorPage(String infoString) {
-        mainPane.getChildren().clear();
-        mainPane.getChildren().add(new InformationButtonPage("Error Discovering Networks", infoString,
+        mainPaneManager.setContent(new InformationButtonPage("Error Discovering Networks", infoString,
                 false, "Back", event ->
         {
             if (!NetworkUtils.isConnected()) {
@@ -173,8 +252,7 @@ public class ApplicationCore extends Application {
                         if (discoveredNetworks.hasErrorOccurred()) {
                             displayNetworkErrorPage(discoveredNetworks.getErrorMessage());
                         } else {
-                            mainPane.getChildren().clear();
-                            mainPane.getChildren().add(new NetworkSelectionPane(discoveredNetworks, networkConnectionEntryEvent ->
+                            mainPaneManager.setContent(new NetworkSelectionPane(discoveredNetworks, networkConnectionEntryEvent ->
                             {
                                 // User has selected an SSID on the network list page, so display the network connection entry page
                                 displayNetworkConnectionEntryPage(networkConnectionEntryEvent.getNetworkDevice(),
@@ -199,8 +277,6 @@ public class ApplicationCore extends Application {
     }
 
     public void displayConnectedPage() {
-        mainPane.getChildren().clear();
-
         StackPane waitingPage = new StackPane();
         waitingPage.setId("standard-pane");
         VBox slide = new VBox();
@@ -218,93 +294,44 @@ public class ApplicationCore extends Application {
         StackPane.setAlignment(slide, Pos.CENTER);
         waitingPage.getChildren().add(slide);
 
-        mainPane.getChildren().add(waitingPage);
-
         // Change network button in the top left corner that should disappear with a few seconds of no mouse movement
-        disconnectButton = new DisconnectButton(actionEvent -> onNetDisconnect());
-        disconnectButton.setVisible(false);
-        mainPane.getChildren().add(disconnectButton);
-        StackPane.setMargin(disconnectButton, new Insets(5, 5, 5, 5));
-        StackPane.setAlignment(disconnectButton, Pos.TOP_LEFT);
+        mainPaneManager.setContent(waitingPage, true);
     }
 
     public void displayConnectingPage(String ssid) {
-        mainPane.getChildren().clear();
         InformationPage informationPage = new InformationPage("Connecting", ssid);
-        mainPane.getChildren().add(informationPage);
+        mainPaneManager.setContent(informationPage);
     }
 
     public void displayWaitingForConnectionPage() {
-        mainPane.getChildren().clear();
         try {
             if (NetworkUtils.isNetworkChangeSupported()) {
                 InformationButtonPage informationPage = new InformationButtonPage("Waiting on Connection",
                         "My Hostname: " + InetAddress.getLocalHost().getHostName(), "Change Network",
                         (EventHandler<Event>) event -> displayNetworkSelectionPage());
-                mainPane.getChildren().add(informationPage);
+                mainPaneManager.setContent(informationPage);
             } else {
                 Logger.log(LogLevel.DEBUG, CLASS_NAME,
                         "Network change option not available on this device");
                 InformationPage informationPage = new InformationPage("Waiting on Connection",
                         "My Hostname: " + InetAddress.getLocalHost().getHostName());
-                mainPane.getChildren().add(informationPage);
+                mainPaneManager.setContent(informationPage);
             }
         } catch (UnknownHostException e) {
             Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to determine hostname of this device");
             Logger.log(LogLevel.DEBUG, CLASS_NAME, e.getMessage());
 
             InformationPage informationPage = new InformationPage("Failed to determine hostname");
-            mainPane.getChildren().add(informationPage);
-        }
-    }
-
-    public void displayPage(CustomisableSensorPage customisableSensorPage, CustomisableSensorPage currentCustomisableSensorPage) {
-        Logger.log(LogLevel.DEBUG, CLASS_NAME, "Display Page: " + customisableSensorPage.getTitle());
-
-        // If we are trying to add a page before its evening finished transitioning away from itself, remove it and
-        // re-add it. It may cause no page to show but this is a fault in the way the user has configured it
-        if (mainPane.getChildren().contains(customisableSensorPage)) {
-            if (customisableSensorPage.getTransitionControl() != null &&
-                    customisableSensorPage.getTransitionControl().getStatus() == Animation.Status.RUNNING) {
-                customisableSensorPage.setTransitionControl(null);
-                customisableSensorPage.getTransitionControl().stop();
-            }
-        } else {
-            mainPane.getChildren().add(customisableSensorPage);
-        }
-
-        // Change network button in the top left corner that should disappear with a few seconds of no mouse movement
-        disconnectButton = new DisconnectButton(actionEvent -> onNetDisconnect());
-        disconnectButton.setVisible(false);
-        mainPane.getChildren().add(disconnectButton);
-        StackPane.setMargin(disconnectButton, new Insets(5, 5, 5, 5));
-        StackPane.setAlignment(disconnectButton, Pos.TOP_LEFT);
-
-        if (currentCustomisableSensorPage != null) {
-            if (customisableSensorPage.getTransitionType() == TransitionType.CUT) {
-                mainPane.getChildren().remove(currentCustomisableSensorPage);
-            } else {
-                Transition transition = TransitionType.getTransition(customisableSensorPage.getTransitionType(), customisableSensorPage.getTransitionTime(),
-                        mainPane, customisableSensorPage);
-                customisableSensorPage.setTransitionControl(transition);
-                transition.setOnFinished(actionEvent1 ->
-                {
-                    if (!mainPane.getChildren().isEmpty()) {
-                        mainPane.getChildren().remove(currentCustomisableSensorPage);
-                    }
-                });
-                transition.play();
-            }
+            mainPaneManager.setContent(informationPage);
         }
     }
 
-    public void removePage(CustomisableSensorPage customisableSensorPage) {
-        mainPane.getChildren().remove(customisableSensorPage);
-    }
-
     @Override
     public void stop() throws Exception {
         super.stop();
+        if (historyLog != null) {
+            historyLog.close();
+        }
 
         System.exit(0);
     }
@@ -318,9 +345,9 @@ public class ApplicationCore extends Application {
             return;
         }
 
+        layoutTransaction.discard();
         Platform.runLater(() -> {
-            pageRoller.removeAllPages();
-            sensorMap.clear();
+            removeAllPages();
 
             String text = disconnectionEvent.isExpected() ? null : "Last session disconnected: " + disconnectionEvent.getReason();
             displaySerialAwaitingConnectionPage(text);
@@ -332,9 +359,9 @@ public class ApplicationCore extends Application {
             return;
         }
 
+        layoutTransaction.discard();
         Platform.runLater(() -> {
-            pageRoller.removeAllPages();
-            sensorMap.clear();
+            removeAllPages();
 
             try {
                 server.disconnectActiveConnection();
@@ -349,57 +376,356 @@ public class ApplicationCore extends Application {
     private void processPageMessageEvent(PageSetupEvent pageMessageEvent) {
         PageData pdRcv = pageMessageEvent.getPageData();
         Logger.logf(LogLevel.DEBUG, CLASS_NAME, "Received new page: [ID: %d], [TITLE: %s]", pdRcv.getUniqueId(), pdRcv.getTitle());
+        ingestMetrics.recordMessage(MessageType.PAGE_CREATE);
 
-        Platform.runLater(() -> {
-            if (!pageRoller.exists(pdRcv.getUniqueId())) {
-                CustomisableSensorPage pgRcv = new CustomisableSensorPage(pdRcv);
-                pageRoller.addPage(pgRcv);
+        runLayoutChange(() -> {
+            PageRoller roller = getPageRoller(pdRcv.getUniqueId());
+            nextPageIds.put(pdRcv.getUniqueId(), pdRcv.getNextPageId());
+            if (!roller.exists(pdRcv.getUniqueId())) {
+                roller.addPage(pdRcv);
             } else {
-                pageRoller.updatePage(pdRcv);
+                roller.updatePage(pdRcv);
             }
+            onPageLinksChanged();
         });
     }
 
     private void processSensorMessageEvent(SensorSetupEvent sensorMessageEvent) {
-        Sensor sensor = sensorMessageEvent.getSensor();
+        SensorDescriptor sensor = sensorMessageEvent.getSensorDescriptor();
         Logger.logf(LogLevel.DEBUG, CLASS_NAME, "Received new sensor: [ID: %d], [TITLE: %s]", sensor.getUniqueId(), sensor.getTitle());
+        ingestMetrics.recordMessage(MessageType.SENSOR_CREATE);
+        sensorValueStore.update(sensor.getUniqueId(), sensorMessageEvent.getInitialValue());
+        if (alertEngine != null) {
+            synchronized (recordLock) {
+                alertEngine.configure(sensor);
+            }
+        }
 
-        Platform.runLater(() ->
-        {
-            sensorMap.put(sensor.getUniqueId(), sensor);
-            pageRoller.addSensor(sensorMessageEvent.getPageId(), sensor);
+        runLayoutChange(() -> {
+            getPageRoller(sensorMessageEvent.getPageId()).addSensor(sensorMessageEvent.getPageId(), sensor);
+
+            // The initial value from the editor replaced the value of a derived sensor, which is given back on the
+            // next pulse
+            if (derivedSensors != null && derivedSensors.republish(sensor.getUniqueId())) {
+                Platform.requestNextPulse();
+            }
         });
     }
 
     private void processRemovePageEvent(RemovePageEvent removePageEvent) {
         Logger.logf(LogLevel.DEBUG, CLASS_NAME, "Received request to remove page: [ID: %d]", removePageEvent.getPageId());
-        Platform.runLater(() ->
-        {
-            pageRoller.removePage(removePageEvent.getPageId());
+        ingestMetrics.recordMessage(MessageType.PAGE_REMOVE);
+        runLayoutChange(() -> {
+            nextPageIds.remove(removePageEvent.getPageId());
+            getPageRoller(removePageEvent.getPageId()).removePage(removePageEvent.getPageId());
+            onPageLinksChanged();
         });
     }
 
     private void processSensorTransformationEvent(SensorTransformationEvent event) {
         Logger.logf(LogLevel.DEBUG, CLASS_NAME, "Received sensor transformation request: [ID: %d], [PAGE: %d]", event.getSensorId(), event.getPageId());
-        Platform.runLater(() -> pageRoller.transformSensor(event.getSensorId(), event.getPageId(), event.getRow(),
+        ingestMetrics.recordMessage(MessageType.SENSOR_TRANSFORM);
+        runLayoutChange(() -> getPageRoller(event.getPageId()).transformSensor(event.getSensorId(), event.getPageId(), event.getRow(),
                 event.getColumn(), event.getRowSpan(), event.getColumnSpan()));
     }
 
     private void processSensorDataEvent(SensorDataEvent sensorDataEvent) {
-        Platform.runLater(() ->
-        {
-            byte key = sensorDataEvent.getSensorId();
-            if(sensorMap.containsKey(key)) {
-                sensorMap.get(key).setValue(sensorDataEvent.getValue());
+        final byte key = sensorDataEvent.getSensorId();
+        final float value = sensorDataEvent.getValue();
+
+        ingestMetrics.recordMessage(MessageType.SENSOR_UPDATE);
+        if (derivedSensors != null && derivedSensors.isDerived(key)) {
+            // The value of a derived sensor only comes from its expression
+            ingestMetrics.recordFilteredUpdate();
+            return;
+        }
+
+        recordSensorValue(key, value);
+
+        // Sensors that are not on screen only have their value stored, it is applied when their page is shown. Updates
+        // to sensors on screen are only passed on if the render quality allows another update of the sensor and they
+        // change a digit or pixel of the sensor
+        final boolean live = sensorValueStore.update(key, value);
+        if (derivedSensors != null && derivedSensors.inputChanged(key)) {
+            // Derived sensors that read this sensor are evaluated on the next pulse
+            Platform.requestNextPulse();
+        }
+
+        if (live) {
+            if (!qualityGovernor.isUpdateDue(key)) {
+                // Shown at the end of the update interval, unless a later update is shown first
+                qualityGovernor.deferUpdate(key, () -> flushSensorValue(key));
+                ingestMetrics.recordFilteredUpdate();
+            } else if (deadbandFilter.filter(key, value)) {
+                postSensorValue(key, value);
+            } else {
+                ingestMetrics.recordFilteredUpdate();
+            }
+        } else {
+            ingestMetrics.recordConflatedUpdate();
+        }
+    }
+
+    // Record a sensor value in the history, alerts, rollups and history log, whichever are enabled
+    private void recordSensorValue(byte key, float value) {
+        final long timeNs = System.nanoTime();
+        final long timeMs = System.currentTimeMillis();
+        synchronized (recordLock) {
+            if (sensorHistory != null) {
+                sensorHistory.record(key, timeNs, value);
+            }
+
+            if (alertEngine != null) {
+                alertEngine.evaluate(key, timeMs, value);
+            }
+
+            if (sensorRollups != null) {
+                sensorRollups.record(key, timeMs, value);
+            }
+
+            if (historyLog != null) {
+                historyLog.append(key, timeMs, value);
+            }
+        }
+    }
+
+    // Show the latest stored value of a sensor whose update was deferred by the quality governor. Called on the
+    // governor's scheduler thread, so the value is read when it is applied on the JavaFX application thread rather
+    // than now: an update received in between is then never overwritten by an older value. The deadband filter is only
+    // used by the thread that receives sensor updates, it is reset instead as the sensor was given a value around it.
+    private void flushSensorValue(byte key) {
+        if (!sensorValueStore.isLive(key)) {
+            return;
+        }
+
+        qualityGovernor.recordUpdate(key);
+        if (idleMonitor != null) {
+            idleMonitor.recordActivity();
+        }
+
+        ingestMetrics.runLater(() -> {
+            if (sensorValueStore.isLive(key)) {
+                deadbandFilter.reset(key);
+                if (!setSensorValue(key, sensorValueStore.get(key))) {
+                    ingestMetrics.recordDroppedUpdate();
+                }
+            }
+        });
+    }
+
+    private void postSensorValue(byte key, float value) {
+        qualityGovernor.recordUpdate(key);
+        if (idleMonitor != null) {
+            idleMonitor.recordActivity();
+        }
+
+        ingestMetrics.runLater(() -> {
+            if (!setSensorValue(key, value)) {
+                ingestMetrics.recordDroppedUpdate();
             }
         });
     }
 
     private void processRemoveSensorEvent(RemoveSensorEvent removeSensorEvent) {
         Logger.logf(LogLevel.DEBUG, CLASS_NAME, "Received remove sensor request: [ID: %d], [PAGE: %d]", removeSensorEvent.getSensorId(), removeSensorEvent.getPageId());
+        ingestMetrics.recordMessage(MessageType.SENSOR_REMOVE);
+
+        if (alertEngine != null) {
+            synchronized (recordLock) {
+                alertEngine.remove(removeSensorEvent.getSensorId());
+            }
+        }
+
+        runLayoutChange(() -> {
+            getPageRoller(removeSensorEvent.getPageId()).removeSensor(removeSensorEvent.getSensorId(),
+                    removeSensorEvent.getPageId());
+            if (alertEngine != null) {
+                stopAlert(removeSensorEvent.getSensorId());
+            }
+        });
+    }
+
+    private void processLayoutTransactionEvent(LayoutTransactionEvent event) {
+        ingestMetrics.recordMessage(event.isBegin() ? LayoutTransactionEvent.LAYOUT_BEGIN :
+                LayoutTransactionEvent.LAYOUT_COMMIT);
+        if (event.isBegin()) {
+            Logger.log(LogLevel.DEBUG, CLASS_NAME, "Received layout transaction begin");
+            layoutTransaction.begin();
+        } else {
+            List<Runnable> changes = layoutTransaction.commit();
+            if (changes != null) {
+                Logger.logf(LogLevel.DEBUG, CLASS_NAME, "Received layout transaction commit: [CHANGES: %d]", changes.size());
+                ingestMetrics.runLater(() -> applyLayoutChanges(changes));
+            }
+        }
+    }
 
-        Platform.runLater(() -> pageRoller.removeSensor(removeSensorEvent.getSensorId(),
-                removeSensorEvent.getPageId()));
+    // Page roller of the screen that shows a page
+    private PageRoller getPageRoller(byte pageId) {
+        PageRoller screenPageRoller = screenPageRollers.get(pageId);
+        return screenPageRoller != null ? screenPageRoller : pageRoller;
+    }
+
+    private boolean setSensorValue(byte sensorId, float value) {
+        if (pageRoller.setSensorValue(sensorId, value)) {
+            return true;
+        }
+
+        for (PageRoller screenRoller : screenRollers) {
+            if (screenRoller.setSensorValue(sensorId, value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void removeAllPages() {
+        nextPageIds.clear();
+        pageRoller.removeAllPages();
+        for (PageRoller screenRoller : screenRollers) {
+            screenRoller.removeAllPages();
+        }
+
+        for (PageOutput screenOutput : screenOutputs) {
+            screenOutput.displayNoPages();
+        }
+
+        // The stored sensor values have been cleared, so derived sensors wait for their inputs to be received again
+        if (derivedSensors != null) {
+            derivedSensors.clear();
+        }
+
+        if (alertEngine != null) {
+            alertEngine.clear();
+            firingAlerts.clear();
+            updateAlerts();
+        }
+    }
+
+    // Only sensors whose minimum or maximum changed are painted again. The display is woken if any were, as while
+    // rendering is suspended the still image of the display would keep showing the old readouts.
+    private void repaintCellOverlays() {
+        boolean repainted = false;
+        for (PageRoller roller : getPageRollers()) {
+            if (roller != null) {
+                repainted |= roller.repaintCellOverlays();
+            }
+        }
+
+        if (repainted) {
+            wakeDisplay();
+        }
+    }
+
+    // A page change on one screen can change the page that another screen rotates to next
+    private void onPageLinksChanged() {
+        for (PageRoller roller : getPageRollers()) {
+            roller.onPageLinksChanged();
+        }
+    }
+
+    private List<PageRoller> getPageRollers() {
+        List<PageRoller> pageRollers = new ArrayList<>(screenRollers);
+        pageRollers.add(0, pageRoller);
+        return pageRollers;
+    }
+
+    private void onAlertChanged(AlertEvent alertEvent) {
+        final byte sensorId = alertEvent.getSensorId();
+        Logger.logf(alertEvent.isFiring() ? LogLevel.WARNING : LogLevel.INFO, CLASS_NAME,
+                "Alert %s: [SENSOR: %d], [VALUE: %.2f], [THRESHOLD: %.2f]", alertEvent.isFiring() ? "firing" :
+                        "stopped", sensorId, alertEvent.getValue(), alertEvent.getThreshold());
+
+        if (!alertEvent.isFiring()) {
+            stopAlert(sensorId);
+            return;
+        }
+
+        firingAlerts.add(sensorId);
+        if (alertAction != AlertAction.FLASH) {
+            for (PageRoller roller : getPageRollers()) {
+                if (roller.showSensorPage(sensorId)) {
+                    break;
+                }
+            }
+        }
+        updateAlerts();
+    }
+
+    private void stopAlert(byte sensorId) {
+        if (firingAlerts.remove(sensorId)) {
+            for (PageRoller roller : getPageRollers()) {
+                roller.setAlertFlash(sensorId, false);
+            }
+            updateAlerts();
+        }
+    }
+
+    // Flash the cells of the sensors with firing alerts, and with the override action, hold the pages of the screens
+    // that have a firing alert
+    private void updateAlerts() {
+        if (alertAction == AlertAction.OVERRIDE) {
+            for (PageRoller roller : getPageRollers()) {
+                boolean held = false;
+                for (byte sensorId : firingAlerts) {
+                    held |= roller.containsSensor(sensorId);
+                }
+                roller.setHeld(held);
+            }
+        }
+
+        if (firingAlerts.isEmpty()) {
+            alertFlasher.stop();
+        } else if (alertFlasher.getStatus() != Animation.Status.RUNNING) {
+            alertFlasher.play();
+        }
+    }
+
+    private void flashAlerts() {
+        alertFlashVisible = !alertFlashVisible;
+        for (PageRoller roller : getPageRollers()) {
+            for (byte sensorId : firingAlerts) {
+                roller.setAlertFlash(sensorId, alertFlashVisible);
+            }
+        }
+
+        // Keep rendering whilst the alerts flash
+        wakeDisplay();
+    }
+
+    /**
+     * Apply a batch of layout changes, rebuilding each page that they affect once on every screen after all of the
+     * changes are applied
+     *
+     * @param changes Layout changes, in the order that they were received
+     */
+    private void applyLayoutChanges(List<Runnable> changes) {
+        pageRoller.suspendPageUpdates();
+        for (PageRoller screenRoller : screenRollers) {
+            screenRoller.suspendPageUpdates();
+        }
+
+        for (Runnable change : changes) {
+            change.run();
+        }
+
+        pageRoller.rebuildChangedPages();
+        for (PageRoller screenRoller : screenRollers) {
+            screenRoller.rebuildChangedPages();
+        }
+    }
+
+    /**
+     * Apply a layout change on the JavaFX application thread. If a layout transaction is open, the change is held
+     * until the transaction is committed.
+     *
+     * @param change Layout change
+     */
+    private void runLayoutChange(Runnable change) {
+        if (!layoutTransaction.add(change)) {
+            ingestMetrics.runLater(change);
+        }
     }
 
     private void processFileTransferEvent(FileTransferEvent fileTransferEvent) {
@@ -432,6 +758,11 @@ public class ApplicationCore extends Application {
         } catch (Exception e) {
             e.printStackTrace();
         }
+
+        // Transcode the image once now rather than every time a page that uses it is built
+        if (fileTransferEvent.getType() == FileDataPositions.TYPE_IMAGE) {
+            backgroundImageCache.prepare(fileTransferEvent.getFileName());
+        }
     }
 
     private void runServer() {
@@ -439,9 +770,11 @@ public class ApplicationCore extends Application {
             // Start server and stuff now
             AddressInformation siteLocalAddress = NetworkUtils.getMyIpAddress();
             displayWaitingForConnectionPage();
-            pageRoller = new PageRoller(this);
-            pageRollerThread = new Thread(pageRoller);
-            pageRollerThread.start();
+            if (pageRoller != null) {
+                pageRoller.stop();
+            }
+            pageRoller = new PageRoller(pageOutput, sensorValueStore, deadbandFilter, cellOverlays,
+                    backgroundImageCache, sensorRenderMode, nextPageIds, prewarmLeadMs);
 
             server = new Server(siteLocalAddress,
                     connectEvent -> onConnect(),
@@ -451,7 +784,9 @@ public class ApplicationCore extends Application {
                     removePageEvent -> processRemovePageEvent(removePageEvent),
                     sensorDataEvent -> processSensorDataEvent(sensorDataEvent),
                     removeSensorEvent -> processRemoveSensorEvent(removeSensorEvent),
-                    sensorTransformationEvent -> processSensorTransformationEvent(sensorTransformationEvent));
+                    sensorTransformationEvent -> processSensorTransformationEvent(sensorTransformationEvent),
+                    layoutTransactionEvent -> processLayoutTransactionEvent(layoutTransactionEvent),
+                    displayPowerEvent -> onDisplayPowerChanged(displayPowerEvent));
 
             serverThread = new Thread(server);
             serverThread.start();
@@ -462,16 +797,25 @@ public class ApplicationCore extends Application {
     }
 
     public void displaySerialAwaitingConnectionPage(String string) {
-        mainPane.getChildren().clear();
         InformationPage informationPage = new InformationPage("Awaiting USB Connection", string);
-        mainPane.getChildren().add(informationPage);
+        mainPaneManager.setContent(informationPage);
     }
 
     @Override
     public void start(Stage stage) {
         boolean debugTerminal = false;
+        boolean showPerformanceHud = false;
         boolean windowed = true;
         String serialPort = "";
+        float deadbandEpsilon = 0.0f;
+        boolean adaptiveQuality = false;
+        double renderScale = 1.0;
+        long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+        long rollupPeriodMs = 0;
+        boolean alerts = false;
+        long alertDurationMs = DEFAULT_ALERT_DURATION_MS;
+        Map<Integer, List<Byte>> screenPages = new LinkedHashMap<>();
+        List<String> benchmarkOptions = null;
 
         // Process parameters
         List<String> parameterList = super.getParameters().getRaw();
@@ -487,6 +831,92 @@ public class ApplicationCore extends Application {
                 case "--debug":
                     Logger.setLogLevel(LogLevel.DEBUG);
                     break;
+                case "--hud":
+                    // Shows the performance HUD on start up, it can also be toggled with F3
+                    showPerformanceHud = true;
+                    break;
+                case "--canvas-gauges":
+                    // Draw sensors in a simplified form on to canvases, for low power displays
+                    sensorRenderMode = SensorRenderMode.CANVAS;
+                    break;
+                case "--surface-pages":
+                    // Draw each page on to a single surface, only drawing the sensors that change
+                    sensorRenderMode = SensorRenderMode.SURFACE;
+                    break;
+                case "--sensor-trends":
+                    // Draw the trend of each sensor behind it, over the given number of most recent values (36000 by
+                    // default, an hour at 10 updates a second). Only drawn by the canvas based render modes.
+                    int historyCapacity = DEFAULT_HISTORY_CAPACITY;
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            historyCapacity = Math.max(2, Integer.parseInt(parameterList.get(i + 1)));
+                        } catch (NumberFormatException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid sensor trend length: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    }
+                    sensorHistory = new SensorHistory(historyCapacity);
+                    break;
+                case "--sensor-rollups":
+                    // Draw the minimum and maximum of each sensor over the given number of hours (24 by default)
+                    // under its title. Only drawn by the canvas based render modes.
+                    rollupPeriodMs = TimeUnit.HOURS.toMillis(DEFAULT_ROLLUP_PERIOD_HOURS);
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            rollupPeriodMs = Math.min(SensorRollups.getMaxPeriodMs(),
+                                    TimeUnit.HOURS.toMillis(Math.max(1, Long.parseLong(parameterList.get(i + 1)))));
+                        } catch (NumberFormatException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid sensor rollup period: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    }
+                    sensorRollups = new SensorRollups();
+                    break;
+                case "--history-log":
+                    // Record every sensor value to storage so it can be exported after a crash, optionally to the
+                    // given directory
+                    String historyDirectory = OSUtils.getApplicationDataDirectory() + File.separator + "history";
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        historyDirectory = parameterList.get(i + 1);
+                        i++;
+                    }
+                    historyLog = new HistoryLog(new File(historyDirectory), HISTORY_SEGMENT_BYTES,
+                            HISTORY_MAX_SEGMENTS, HISTORY_FLUSH_INTERVAL_MS);
+                    break;
+                case "--alerts":
+                    // Alert when a sensor stays over its threshold by flashing its cell (default), jumping to its
+                    // page, or holding its page on screen until the alert stops
+                    alerts = true;
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            alertAction = AlertAction.valueOf(parameterList.get(i + 1).toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid alert action: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    }
+                    break;
+                case "--alert-duration":
+                    // Time in ms that a sensor must stay over, or back under, its threshold to start, or stop, an alert
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            alertDurationMs = Math.max(0, Long.parseLong(parameterList.get(i + 1)));
+                        } catch (NumberFormatException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid alert duration: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    } else {
+                        Logger.log(LogLevel.ERROR, CLASS_NAME, "Alert duration flag set but no time provided");
+                    }
+                    break;
+                case "--snapshot-transitions":
+                    // Transition between images of pages rather than the live pages
+                    snapshotTransitions = true;
+                    break;
                 case "-w":
                 case "--windowed":
                     windowed = true;
@@ -505,37 +935,188 @@ public class ApplicationCore extends Application {
                         Logger.log(LogLevel.ERROR, CLASS_NAME, "Serial port flag set but no port provided");
                     }
                     break;
+                case "--deadband-epsilon":
+                    // Smallest change in a sensor value that is shown, on top of the change being visible
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            deadbandEpsilon = Float.parseFloat(parameterList.get(i + 1));
+                        } catch (NumberFormatException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid deadband epsilon: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    } else {
+                        Logger.log(LogLevel.ERROR, CLASS_NAME, "Deadband epsilon flag set but no value provided");
+                    }
+                    break;
+                case "--adaptive-quality":
+                    // Lower the render quality when pulses run over budget, optionally followed by the budget in ms
+                    adaptiveQuality = true;
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            qualityGovernor = new QualityGovernor(Double.parseDouble(parameterList.get(i + 1)));
+                        } catch (NumberFormatException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid quality budget: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    }
+                    break;
+                case "--render-scale":
+                    // Render at a fraction of the display resolution and scale up once per frame, e.g. 0.5 or 0.75
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            renderScale = Math.max(MIN_RENDER_SCALE,
+                                    Math.min(1.0, Double.parseDouble(parameterList.get(i + 1))));
+                        } catch (NumberFormatException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid render scale: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    } else {
+                        Logger.log(LogLevel.ERROR, CLASS_NAME, "Render scale flag set but no value provided");
+                    }
+                    break;
+                case "--prewarm-lead":
+                    // Time before a page change that the next page is prepared, 0 to not prepare pages in advance
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            prewarmLeadMs = Math.max(0, Long.parseLong(parameterList.get(i + 1)));
+                        } catch (NumberFormatException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid prewarm lead time: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    } else {
+                        Logger.log(LogLevel.ERROR, CLASS_NAME, "Prewarm lead flag set but no time provided");
+                    }
+                    break;
+                case "--idle-timeout":
+                    // Time in ms without anything changing on screen before rendering is suspended, 0 to never suspend
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        try {
+                            idleTimeoutMs = Math.max(0, Long.parseLong(parameterList.get(i + 1)));
+                        } catch (NumberFormatException e) {
+                            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid idle timeout: " +
+                                    parameterList.get(i + 1));
+                        }
+                        i++;
+                    } else {
+                        Logger.log(LogLevel.ERROR, CLASS_NAME, "Idle timeout flag set but no time provided");
+                    }
+                    break;
+                case "--screen":
+                    // Show some of the pages on an additional screen, e.g. 1=3,4 shows pages 3 and 4 on screen 1
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        parseScreenPages(parameterList.get(i + 1), screenPages);
+                        i++;
+                    } else {
+                        Logger.log(LogLevel.ERROR, CLASS_NAME, "Screen flag set but no pages provided");
+                    }
+                    break;
+                case "--derived-sensor":
+                    // Work out the value of a sensor from other sensors, e.g. 9=max(s1,s2,s3) shows the highest of
+                    // sensors 1, 2 and 3 on sensor 9. Can be given more than once.
+                    if (parameterList.size() > i + 1 && !parameterList.get(i + 1).startsWith("--")) {
+                        parseDerivedSensor(parameterList.get(i + 1));
+                        i++;
+                    } else {
+                        Logger.log(LogLevel.ERROR, CLASS_NAME, "Derived sensor flag set but no expression provided");
+                    }
+                    break;
+                case "--benchmark":
+                    // Render a generated layout instead of connecting, the remaining parameters are benchmark options
+                    connectionMode = CommunicationMode.Benchmark;
+                    benchmarkOptions = parameterList.subList(i + 1, parameterList.size());
+                    i = parameterList.size();
+                    break;
+                case "--soak":
+                    // Rotate a generated layout instead of connecting, checking that the scene graph stays flat. The
+                    // remaining parameters are soak test options.
+                    connectionMode = CommunicationMode.Soak;
+                    benchmarkOptions = parameterList.subList(i + 1, parameterList.size());
+                    i = parameterList.size();
+                    break;
                 default:
                     connectionMode = CommunicationMode.Network;
                     break;
             }
         }
 
+        // Background images are decoded at the resolution they will be rendered at
+        Rectangle2D screenBounds = Screen.getPrimary().getBounds();
+        final double renderWidth = (windowed ? WINDOW_WIDTH_PX : screenBounds.getWidth()) * renderScale;
+        final double renderHeight = (windowed ? WINDOW_HEIGHT_PX : screenBounds.getHeight()) * renderScale;
+        backgroundImageCache = new BackgroundImageCache((int) Math.round(renderWidth), (int) Math.round(renderHeight),
+                BACKGROUND_IMAGE_CACHE_BUDGET_BYTES);
+
+        // Sensor updates that would not visibly change a sensor are dropped before they reach the application thread
+        deadbandFilter = new DeadbandFilter(renderWidth, renderHeight, deadbandEpsilon);
+        cellOverlays = new CellOverlays(sensorHistory, sensorRollups, rollupPeriodMs);
+
+        // The minimum and maximum drawn in the cells change when the oldest bucket of their period expires, even if
+        // the sensor values do not, so the page on screen is painted again each time a bucket starts
+        if (sensorRollups != null) {
+            final long rollupResolutionMs = SensorRollups.getResolutionMs(rollupPeriodMs);
+            ScheduledExecutorService rollupRepainter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "RollupRepainter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rollupRepainter.scheduleAtFixedRate(() -> Platform.runLater(this::repaintCellOverlays),
+                    rollupResolutionMs - System.currentTimeMillis() % rollupResolutionMs, rollupResolutionMs,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        // Alerts are evaluated on the thread that receives the sensor values, only changes reach the application thread
+        if (alerts) {
+            alertEngine = new AlertEngine(ALERT_HYSTERESIS, alertDurationMs,
+                    alertEvent -> Platform.runLater(() -> onAlertChanged(alertEvent)));
+            alertFlasher = new Timeline(new KeyFrame(ALERT_FLASH_INTERVAL, event -> flashAlerts()));
+            alertFlasher.setCycleCount(Animation.INDEFINITE);
+        }
+
         mainPane = new StackPane();
         mainPane.setId("standard-pane");
+        mainPaneManager = new MainPaneManager(mainPane, actionEvent -> onNetDisconnect());
+
+        // Anything shown or removed on the main pane wakes the display
+        mainPane.getChildren().addListener((ListChangeListener<Node>) change -> wakeDisplay());
 
-        Scene uiScene;
+        StackPane root = new StackPane();
+        root.getChildren().add(mainPane);
+        pageOutput = new PageOutput(root, mainPane, mainPaneManager, qualityGovernor, snapshotTransitions,
+                this::displayConnectedPage);
         if (debugTerminal) {
             // Create the terminal overlay first thing so it can show all information
             TerminalOverlay terminalOverlay = new TerminalOverlay();
-
-            StackPane root = new StackPane();
-            root.getChildren().add(mainPane);
             root.getChildren().add(terminalOverlay);
-
-            uiScene = new Scene(root, WINDOW_WIDTH_PX, WINDOW_HEIGHT_PX);
-        } else {
-            uiScene = new Scene(mainPane, WINDOW_WIDTH_PX, WINDOW_HEIGHT_PX);
         }
 
+        performanceHud = new PerformanceHud(ingestMetrics, qualityGovernor);
+        root.getChildren().add(performanceHud);
+        Scene uiScene = new Scene(root, WINDOW_WIDTH_PX, WINDOW_HEIGHT_PX);
+
         stage.setTitle("Hardware Monitor " + Version.getVersionString());
         uiScene.getStylesheets().add("stylesheet.css");
+        uiScene.addEventFilter(InputEvent.ANY, inputEvent -> wakeDisplay());
         uiScene.setOnKeyPressed(keyEvent -> {
-            if(disconnectButton != null && keyEvent.getCode() == KeyCode.ESCAPE) {
+            DisconnectButton disconnectButton = mainPaneManager.getDisconnectButton();
+            if(mainPaneManager.isDisconnectButtonAttached() && keyEvent.getCode() == KeyCode.ESCAPE) {
                 disconnectButton.setVisible(!disconnectButton.isVisible());
+            } else if (keyEvent.getCode() == KeyCode.F3) {
+                performanceHud.toggle();
             }
         });
         stage.setScene(uiScene);
+        if (derivedSensors != null) {
+            uiScene.addPreLayoutPulseListener(() -> derivedSensors.evaluate(sensorValueStore,
+                    this::applyDerivedSensorValue));
+        }
+        performanceHud.setShowing(showPerformanceHud);
+        if (adaptiveQuality) {
+            qualityGovernor.attach(uiScene);
+        }
 
         if (!windowed) {
             stage.setFullScreenExitKeyCombination(KeyCombination.NO_MATCH);
@@ -562,12 +1143,12 @@ public class ApplicationCore extends Application {
                         sensorDataEvent -> processSensorDataEvent(sensorDataEvent),
                         removeSensorEvent -> processRemoveSensorEvent(removeSensorEvent),
                         sensorTransformationEvent -> processSensorTransformationEvent(sensorTransformationEvent),
+                        layoutTransactionEvent -> processLayoutTransactionEvent(layoutTransactionEvent),
                         fileTransferEvent -> processFileTransferEvent(fileTransferEvent));
                 displaySerialAwaitingConnectionPage(null);
                 Logger.log(LogLevel.INFO, CLASS_NAME, "TEST4");
-                pageRoller = new PageRoller(this);
-                pageRollerThread = new Thread(pageRoller);
-                pageRollerThread.start();
+                pageRoller = new PageRoller(pageOutput, sensorValueStore, deadbandFilter, cellOverlays,
+                        backgroundImageCache, sensorRenderMode, nextPageIds, prewarmLeadMs);
                 Logger.log(LogLevel.INFO, CLASS_NAME, "TEST5");
                 serialListener.connect(event -> {
                     if(!event.isConnected()) {
@@ -586,9 +1167,244 @@ public class ApplicationCore extends Application {
                     runServer();
                 }
                 break;
+            case Benchmark:
+                pageRoller = new PageRoller(pageOutput, sensorValueStore, deadbandFilter, cellOverlays,
+                        backgroundImageCache, sensorRenderMode, nextPageIds, prewarmLeadMs);
+
+                RenderBenchmark renderBenchmark = new RenderBenchmark(benchmarkOptions, mainPaneManager,
+                        pageMessageEvent -> processPageMessageEvent(pageMessageEvent),
+                        sensorMessageEvent -> processSensorMessageEvent(sensorMessageEvent),
+                        sensorDataEvent -> processSensorDataEvent(sensorDataEvent));
+                renderBenchmark.start(uiScene);
+                break;
+            case Soak:
+                pageRoller = new PageRoller(pageOutput, sensorValueStore, deadbandFilter, cellOverlays,
+                        backgroundImageCache, sensorRenderMode, nextPageIds, prewarmLeadMs);
+
+                PageSoakTest pageSoakTest = new PageSoakTest(benchmarkOptions, mainPaneManager,
+                        pageMessageEvent -> processPageMessageEvent(pageMessageEvent),
+                        sensorMessageEvent -> processSensorMessageEvent(sensorMessageEvent),
+                        sensorDataEvent -> processSensorDataEvent(sensorDataEvent));
+                pageSoakTest.start(uiScene);
+                break;
         }
         Logger.log(LogLevel.INFO, CLASS_NAME, "TEST7");
         stage.show();
+
+        if (renderScale < 1.0) {
+            applyRenderScale(stage, renderScale);
+        }
+
+        for (Map.Entry<Integer, List<Byte>> screenPagesEntry : screenPages.entrySet()) {
+            openScreen(screenPagesEntry.getKey(), screenPagesEntry.getValue(), windowed, renderScale);
+        }
+
+        if (idleTimeoutMs > 0) {
+            idleMonitor = new IdleMonitor(idleTimeoutMs, this::onIdle, this::resumeRendering);
+            idleMonitor.start();
+        }
+    }
+
+    // Parse a screen assignment in the form <screen index>=<page ID>,<page ID>,...
+    private void parseScreenPages(String screenAssignment, Map<Integer, List<Byte>> screenPages) {
+        String[] parts = screenAssignment.split("=");
+        try {
+            if (parts.length != 2) {
+                throw new NumberFormatException();
+            }
+
+            int screenIndex = Integer.parseInt(parts[0].trim());
+            List<Byte> pageIds = screenPages.computeIfAbsent(screenIndex, index -> new ArrayList<>());
+            for (String pageId : parts[1].split(",")) {
+                pageIds.add(Byte.parseByte(pageId.trim()));
+            }
+        } catch (NumberFormatException e) {
+            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid screen assignment: " + screenAssignment);
+        }
+    }
+
+    // Parse a derived sensor in the form <sensor ID>=<expression>
+    private void parseDerivedSensor(String definition) {
+        int separator = definition.indexOf('=');
+        try {
+            if (separator < 0) {
+                throw new NumberFormatException();
+            }
+
+            int sensorId = Integer.parseInt(definition.substring(0, separator).trim());
+            if (sensorId < 0 || sensorId > 255) {
+                throw new NumberFormatException();
+            }
+
+            if (derivedSensors == null) {
+                derivedSensors = new DerivedSensors();
+            }
+            derivedSensors.add((byte) sensorId, definition.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid derived sensor: " + definition);
+        } catch (IllegalArgumentException e) {
+            Logger.log(LogLevel.ERROR, CLASS_NAME, "Invalid derived sensor expression: " + e.getMessage());
+        }
+    }
+
+    // Apply the value of a derived sensor in the same way as a received value, apart from the quality governor and the
+    // deadband filter: it changes at most once a pulse and only when its expression changes. Called on the JavaFX
+    // application thread.
+    private void applyDerivedSensorValue(byte sensorId, float value) {
+        recordSensorValue(sensorId, value);
+        if (sensorValueStore.update(sensorId, value)) {
+            if (idleMonitor != null) {
+                idleMonitor.recordActivity();
+            }
+
+            if (!setSensorValue(sensorId, value)) {
+                ingestMetrics.recordDroppedUpdate();
+            }
+        } else {
+            ingestMetrics.recordConflatedUpdate();
+        }
+    }
+
+    /**
+     * Open a window on an additional screen that rotates through its own set of pages. The window shares sensor
+     * values, background images and the connection with the primary screen, so it only adds the cost of rendering
+     * its pages.
+     *
+     * @param screenIndex Index of the screen in the list of screens, the primary screen is normally index 0
+     * @param pageIds     IDs of the pages to show on the screen
+     * @param windowed    True to open a window on the screen rather than filling it
+     * @param renderScale Fraction of the output resolution to render the window at
+     */
+    private void openScreen(int screenIndex, List<Byte> pageIds, boolean windowed, double renderScale) {
+        List<Screen> screens = Screen.getScreens();
+        if (screenIndex < 0 || screenIndex >= screens.size()) {
+            Logger.logf(LogLevel.ERROR, CLASS_NAME, "Cannot show pages %s on screen %d, there are %d screens",
+                    pageIds, screenIndex, screens.size());
+            return;
+        }
+
+        StackPane screenMainPane = new StackPane();
+        screenMainPane.setId("standard-pane");
+        MainPaneManager screenMainPaneManager = new MainPaneManager(screenMainPane,
+                actionEvent -> onNetDisconnect());
+        screenMainPane.getChildren().addListener((ListChangeListener<Node>) change -> wakeDisplay());
+
+        StackPane screenRoot = new StackPane(screenMainPane);
+        PageOutput screenOutput = new PageOutput(screenRoot, screenMainPane, screenMainPaneManager, qualityGovernor,
+                snapshotTransitions, () -> screenMainPaneManager.setContent(null));
+        PageRoller screenRoller = new PageRoller(screenOutput, sensorValueStore, deadbandFilter, cellOverlays,
+                backgroundImageCache, sensorRenderMode, nextPageIds, prewarmLeadMs);
+        screenOutputs.add(screenOutput);
+        screenRollers.add(screenRoller);
+        for (byte pageId : pageIds) {
+            screenPageRollers.put(pageId, screenRoller);
+        }
+
+        Rectangle2D bounds = screens.get(screenIndex).getBounds();
+        Scene screenScene = new Scene(screenRoot, WINDOW_WIDTH_PX, WINDOW_HEIGHT_PX);
+        screenScene.getStylesheets().add("stylesheet.css");
+        screenScene.addEventFilter(InputEvent.ANY, inputEvent -> wakeDisplay());
+
+        Stage screenStage = new Stage();
+        screenStage.setTitle("Hardware Monitor " + Version.getVersionString() + " (Screen " + screenIndex + ")");
+        screenStage.setScene(screenScene);
+        screenStage.setX(bounds.getMinX());
+        screenStage.setY(bounds.getMinY());
+        if (!windowed) {
+            screenStage.setFullScreenExitKeyCombination(KeyCombination.NO_MATCH);
+            screenStage.setFullScreen(true);
+        }
+        screenStage.show();
+
+        if (renderScale < 1.0) {
+            applyRenderScale(screenStage, renderScale);
+        }
+
+        Logger.logf(LogLevel.INFO, CLASS_NAME, "Showing pages %s on screen %d", pageIds, screenIndex);
+    }
+
+    private void onIdle() {
+        // Stay awake until every running transition has finished
+        boolean transitionRunning = pageOutput.isTransitionRunning();
+        for (PageOutput screenOutput : screenOutputs) {
+            transitionRunning |= screenOutput.isTransitionRunning();
+        }
+
+        if (transitionRunning) {
+            idleMonitor.recordActivity();
+            return;
+        }
+
+        Logger.log(LogLevel.DEBUG, CLASS_NAME, "Suspending rendering, nothing on screen has changed");
+        suspendRendering(true);
+    }
+
+    private void onDisplayPowerChanged(DisplayPowerEvent displayPowerEvent) {
+        Platform.runLater(() -> {
+            displayPowered = displayPowerEvent.isEnabled();
+            if (displayPowered) {
+                wakeDisplay();
+            } else {
+                // Nothing can be seen so there is no need to keep an image of the display either
+                suspendRendering(false);
+            }
+        });
+    }
+
+    private void suspendRendering(boolean keepFrame) {
+        pageOutput.suspendRendering(keepFrame);
+        for (PageOutput screenOutput : screenOutputs) {
+            screenOutput.suspendRendering(keepFrame);
+        }
+    }
+
+    private void resumeRendering() {
+        if (!displayPowered) {
+            return;
+        }
+
+        pageOutput.resumeRendering();
+        for (PageOutput screenOutput : screenOutputs) {
+            screenOutput.resumeRendering();
+        }
+    }
+
+    // Record a change to the display and resume rendering straight away if it was suspended. Must be called on the
+    // JavaFX application thread.
+    private void wakeDisplay() {
+        if (idleMonitor != null) {
+            idleMonitor.recordActivity();
+        }
+
+        resumeRendering();
+    }
+
+    /**
+     * Render the scene at a fraction of the output resolution. Layout still happens at the full size of the scene,
+     * but the scene is rasterised (including text and canvases) into a smaller buffer that is scaled up once per frame
+     * when it is shown, cutting the number of pixels filled on high resolution panels. The window resets its render
+     * scale when its output scale changes (e.g. moving to a different screen) so the scale is applied again.
+     *
+     * @param stage       Stage to render at a lower resolution
+     * @param renderScale Fraction of the output resolution to render at
+     */
+    private void applyRenderScale(Stage stage, double renderScale) {
+        InvalidationListener renderScaleListener = observable -> {
+            double renderScaleX = stage.getOutputScaleX() * renderScale;
+            double renderScaleY = stage.getOutputScaleY() * renderScale;
+            if (stage.getRenderScaleX() != renderScaleX || stage.getRenderScaleY() != renderScaleY) {
+                stage.setRenderScaleX(renderScaleX);
+                stage.setRenderScaleY(renderScaleY);
+            }
+        };
+
+        stage.outputScaleXProperty().addListener(renderScaleListener);
+        stage.outputScaleYProperty().addListener(renderScaleListener);
+        stage.renderScaleXProperty().addListener(renderScaleListener);
+        stage.renderScaleYProperty().addListener(renderScaleListener);
+        renderScaleListener.invalidated(null);
+
+        Logger.logf(LogLevel.INFO, CLASS_NAME, "Rendering at %.0f%% of the display resolution", renderScale * 100.0);
     }
 
 }
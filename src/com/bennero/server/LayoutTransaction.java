@@ -0,0 +1,81 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LayoutTransaction buffers structural layout changes between a layout begin and commit message. Changes are added by
+ * the thread that receives the messages and handed over together on commit, so that the JavaFX application thread
+ * can apply them all at once instead of re-laying out pages for every message.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+class LayoutTransaction {
+    private List<Runnable> changes;
+
+    public LayoutTransaction() {
+        changes = null;
+    }
+
+    public synchronized void begin() {
+        // A begin without a commit means the previous transaction was abandoned, its changes are still applied
+        if (changes == null) {
+            changes = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Add a change to the transaction if one is open
+     *
+     * @param change Change to apply when the transaction is committed
+     * @return True if the change was added, false if there is no open transaction
+     */
+    public synchronized boolean add(Runnable change) {
+        if (changes == null) {
+            return false;
+        }
+
+        changes.add(change);
+        return true;
+    }
+
+    /**
+     * Close the transaction
+     *
+     * @return The changes in the order that they were received, or null if there was no open transaction
+     */
+    public synchronized List<Runnable> commit() {
+        List<Runnable> committed = changes;
+        changes = null;
+        return committed;
+    }
+
+    public synchronized void discard() {
+        changes = null;
+    }
+}
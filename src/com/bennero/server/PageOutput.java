@@ -0,0 +1,247 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server;
+
+import com.bennero.common.TransitionType;
+import com.bennero.common.logging.LogLevel;
+import com.bennero.common.logging.Logger;
+import com.bennero.server.pages.CustomisableSensorPage;
+import com.bennero.server.pages.SnapshotTransition;
+import com.bennero.server.quality.QualityGovernor;
+import com.bennero.server.quality.QualityLevel;
+import com.bennero.server.ui.MainPaneManager;
+import javafx.animation.Animation;
+import javafx.animation.Transition;
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+
+/**
+ * PageOutput shows the pages of a page roller on one window: it attaches pages to the main pane of the window,
+ * transitions between them and suspends rendering of the main pane while the display is idle. Each screen that the
+ * application drives has its own page output. Must only be used on the JavaFX application thread.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see PageRoller
+ * @since 1.2
+ */
+class PageOutput {
+    // Class name used in logging
+    private static final String CLASS_NAME = PageOutput.class.getSimpleName();
+
+    private final StackPane rootPane;
+    private final StackPane mainPane;
+    private final MainPaneManager mainPaneManager;
+    private final QualityGovernor qualityGovernor;
+    private final boolean snapshotTransitions;
+    private final Runnable noPagesHandler;
+    private SnapshotTransition snapshotTransition;
+    private CustomisableSensorPage transitionOutgoingPage;
+    private ImageView idleFrame;
+    private boolean renderingSuspended;
+
+    /**
+     * Create a page output
+     *
+     * @param rootPane            Root of the window, which the main pane is a child of
+     * @param mainPane            Pane that pages are shown on
+     * @param mainPaneManager     Manager of the main pane
+     * @param qualityGovernor     Governor of the render quality, which decides how pages transition
+     * @param snapshotTransitions True to transition between images of pages rather than the live pages
+     * @param noPagesHandler      Run when the last page is removed, to show something in place of the pages
+     */
+    public PageOutput(StackPane rootPane, StackPane mainPane, MainPaneManager mainPaneManager,
+                      QualityGovernor qualityGovernor, boolean snapshotTransitions, Runnable noPagesHandler) {
+        this.rootPane = rootPane;
+        this.mainPane = mainPane;
+        this.mainPaneManager = mainPaneManager;
+        this.qualityGovernor = qualityGovernor;
+        this.snapshotTransitions = snapshotTransitions;
+        this.noPagesHandler = noPagesHandler;
+        this.renderingSuspended = false;
+    }
+
+    public MainPaneManager getMainPaneManager() {
+        return mainPaneManager;
+    }
+
+    public void displayPage(CustomisableSensorPage customisableSensorPage, CustomisableSensorPage currentCustomisableSensorPage) {
+        Logger.log(LogLevel.DEBUG, CLASS_NAME, "Display Page: " + customisableSensorPage.getTitle());
+
+        // Put the live page back before starting another transition so that it can be captured
+        finishSnapshotTransition();
+
+        // If we are trying to add a page before its evening finished transitioning away from itself, stop its
+        // transition. It is moved back to the top and the page that was replacing it will no longer remove it
+        if (customisableSensorPage.getTransitionControl() != null &&
+                customisableSensorPage.getTransitionControl().getStatus() == Animation.Status.RUNNING) {
+            customisableSensorPage.getTransitionControl().stop();
+            customisableSensorPage.setTransitionControl(null);
+        }
+
+        // Only the current page and the page it transitions from are attached, the disconnect button is re-used
+        mainPaneManager.attachPage(customisableSensorPage);
+
+        if (currentCustomisableSensorPage != null) {
+            // Transitions are shortened or cut when the display is struggling to keep up
+            QualityLevel qualityLevel = qualityGovernor.getQualityLevel();
+            int transitionTime = (int) (customisableSensorPage.getTransitionTime() *
+                    qualityLevel.getTransitionTimeScale());
+            if (customisableSensorPage.getTransitionType() == TransitionType.CUT ||
+                    !qualityLevel.isTransitionsAnimated()) {
+                mainPaneManager.detachPage(currentCustomisableSensorPage);
+            } else if (snapshotTransitions) {
+                // Animate images of the pages instead of the live pages
+                snapshotTransition = new SnapshotTransition(mainPane, customisableSensorPage,
+                        currentCustomisableSensorPage, customisableSensorPage.getTransitionType(), transitionTime);
+                customisableSensorPage.setTransitionControl(snapshotTransition.getTransition());
+                snapshotTransition.play();
+            } else {
+                Transition transition = TransitionType.getTransition(customisableSensorPage.getTransitionType(), transitionTime,
+                        mainPane, customisableSensorPage);
+                customisableSensorPage.setTransitionControl(transition);
+                transitionOutgoingPage = currentCustomisableSensorPage;
+                transition.setOnFinished(actionEvent1 -> {
+                    transitionOutgoingPage = null;
+                    mainPaneManager.detachPage(currentCustomisableSensorPage);
+                });
+                transition.play();
+            }
+        }
+
+        Logger.logf(LogLevel.DEBUG, CLASS_NAME, "Main pane: [Children: %d], [Pages: %d]",
+                mainPaneManager.getChildCount(), mainPaneManager.getAttachedPageCount());
+    }
+
+    /**
+     * Prepare a page that is about to be shown. It is attached underneath the pages on screen so that it is styled and
+     * laid out in the scene, and rendered once to an image, so that nothing is left to do when it is shown.
+     *
+     * @param customisableSensorPage Page to prewarm
+     */
+    public void prewarmPage(CustomisableSensorPage customisableSensorPage) {
+        mainPaneManager.prewarmPage(customisableSensorPage);
+        if (customisableSensorPage.getParent() == mainPane) {
+            customisableSensorPage.applyCss();
+            mainPane.layout();
+            SnapshotTransition.snapshot(customisableSensorPage);
+        }
+    }
+
+    /**
+     * Finish any running transition straight away, leaving only the live current page on screen. The outgoing page is
+     * detached as it would be at the end of the transition.
+     */
+    public void finishTransitions() {
+        finishSnapshotTransition();
+
+        Node currentPage = mainPaneManager.getCurrentPage();
+        if (currentPage instanceof CustomisableSensorPage) {
+            CustomisableSensorPage customisableSensorPage = (CustomisableSensorPage) currentPage;
+            Transition transition = customisableSensorPage.getTransitionControl();
+            if (transition != null && transition.getStatus() == Animation.Status.RUNNING) {
+                // Move the incoming page to where the transition would leave it before stopping it
+                transition.jumpTo(transition.getTotalDuration());
+                transition.stop();
+                customisableSensorPage.setTransitionControl(null);
+                if (transitionOutgoingPage != null) {
+                    mainPaneManager.detachPage(transitionOutgoingPage);
+                }
+            }
+        }
+
+        transitionOutgoingPage = null;
+    }
+
+    public void replacePage(CustomisableSensorPage oldPage, CustomisableSensorPage newPage) {
+        finishSnapshotTransition();
+        mainPaneManager.replacePage(oldPage, newPage);
+    }
+
+    public void removePage(CustomisableSensorPage customisableSensorPage) {
+        finishSnapshotTransition();
+        mainPaneManager.removePage(customisableSensorPage);
+    }
+
+    public void displayNoPages() {
+        noPagesHandler.run();
+    }
+
+    public boolean isTransitionRunning() {
+        if (snapshotTransition != null && !snapshotTransition.isFinished()) {
+            return true;
+        }
+
+        Node currentPage = mainPaneManager.getCurrentPage();
+        if (currentPage instanceof CustomisableSensorPage) {
+            Transition transition = ((CustomisableSensorPage) currentPage).getTransitionControl();
+            return transition != null && transition.getStatus() == Animation.Status.RUNNING;
+        }
+
+        return false;
+    }
+
+    /**
+     * Suspend rendering of the main pane while nothing on it changes. The main pane is hidden, so the pages and any
+     * animations inside their sensors are no longer rendered, and a still image of it is shown in its place.
+     *
+     * @param keepFrame True to show a still image of the main pane, false to show nothing (e.g. the display is off)
+     */
+    public void suspendRendering(boolean keepFrame) {
+        if (renderingSuspended) {
+            return;
+        }
+
+        renderingSuspended = true;
+        if (keepFrame) {
+            idleFrame = new ImageView(SnapshotTransition.snapshot(mainPane));
+            idleFrame.setFitWidth(mainPane.getWidth());
+            idleFrame.setFitHeight(mainPane.getHeight());
+            rootPane.getChildren().add(rootPane.getChildren().indexOf(mainPane) + 1, idleFrame);
+        }
+
+        mainPane.setVisible(false);
+    }
+
+    public void resumeRendering() {
+        if (!renderingSuspended) {
+            return;
+        }
+
+        renderingSuspended = false;
+        mainPane.setVisible(true);
+        if (idleFrame != null) {
+            rootPane.getChildren().remove(idleFrame);
+            idleFrame = null;
+        }
+    }
+
+    private void finishSnapshotTransition() {
+        if (snapshotTransition != null) {
+            snapshotTransition.finish();
+            snapshotTransition = null;
+        }
+    }
+}
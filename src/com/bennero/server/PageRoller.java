@@ -24,126 +24,564 @@
 package com.bennero.server;
 
 import com.bennero.common.PageData;
-import com.bennero.common.Sensor;
 import com.bennero.common.logging.LogLevel;
 import com.bennero.common.logging.Logger;
+import com.bennero.server.data.DeadbandFilter;
+import com.bennero.server.data.SensorDescriptor;
+import com.bennero.server.data.SensorValueStore;
+import com.bennero.server.image.BackgroundImageCache;
+import com.bennero.server.pages.CellOverlays;
 import com.bennero.server.pages.CustomisableSensorPage;
+import com.bennero.server.pages.PageDescriptor;
+import com.bennero.server.pages.SensorRenderMode;
 import javafx.application.Platform;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
-class PageRoller implements Runnable {
+/**
+ * PageRoller holds the pages and rotates between them. Its state is confined to the JavaFX application thread, every
+ * method must be called on it. Rotation is driven by a single scheduled task per page change, timed from when the page
+ * was shown on the monotonic clock, so nothing runs between page changes and each page is shown for its duration.
+ * A configurable lead time before each page change, the next page is prewarmed (built, styled, laid out and rendered
+ * once underneath the current page) so that its transition starts on a page that is ready to be shown.
+ */
+class PageRoller {
     // Tag for logging
     private static final String CLASS_NAME = PageRoller.class.getSimpleName();
 
-    private final ApplicationCore applicationCore;
-    private HashMap<Byte, CustomisableSensorPage> customisableSensorPages;
-    private CustomisableSensorPage currentCustomisableSensorPage;
-    private CustomisableSensorPage previousCustomisableSensorPage;
+    // A page change that runs later than this is timed from when it actually happened rather than when it was due
+    private static final long LATE_PAGE_CHANGE_NS = 250_000_000L;
+
+    private final PageOutput pageOutput;
+    private final SensorValueStore sensorValueStore;
+    private final DeadbandFilter deadbandFilter;
+    private final CellOverlays cellOverlays;
+    private final BackgroundImageCache backgroundImageCache;
+    private final SensorRenderMode sensorRenderMode;
+    private HashMap<Byte, PageDescriptor> pages;
+
+    // Next page IDs of every page, shared by the page rollers of all screens so that each one can follow the rotation
+    // across pages shown on the other screens
+    private final Map<Byte, Byte> nextPageIds;
+
+    // Materialized page that each sensor with graphics is on
+    private HashMap<Byte, CustomisableSensorPage> sensorPages;
+    private PageDescriptor currentPage;
+    private PageDescriptor previousPage;
+    private PageDescriptor prewarmedPage;
+
+    // Page that the rotation starts from, used to find pages that the rotation never reaches
+    private PageDescriptor rootPage;
+    private String rotationDescription;
+
+    private final ScheduledExecutorService scheduler;
+    private final long prewarmLeadNs;
+    private ScheduledFuture<?> pageChange;
+    private ScheduledFuture<?> prewarm;
+
+    // Incremented whenever the scheduled page change is cancelled. A cancelled change may already have been posted to
+    // the application thread, so each change carries the generation it was scheduled in and is dropped if it is stale.
+    private long pageChangeGeneration;
+    private long pageViewStartTimeNs = 0;
+
+    // While held, the current page is not changed by the rotation
+    private boolean held;
 
-    private long pageViewStartTimeMs = 0;
+    // True between suspendPageUpdates() and rebuildChangedPages()
+    private boolean pageUpdatesSuspended;
 
-    public PageRoller(ApplicationCore applicationCore) {
-        this.applicationCore = applicationCore;
-        this.customisableSensorPages = new HashMap<>();
-        this.currentCustomisableSensorPage = null;
+    public PageRoller(PageOutput pageOutput, SensorValueStore sensorValueStore, DeadbandFilter deadbandFilter,
+                      CellOverlays cellOverlays, BackgroundImageCache backgroundImageCache,
+                      SensorRenderMode sensorRenderMode, Map<Byte, Byte> nextPageIds, long prewarmLeadMs) {
+        this.pageOutput = pageOutput;
+        this.sensorValueStore = sensorValueStore;
+        this.deadbandFilter = deadbandFilter;
+        this.cellOverlays = cellOverlays;
+        this.backgroundImageCache = backgroundImageCache;
+        this.sensorRenderMode = sensorRenderMode;
+        this.pages = new HashMap<>();
+        this.nextPageIds = nextPageIds;
+        this.sensorPages = new HashMap<>();
+        this.currentPage = null;
+        this.prewarmLeadNs = TimeUnit.MILLISECONDS.toNanos(prewarmLeadMs);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, CLASS_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
-    public void addPage(CustomisableSensorPage page) {
-        customisableSensorPages.put(page.getUniqueId(), page);
+    public void addPage(PageData pageData) {
+        PageDescriptor page = new PageDescriptor(pageData);
+        pages.put(page.getUniqueId(), page);
 
         // If this is the first page added, then display it
-        if (currentCustomisableSensorPage == null) {
-            currentCustomisableSensorPage = page;
-            pageViewStartTimeMs = System.currentTimeMillis();
-            Platform.runLater(() -> applicationCore.displayPage(page, null));
+        if (currentPage == null) {
+            currentPage = page;
+            rootPage = page;
+            pageViewStartTimeNs = System.nanoTime();
+            showPage(page, null);
         }
+
+        // The current page may have been waiting for this page to be added so that it can rotate to it
+        schedulePageChange();
     }
 
     public boolean removePage(byte pageId) {
         boolean exists = false;
 
-        if (customisableSensorPages.containsKey(pageId)) {
-            customisableSensorPages.remove(pageId);
+        if (pages.containsKey(pageId)) {
+            PageDescriptor page = pages.remove(pageId);
             exists = true;
 
-            if (currentCustomisableSensorPage.getUniqueId() == pageId) {
-                applicationCore.removePage(currentCustomisableSensorPage);
+            if (previousPage == page) {
+                previousPage = null;
+            }
+
+            if (prewarmedPage == page) {
+                if (page.isMaterialized()) {
+                    pageOutput.removePage(page.getPage());
+                }
+                prewarmedPage = null;
+            }
+
+            if (currentPage == page) {
+                setLive(page, false);
+                if (page.isMaterialized()) {
+                    pageOutput.removePage(page.getPage());
+                }
 
-                if (customisableSensorPages.size() == 0) {
-                    applicationCore.displayConnectedPage();
-                    currentCustomisableSensorPage = null;
-                    previousCustomisableSensorPage = null;
+                if (pages.size() == 0) {
+                    pageOutput.displayNoPages();
+                    currentPage = null;
+                    previousPage = null;
                 } else {
-                    applicationCore.displayPage(previousCustomisableSensorPage, null);
-                    currentCustomisableSensorPage = previousCustomisableSensorPage;
+                    // Fall back to the page shown before this one (or any page if that has gone too)
+                    PageDescriptor fallbackPage = previousPage != null ? previousPage : pages.values().iterator().next();
+                    showPage(fallbackPage, null);
+                    currentPage = fallbackPage;
+                    previousPage = null;
+                    pageViewStartTimeNs = System.nanoTime();
                 }
+
+                schedulePageChange();
             }
+
+            if (rootPage == page) {
+                rootPage = currentPage;
+            }
+
+            release(page);
         }
 
         return exists;
     }
 
     public boolean exists(byte id) {
-        return customisableSensorPages.containsKey(id);
+        return pages.containsKey(id);
     }
 
     public void updatePage(PageData pageData) {
         byte key = pageData.getUniqueId();
-        if (customisableSensorPages.containsKey(key)) {
-            customisableSensorPages.get(key).updatePageData(pageData);
+        if (pages.containsKey(key)) {
+            PageDescriptor page = pages.get(key);
+            page.update(pageData);
+            for (SensorDescriptor sensorDescriptor : page.getSensors()) {
+                configureDeadband(page, sensorDescriptor);
+            }
+
+            // The duration or next page may have changed
+            if (page == currentPage) {
+                schedulePageChange();
+            }
         }
     }
 
-    public void addSensor(byte pageId, Sensor sensor) {
-        if (customisableSensorPages.containsKey(pageId)) {
-            customisableSensorPages.get(pageId).addSensor(sensor);
+    public void addSensor(byte pageId, SensorDescriptor sensorDescriptor) {
+        if (pages.containsKey(pageId)) {
+            PageDescriptor page = pages.get(pageId);
+            if (page.addSensor(sensorDescriptor)) {
+                sensorPages.put(sensorDescriptor.getUniqueId(), page.getPage());
+            }
+            configureDeadband(page, sensorDescriptor);
+
+            if (page == currentPage) {
+                sensorValueStore.setLive(sensorDescriptor.getUniqueId(), true);
+            }
         }
     }
 
     public void removeSensor(byte sensorId, byte pageId) {
-        if (customisableSensorPages.containsKey(pageId)) {
-            customisableSensorPages.get(pageId).removeSensor(sensorId);
+        sensorValueStore.setLive(sensorId, false);
+        deadbandFilter.remove(sensorId);
+        cellOverlays.removeSensor(sensorId);
+
+        if (pages.containsKey(pageId) && pages.get(pageId).removeSensor(sensorId)) {
+            sensorPages.remove(sensorId);
         }
     }
 
     public void transformSensor(byte sensorId, byte pageId, byte row, byte column, byte rowSpan, byte columnSpan) {
-        if (customisableSensorPages.containsKey(pageId)) {
-            customisableSensorPages.get(pageId).transformSensor(sensorId, row, column, rowSpan, columnSpan);
+        if (pages.containsKey(pageId)) {
+            PageDescriptor page = pages.get(pageId);
+            page.transformSensor(sensorId, row, column, rowSpan, columnSpan);
+            for (SensorDescriptor sensorDescriptor : page.getSensors()) {
+                if (sensorDescriptor.getUniqueId() == sensorId) {
+                    configureDeadband(page, sensorDescriptor);
+                }
+            }
         }
     }
 
-    public void removeAllPages() {
-        customisableSensorPages.clear();
-        currentCustomisableSensorPage = null;
-        previousCustomisableSensorPage = null;
-    }
-
-    @Override
-    public void run() {
-        while (true) {
-            if (currentCustomisableSensorPage != null) {
-                if (currentCustomisableSensorPage.getDurationMs() != 0 && currentCustomisableSensorPage.getNextPageId() != currentCustomisableSensorPage.getUniqueId() &&
-                        pageViewStartTimeMs + currentCustomisableSensorPage.getDurationMs() < System.currentTimeMillis()) {
-                    // Show the next page
-                    byte nextPage = currentCustomisableSensorPage.getNextPageId();
-                    if (customisableSensorPages.containsKey(nextPage)) {
-                        previousCustomisableSensorPage = currentCustomisableSensorPage;
-                        currentCustomisableSensorPage = customisableSensorPages.get(nextPage);
-                        pageViewStartTimeMs = System.currentTimeMillis();
-                        Platform.runLater(() -> applicationCore.displayPage(currentCustomisableSensorPage, previousCustomisableSensorPage));
+    /**
+     * Set the value of a sensor that has graphics
+     *
+     * @param sensorId ID of the sensor
+     * @param value    Value to set
+     * @return True if the sensor has graphics, false if the value was not used
+     */
+    public boolean setSensorValue(byte sensorId, float value) {
+        CustomisableSensorPage page = sensorPages.get(sensorId);
+        return page != null && page.setSensorValue(sensorId, value);
+    }
+
+    /**
+     * Start a batch of layout changes. Pages that have graphics are not changed one by one, instead each page that is
+     * affected is rebuilt once by rebuildChangedPages() after all of the changes are applied. A rebuilt page that is on
+     * screen is swapped with its old graphics in one go, so a half built page is never shown.
+     */
+    public void suspendPageUpdates() {
+        pageUpdatesSuspended = true;
+        for (PageDescriptor page : pages.values()) {
+            if (page.isMaterialized()) {
+                page.suspendUpdates();
+            }
+        }
+    }
+
+    /**
+     * End a batch of layout changes, rebuilding the pages that the changes affected
+     */
+    public void rebuildChangedPages() {
+        pageUpdatesSuspended = false;
+
+        // A transition holds on to the graphics of the pages it moves between (and a snapshot transition puts the
+        // incoming page back when it finishes), so it is finished before any graphics are swapped
+        pageOutput.finishTransitions();
+
+        for (PageDescriptor page : pages.values()) {
+            if (page.isSuspended()) {
+                CustomisableSensorPage oldPage = page.getPage();
+                if (page.resumeUpdates()) {
+                    release(page);
+
+                    // Pages that are not on screen are built again when they are next needed
+                    if (page == currentPage || page == previousPage) {
+                        pageOutput.replacePage(oldPage, materialize(page));
+                        if (page == currentPage) {
+                            setLive(page, true);
+                        }
+                    } else if (page == prewarmedPage) {
+                        pageOutput.removePage(oldPage);
+                        prewarmedPage = null;
                     }
                 }
             }
+        }
+    }
+
+    public void removeAllPages() {
+        cancelPageChange();
+        pageUpdatesSuspended = false;
+        sensorValueStore.clear();
+        deadbandFilter.clear();
+        cellOverlays.clear();
+        pages.clear();
+        sensorPages.clear();
+        currentPage = null;
+        previousPage = null;
+        prewarmedPage = null;
+        rootPage = null;
+        rotationDescription = null;
+        held = false;
+    }
+
+    /**
+     * Called when the next page of any page changes, including the pages of other screens, as the page that this page
+     * roller rotates to may have changed
+     */
+    public void onPageLinksChanged() {
+        schedulePageChange();
+        updateRotationGraph();
+    }
+
+    /**
+     * Show the page that a sensor is on straight away. The rotation carries on from that page.
+     *
+     * @param sensorId ID of the sensor
+     * @return True if the sensor is on one of the pages of this page roller
+     */
+    public boolean showSensorPage(byte sensorId) {
+        PageDescriptor sensorPage = getSensorPage(sensorId);
+        if (sensorPage == null) {
+            return false;
+        }
 
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to sleep thread");
-                Logger.log(LogLevel.DEBUG, CLASS_NAME, e.getMessage());
+        if (sensorPage != currentPage) {
+            pageViewStartTimeNs = System.nanoTime();
+            previousPage = currentPage;
+            currentPage = sensorPage;
+            showPage(currentPage, previousPage);
+            schedulePageChange();
+            updateRotationGraph();
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if a sensor is on one of the pages of this page roller
+     *
+     * @param sensorId ID of the sensor
+     * @return True if the sensor is on one of the pages
+     */
+    public boolean containsSensor(byte sensorId) {
+        return getSensorPage(sensorId) != null;
+    }
+
+    private PageDescriptor getSensorPage(byte sensorId) {
+        for (PageDescriptor page : pages.values()) {
+            if (page.containsSensor(sensorId)) {
+                return page;
             }
         }
+
+        return null;
+    }
+
+    /**
+     * Hold the current page on screen, or let the rotation carry on from it. The current page is shown for its full
+     * duration once it is released.
+     *
+     * @param held True to stop the rotation
+     */
+    public void setHeld(boolean held) {
+        if (this.held != held) {
+            this.held = held;
+            pageViewStartTimeNs = System.nanoTime();
+            schedulePageChange();
+        }
+    }
+
+    /**
+     * Show or hide the alert border around the cell of a sensor, if the page of the sensor has graphics
+     *
+     * @param sensorId ID of the sensor
+     * @param visible  True to show the alert border
+     */
+    public void setAlertFlash(byte sensorId, boolean visible) {
+        CustomisableSensorPage page = sensorPages.get(sensorId);
+        if (page != null) {
+            page.setAlertFlash(sensorId, visible);
+        }
+    }
+
+    /**
+     * Paint the out of date cell overlays of the page on screen again. Pages that are not on screen are painted with
+     * the latest overlays when they are next built.
+     *
+     * @return True if anything was painted again
+     */
+    public boolean repaintCellOverlays() {
+        return currentPage != null && currentPage.isMaterialized() && currentPage.getPage().repaintCellOverlays();
+    }
+
+    /**
+     * Stop rotating pages and end the scheduler thread. The page roller can not be used again.
+     */
+    public void stop() {
+        cancelPageChange();
+        scheduler.shutdownNow();
+    }
+
+    private void showPage(PageDescriptor page, PageDescriptor previousPage) {
+        CustomisableSensorPage customisableSensorPage = materialize(page);
+        CustomisableSensorPage previousCustomisableSensorPage = null;
+        if (previousPage != null && previousPage != page) {
+            setLive(previousPage, false);
+            previousCustomisableSensorPage = previousPage.getPage();
+        }
+
+        setLive(page, true);
+        pageOutput.displayPage(customisableSensorPage, previousCustomisableSensorPage);
+        prewarmedPage = null;
+
+        releaseHiddenPages(page, previousPage);
+    }
+
+    private CustomisableSensorPage materialize(PageDescriptor page) {
+        if (!page.isMaterialized()) {
+            Logger.log(LogLevel.DEBUG, CLASS_NAME, "Materializing page: " + page.getPageData().getTitle());
+            CustomisableSensorPage customisableSensorPage = page.materialize(backgroundImageCache, sensorRenderMode,
+                    cellOverlays);
+            for (SensorDescriptor sensorDescriptor : page.getSensors()) {
+                sensorPages.put(sensorDescriptor.getUniqueId(), customisableSensorPage);
+            }
+
+            // A page built part way through a batch of layout changes (e.g. shown in place of a removed page) has the
+            // rest of the batch applied when it is rebuilt, like the pages that were already built
+            if (pageUpdatesSuspended) {
+                page.suspendUpdates();
+            }
+        }
+
+        return page.getPage();
+    }
+
+    private void release(PageDescriptor page) {
+        if (page.isMaterialized()) {
+            for (SensorDescriptor sensorDescriptor : page.getSensors()) {
+                sensorPages.remove(sensorDescriptor.getUniqueId(), page.getPage());
+            }
+
+            page.release();
+        }
+    }
+
+    // Release the graphics of every page that is not on screen or transitioning off of the screen, so that memory
+    // used by pages stays bounded however many pages are configured
+    private void releaseHiddenPages(PageDescriptor page, PageDescriptor previousPage) {
+        for (PageDescriptor pageDescriptor : pages.values()) {
+            if (pageDescriptor != page && pageDescriptor != previousPage && pageDescriptor.isMaterialized() &&
+                    pageDescriptor.getPage().getParent() == null) {
+                Logger.log(LogLevel.DEBUG, CLASS_NAME, "Releasing page: " +
+                        pageDescriptor.getPageData().getTitle());
+                release(pageDescriptor);
+            }
+        }
+    }
+
+    // Sensor updates are filtered against the size the sensor is drawn at, so it has to be configured again whenever
+    // the page grid or the sensor span changes
+    private void configureDeadband(PageDescriptor page, SensorDescriptor sensorDescriptor) {
+        PageData pageData = page.getPageData();
+        deadbandFilter.configure(sensorDescriptor, pageData.getRows(), pageData.getColumns());
+    }
+
+    // Only sensors on the page that is on screen are given their updates as they arrive. The other sensors only have
+    // their values stored, which are applied in one batch when their page is shown (before it is added to the scene)
+    private void setLive(PageDescriptor page, boolean state) {
+        for (SensorDescriptor sensorDescriptor : page.getSensors()) {
+            final byte sensorId = sensorDescriptor.getUniqueId();
+            sensorValueStore.setLive(sensorId, state);
+            if (state) {
+                deadbandFilter.reset(sensorId);
+                setSensorValue(sensorId, sensorValueStore.get(sensorId));
+            }
+        }
+    }
+
+    // Schedule the change from the current page to its next page, replacing any change already scheduled. Must be
+    // called whenever the current page, its duration or its next page changes.
+    private void schedulePageChange() {
+        cancelPageChange();
+        if (currentPage == null || held) {
+            return;
+        }
+
+        PageData pageData = currentPage.getPageData();
+        PageDescriptor nextPage = getNextPage(currentPage);
+        if (pageData.getDurationMs() == 0 || nextPage == null || nextPage == currentPage) {
+            return;
+        }
+
+        final PageDescriptor page = currentPage;
+        final long generation = pageChangeGeneration;
+        final long dueNs = pageViewStartTimeNs + TimeUnit.MILLISECONDS.toNanos(pageData.getDurationMs());
+        pageChange = scheduler.schedule(() -> Platform.runLater(() -> changePage(page, dueNs, generation)),
+                Math.max(0, dueNs - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+        if (prewarmLeadNs > 0) {
+            prewarm = scheduler.schedule(() -> Platform.runLater(() -> prewarmNextPage(page, generation)),
+                    Math.max(0, dueNs - prewarmLeadNs - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void cancelPageChange() {
+        pageChangeGeneration++;
+        if (pageChange != null) {
+            pageChange.cancel(false);
+            pageChange = null;
+        }
+
+        if (prewarm != null) {
+            prewarm.cancel(false);
+            prewarm = null;
+        }
+    }
+
+    // Build the page that comes after the current page and let the application style, lay out and render it while it
+    // is hidden underneath the current page
+    private void prewarmNextPage(PageDescriptor page, long generation) {
+        if (generation != pageChangeGeneration || currentPage != page) {
+            return;
+        }
+
+        PageDescriptor nextPage = getNextPage(page);
+        if (nextPage == null || nextPage == page || nextPage == prewarmedPage) {
+            return;
+        }
+
+        Logger.log(LogLevel.DEBUG, CLASS_NAME, "Prewarming page: " + nextPage.getPageData().getTitle());
+        prewarmedPage = nextPage;
+        pageOutput.prewarmPage(materialize(nextPage));
+    }
+
+    // Page of this screen that comes after a page, following the rotation across the pages of other screens
+    private PageDescriptor getNextPage(PageDescriptor page) {
+        return RotationGraph.findNextPage(pages, nextPageIds, page);
+    }
+
+    // Log the rotation when it changes, warning about pages that it never reaches
+    private void updateRotationGraph() {
+        if (rootPage == null) {
+            return;
+        }
+
+        RotationGraph rotationGraph = RotationGraph.build(pages, nextPageIds, rootPage.getUniqueId());
+        String description = rotationGraph.toString();
+        if (!description.equals(rotationDescription)) {
+            rotationDescription = description;
+            Logger.log(rotationGraph.getUnreachable().isEmpty() ? LogLevel.INFO : LogLevel.WARNING, CLASS_NAME,
+                    "Page rotation changed: " + description);
+        }
+    }
+
+    private void changePage(PageDescriptor page, long dueNs, long generation) {
+        // The page change is stale if it was cancelled or the current page changed after it was scheduled, and the
+        // current page is not changed while it is held
+        if (generation != pageChangeGeneration || currentPage != page || held) {
+            return;
+        }
+
+        PageDescriptor nextPage = getNextPage(page);
+        if (nextPage == null) {
+            return;
+        }
+
+        // Time the next page from when this change was due so that rotation does not drift, unless it is running
+        // late (e.g. the next page has only just been added)
+        long nowNs = System.nanoTime();
+        pageViewStartTimeNs = nowNs - dueNs > LATE_PAGE_CHANGE_NS ? nowNs : dueNs;
+        previousPage = currentPage;
+        currentPage = nextPage;
+        showPage(currentPage, previousPage);
+        schedulePageChange();
+        updateRotationGraph();
     }
 }
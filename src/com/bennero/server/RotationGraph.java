@@ -0,0 +1,164 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server;
+
+import com.bennero.server.pages.PageDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RotationGraph is the order that pages are rotated through, found by following the next page of each page from a
+ * starting page. Every page has one next page, so the rotation either returns to a page that has already been shown
+ * (a cycle, not necessarily back to the starting page) or stops at a page that is shown indefinitely, either because
+ * it has no duration, it is its own next page or its next page does not exist. Pages that are never reached from the
+ * starting page are reported as unreachable.
+ * <p>
+ * When pages are split across screens, the rotation of a screen only includes its own pages. A next page shown on
+ * another screen is skipped by following its next page, until a page of the screen is reached.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+class RotationGraph {
+    private final List<Byte> rotation;
+    private final byte cycleStartPageId;
+    private final boolean cyclic;
+    private final Set<Byte> unreachable;
+
+    private RotationGraph(List<Byte> rotation, boolean cyclic, byte cycleStartPageId, Set<Byte> unreachable) {
+        this.rotation = rotation;
+        this.cyclic = cyclic;
+        this.cycleStartPageId = cycleStartPageId;
+        this.unreachable = unreachable;
+    }
+
+    /**
+     * Find the rotation of a set of pages
+     *
+     * @param pages       Pages by ID
+     * @param nextPageIds Next page IDs of every page, including pages on other screens
+     * @param startPageId ID of the page that the rotation starts from
+     * @return The rotation graph
+     */
+    public static RotationGraph build(Map<Byte, PageDescriptor> pages, Map<Byte, Byte> nextPageIds, byte startPageId) {
+        List<Byte> rotation = new ArrayList<>();
+        Set<Byte> visited = new LinkedHashSet<>();
+        boolean cyclic = false;
+        byte pageId = startPageId;
+        while (pages.containsKey(pageId)) {
+            if (!visited.add(pageId)) {
+                cyclic = true;
+                break;
+            }
+
+            rotation.add(pageId);
+            PageDescriptor page = pages.get(pageId);
+            PageDescriptor nextPage = findNextPage(pages, nextPageIds, page);
+            if (page.getPageData().getDurationMs() == 0 || nextPage == null || nextPage == page) {
+                break;
+            }
+
+            pageId = nextPage.getUniqueId();
+        }
+
+        Set<Byte> unreachable = new LinkedHashSet<>(pages.keySet());
+        unreachable.removeAll(visited);
+        return new RotationGraph(Collections.unmodifiableList(rotation), cyclic, pageId,
+                Collections.unmodifiableSet(unreachable));
+    }
+
+    /**
+     * Find the page that comes after a page, skipping pages that are not in the set (pages shown on other screens)
+     *
+     * @param pages       Pages by ID
+     * @param nextPageIds Next page IDs of every page, including pages on other screens
+     * @param page        Page to find the next page of
+     * @return The next page in the set, or null if following the next pages never reaches one
+     */
+    public static PageDescriptor findNextPage(Map<Byte, PageDescriptor> pages, Map<Byte, Byte> nextPageIds,
+                                              PageDescriptor page) {
+        byte pageId = page.getPageData().getNextPageId();
+        for (int skipped = 0; !pages.containsKey(pageId); skipped++) {
+            Byte nextPageId = nextPageIds.get(pageId);
+            if (nextPageId == null || skipped == nextPageIds.size()) {
+                return null;
+            }
+
+            pageId = nextPageId;
+        }
+
+        return pages.get(pageId);
+    }
+
+    /**
+     * @return IDs of the pages in the order that they are shown, from the starting page
+     */
+    public List<Byte> getRotation() {
+        return rotation;
+    }
+
+    /**
+     * @return True if the rotation repeats, false if it stops at a page
+     */
+    public boolean isCyclic() {
+        return cyclic;
+    }
+
+    /**
+     * @return ID of the page that the rotation repeats from if it is cyclic
+     */
+    public byte getCycleStartPageId() {
+        return cycleStartPageId;
+    }
+
+    /**
+     * @return IDs of pages that the rotation never reaches
+     */
+    public Set<Byte> getUnreachable() {
+        return unreachable;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("[ROTATION: ");
+        for (int i = 0; i < rotation.size(); i++) {
+            stringBuilder.append(i == 0 ? "" : " > ").append(rotation.get(i));
+        }
+
+        if (cyclic) {
+            stringBuilder.append(" > ").append(cycleStartPageId).append(" (repeats)");
+        } else if (!rotation.isEmpty()) {
+            stringBuilder.append(" (stops)");
+        }
+
+        stringBuilder.append("], [UNREACHABLE: ").append(unreachable).append("]");
+        return stringBuilder.toString();
+    }
+}
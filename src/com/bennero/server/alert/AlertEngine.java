@@ -0,0 +1,196 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.alert;
+
+import com.bennero.server.data.SensorDescriptor;
+import com.bennero.server.event.AlertEvent;
+import javafx.event.EventHandler;
+
+import java.util.Arrays;
+
+/**
+ * AlertEngine evaluates a threshold rule for every sensor that has a threshold, on the thread that receives sensor
+ * updates. A rule fires once the sensor has been at or over its threshold for the minimum duration, and stops firing
+ * once the sensor has been under its threshold by more than the hysteresis for the minimum duration, so a sensor
+ * hovering around its threshold does not make the alert flicker.
+ * <p>
+ * Rules and their state are held in fixed size primitive arrays indexed by sensor ID, so evaluating an update is a
+ * few comparisons with no allocation. The alert handler is only called when a rule starts or stops firing, which is
+ * when the application thread needs to change what is shown. Calls to every method apart from clear() must not
+ * overlap, e.g. they are made from the thread that receives sensor updates or under one lock.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see AlertEvent
+ * @since 1.2
+ */
+public class AlertEngine {
+    private static final int NUM_SENSOR_IDS = 256;
+
+    private static final byte NORMAL = 0;
+    private static final byte RAISING = 1;
+    private static final byte FIRING = 2;
+    private static final byte CLEARING = 3;
+
+    private final float hysteresisFraction;
+    private final long minimumDurationMs;
+    private final EventHandler<AlertEvent> alertChanged;
+
+    private final float[] thresholds;
+    private final float[] clearThresholds;
+    private final byte[] states;
+    private final long[] stateTimesMs;
+    private final float[] values;
+    private volatile boolean clearRequested;
+
+    /**
+     * Create an alert engine
+     *
+     * @param hysteresisFraction Fraction of the sensors range (or threshold, if it has no maximum) that the sensor must
+     *                           fall under its threshold by for the alert to stop
+     * @param minimumDurationMs  Time that a sensor must stay over, or under, its threshold for the alert to start, or
+     *                           stop
+     * @param alertChanged       Handler called when an alert starts or stops firing, on the thread that received the
+     *                           sensor update
+     */
+    public AlertEngine(float hysteresisFraction, long minimumDurationMs, EventHandler<AlertEvent> alertChanged) {
+        this.hysteresisFraction = hysteresisFraction;
+        this.minimumDurationMs = minimumDurationMs;
+        this.alertChanged = alertChanged;
+        this.thresholds = new float[NUM_SENSOR_IDS];
+        this.clearThresholds = new float[NUM_SENSOR_IDS];
+        this.states = new byte[NUM_SENSOR_IDS];
+        this.stateTimesMs = new long[NUM_SENSOR_IDS];
+        this.values = new float[NUM_SENSOR_IDS];
+        this.clearRequested = false;
+    }
+
+    /**
+     * Set the rule of a sensor from its threshold. Sensors without a threshold do not have a rule. The state of the
+     * rule is kept if the threshold has not changed, otherwise the rule starts again and an alert that was firing is
+     * stopped.
+     *
+     * @param sensorDescriptor Descriptor of the sensor
+     */
+    public void configure(SensorDescriptor sensorDescriptor) {
+        clearIfRequested();
+
+        final int index = toIndex(sensorDescriptor.getUniqueId());
+        final float threshold = sensorDescriptor.getThreshold();
+        if (threshold <= 0.0f) {
+            remove(sensorDescriptor.getUniqueId());
+            return;
+        }
+
+        if (thresholds[index] != threshold) {
+            final byte state = states[index];
+            if (state == FIRING || state == CLEARING) {
+                alertChanged.handle(new AlertEvent(sensorDescriptor.getUniqueId(), false, values[index],
+                        thresholds[index]));
+            }
+
+            float range = sensorDescriptor.getMax() > 0.0f ? sensorDescriptor.getMax() : threshold;
+            thresholds[index] = threshold;
+            clearThresholds[index] = threshold - range * hysteresisFraction;
+            states[index] = NORMAL;
+        }
+    }
+
+    /**
+     * Remove the rule of a sensor. An alert that is firing is not stopped, the application should stop showing it.
+     *
+     * @param sensorId ID of the sensor
+     */
+    public void remove(byte sensorId) {
+        final int index = toIndex(sensorId);
+        thresholds[index] = 0.0f;
+        states[index] = NORMAL;
+    }
+
+    /**
+     * Remove every rule, e.g. when the editor disconnects. May be called from any thread, the rules are removed before
+     * the next update is evaluated.
+     */
+    public void clear() {
+        clearRequested = true;
+    }
+
+    /**
+     * Evaluate the rule of a sensor against an update
+     *
+     * @param sensorId ID of the sensor
+     * @param timeMs   Time that the update was received at
+     * @param value    Value of the sensor
+     */
+    public void evaluate(byte sensorId, long timeMs, float value) {
+        clearIfRequested();
+
+        final int index = toIndex(sensorId);
+        final float threshold = thresholds[index];
+        if (threshold <= 0.0f) {
+            return;
+        }
+
+        values[index] = value;
+        final boolean over = value >= threshold;
+        final boolean clear = value < clearThresholds[index];
+        byte state = states[index];
+        if (state == NORMAL && over) {
+            state = setState(index, RAISING, timeMs);
+        } else if (state == RAISING && !over) {
+            state = setState(index, NORMAL, timeMs);
+        } else if (state == FIRING && clear) {
+            state = setState(index, CLEARING, timeMs);
+        } else if (state == CLEARING && !clear) {
+            state = setState(index, FIRING, timeMs);
+        }
+
+        if (timeMs - stateTimesMs[index] >= minimumDurationMs) {
+            if (state == RAISING) {
+                setState(index, FIRING, timeMs);
+                alertChanged.handle(new AlertEvent(sensorId, true, value, threshold));
+            } else if (state == CLEARING) {
+                setState(index, NORMAL, timeMs);
+                alertChanged.handle(new AlertEvent(sensorId, false, value, threshold));
+            }
+        }
+    }
+
+    private byte setState(int index, byte state, long timeMs) {
+        states[index] = state;
+        stateTimesMs[index] = timeMs;
+        return state;
+    }
+
+    private void clearIfRequested() {
+        if (clearRequested) {
+            clearRequested = false;
+            Arrays.fill(thresholds, 0.0f);
+            Arrays.fill(states, NORMAL);
+        }
+    }
+
+    private static int toIndex(byte sensorId) {
+        return sensorId & 0xFF;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.benchmark;
+
+import com.bennero.common.Constants;
+import com.bennero.common.PageData;
+import com.bennero.common.TransitionType;
+import com.bennero.server.data.SensorDescriptor;
+import com.bennero.server.event.PageSetupEvent;
+import com.bennero.server.event.SensorDataEvent;
+import com.bennero.server.event.SensorSetupEvent;
+import javafx.event.EventHandler;
+import javafx.scene.paint.Color;
+
+/**
+ * GeneratedLayout is the layout of pages and sensors that the headless runs (RenderBenchmark and PageSoakTest) send
+ * through the same event handlers that a connection uses. Every page has a full grid of sensors and links to the next
+ * page, so the pages rotate in order.
+ * <p>
+ * Options:
+ * <pre>
+ * --pages n              Number of pages (default 2)
+ * --rows n               Rows of sensors on each page (default 3)
+ * --columns n            Columns of sensors on each page (default 4)
+ * --skins a,b,...        Skins to give the sensors, in turn (default 0)
+ * --sensor-type n        Type of the sensors (default 0)
+ * --page-duration ms     Time each page is shown for (default 5000)
+ * --transition type      Transition type between pages (default cut)
+ * --transition-time ms   Duration of the transition between pages (default 1000)
+ * </pre>
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RenderBenchmark
+ * @see PageSoakTest
+ * @since 1.2
+ */
+class GeneratedLayout {
+    static final float SENSOR_MAX = 100.0f;
+    private static final int MAX_SENSORS = 256;
+
+    int pages = 2;
+    int rows = 3;
+    int columns = 4;
+    byte[] skins = {0};
+    byte sensorType = 0;
+    int pageDurationMs = 5000;
+    int transitionType = TransitionType.CUT;
+    int transitionTimeMs = 1000;
+
+    /**
+     * Apply an option if it is a layout option
+     *
+     * @param name  Name of the option
+     * @param value Value of the option
+     * @return True if the option is a layout option
+     */
+    boolean parseOption(String name, String value) {
+        switch (name.toLowerCase()) {
+            case "--pages":
+                pages = Integer.parseInt(value);
+                return true;
+            case "--rows":
+                rows = Integer.parseInt(value);
+                return true;
+            case "--columns":
+                columns = Integer.parseInt(value);
+                return true;
+            case "--skins":
+                String[] skinList = value.split(",");
+                skins = new byte[skinList.length];
+                for (int i = 0; i < skinList.length; i++) {
+                    skins[i] = Byte.parseByte(skinList[i].trim());
+                }
+                return true;
+            case "--sensor-type":
+                sensorType = Byte.parseByte(value);
+                return true;
+            case "--page-duration":
+                pageDurationMs = Integer.parseInt(value);
+                return true;
+            case "--transition":
+                transitionType = Integer.parseInt(value);
+                return true;
+            case "--transition-time":
+                transitionTimeMs = Integer.parseInt(value);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check that the layout can be sent
+     *
+     * @throws IllegalArgumentException if the layout has more sensors than there are sensor IDs
+     */
+    void validate() {
+        if (getSensorCount() > MAX_SENSORS) {
+            throw new IllegalArgumentException("Generated layout has more than " + MAX_SENSORS + " sensors");
+        }
+    }
+
+    int getSensorCount() {
+        return pages * rows * columns;
+    }
+
+    // Time for every page, and the transition to it, to be shown once
+    long getRotationMs() {
+        return (long) pages * (pageDurationMs + transitionTimeMs);
+    }
+
+    void send(EventHandler<PageSetupEvent> pageMessageReceived,
+              EventHandler<SensorSetupEvent> sensorMessageReceived) {
+        int sensorId = 0;
+        for (int pageId = 0; pageId < pages; pageId++) {
+            PageData pageData = new PageData((byte) pageId, Color.rgb(20, 20, 30), Color.WHITE, Color.LIGHTGRAY,
+                    rows, columns, (byte) ((pageId + 1) % pages), transitionType, transitionTimeMs, pageDurationMs,
+                    "Generated Page " + pageId, true, Constants.TEXT_ALIGNMENT_CENTER, "", false,
+                    Constants.TEXT_ALIGNMENT_CENTER, "");
+            pageMessageReceived.handle(new PageSetupEvent(pageData));
+
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    SensorDescriptor sensor = new SensorDescriptor((byte) sensorId, sensorType,
+                            skins[sensorId % skins.length], SENSOR_MAX, SENSOR_MAX * 0.8f, "Sensor " + sensorId,
+                            (byte) row, (byte) column, (byte) 1, (byte) 1);
+                    sensorMessageReceived.handle(new SensorSetupEvent((byte) pageId, sensor));
+                    sensorId++;
+                }
+            }
+        }
+    }
+
+    // Send a value for every sensor, each following its own sine wave
+    void sendUpdates(EventHandler<SensorDataEvent> sensorDataMessageReceived, double seconds) {
+        final int sensorCount = getSensorCount();
+        for (int id = 0; id < sensorCount; id++) {
+            float value = (float) (SENSOR_MAX / 2.0 * (1.0 + Math.sin(seconds + id)));
+            sensorDataMessageReceived.handle(new SensorDataEvent((byte) id, value));
+        }
+    }
+
+    String skinsToString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < skins.length; i++) {
+            builder.append(i == 0 ? "" : ",").append(skins[i]);
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.benchmark;
+
+import com.bennero.common.logging.LogLevel;
+import com.bennero.common.logging.Logger;
+import com.bennero.server.event.PageSetupEvent;
+import com.bennero.server.event.SensorDataEvent;
+import com.bennero.server.event.SensorSetupEvent;
+import com.bennero.server.ui.MainPaneManager;
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PageSoakTest checks that the scene graph stays flat while pages rotate for a long time. It is run through main() on
+ * the headless Monocle platform in the same way as RenderBenchmark, and sends the same generated layout, but with short
+ * page durations so that many rotations fit in a short run.
+ * <p>
+ * After every pulse the main pane is sampled, and the largest main pane child count, attached page count and total
+ * node count are kept for each rotation through the pages. The first rotation builds the page graphics and is not
+ * checked, the second is the baseline. The test fails (exit code 1) if, in any later rotation, the child count or
+ * attached page count differ from the baseline, the node count is greater than the baseline, or if the pages stop
+ * rotating.
+ * <p>
+ * Options, as well as the layout options of GeneratedLayout (with a page duration of 200ms and a transition time of
+ * 100ms by default):
+ * <pre>
+ * --rotations n          Rotations to check after the baseline (default 100)
+ * --update-rate hz       Updates per second sent for every sensor (default 10)
+ * --output file          Also write the report to a file
+ * </pre>
+ * The display options of RenderBenchmark can also be given, to soak test those modes.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see MainPaneManager
+ * @since 1.2
+ */
+public class PageSoakTest {
+    private static final String CLASS_NAME = PageSoakTest.class.getSimpleName();
+    private static final int DEFAULT_PAGE_DURATION_MS = 200;
+    private static final int DEFAULT_TRANSITION_TIME_MS = 100;
+
+    // Time allowed for each rotation before the pages are considered to have stopped rotating, as a multiple of the
+    // time that a rotation should take
+    private static final int ROTATION_TIMEOUT_FACTOR = 4;
+    private static final long MIN_ROTATION_TIMEOUT_MS = 10000;
+
+    private final MainPaneManager mainPaneManager;
+    private final EventHandler<PageSetupEvent> pageMessageReceived;
+    private final EventHandler<SensorSetupEvent> sensorMessageReceived;
+    private final EventHandler<SensorDataEvent> sensorDataMessageReceived;
+    private final GeneratedLayout layout = new GeneratedLayout();
+    private final Runnable pulseListener = this::sample;
+
+    private int rotations = 100;
+    private int updateRateHz = 10;
+    private String outputFile = null;
+
+    private ScheduledExecutorService executor;
+    private Scene scene;
+    private Node lastPage;
+    private int pageChanges;
+    private int rotation;
+    private int maxChildren;
+    private int maxAttachedPages;
+    private int maxNodes;
+    private int baselineChildren;
+    private int baselineAttachedPages;
+    private int baselineNodes;
+    private long lastRotationNs;
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * Create the soak test
+     *
+     * @param options                   Soak test options, see class documentation
+     * @param mainPaneManager           Main pane of the application, used to check that its node count stays flat
+     * @param pageMessageReceived       Handler that pages are sent to
+     * @param sensorMessageReceived     Handler that sensors are sent to
+     * @param sensorDataMessageReceived Handler that sensor updates are sent to
+     */
+    public PageSoakTest(List<String> options,
+                        MainPaneManager mainPaneManager,
+                        EventHandler<PageSetupEvent> pageMessageReceived,
+                        EventHandler<SensorSetupEvent> sensorMessageReceived,
+                        EventHandler<SensorDataEvent> sensorDataMessageReceived) {
+        this.mainPaneManager = mainPaneManager;
+        this.pageMessageReceived = pageMessageReceived;
+        this.sensorMessageReceived = sensorMessageReceived;
+        this.sensorDataMessageReceived = sensorDataMessageReceived;
+        layout.pageDurationMs = DEFAULT_PAGE_DURATION_MS;
+        layout.transitionTimeMs = DEFAULT_TRANSITION_TIME_MS;
+
+        for (int i = 0; i + 1 < options.size(); i += 2) {
+            String value = options.get(i + 1);
+            if (layout.parseOption(options.get(i), value)) {
+                continue;
+            }
+
+            switch (options.get(i).toLowerCase()) {
+                case "--rotations":
+                    rotations = Integer.parseInt(value);
+                    break;
+                case "--update-rate":
+                    updateRateHz = Integer.parseInt(value);
+                    break;
+                case "--output":
+                    outputFile = value;
+                    break;
+                default:
+                    Logger.log(LogLevel.WARNING, CLASS_NAME, "Unknown soak test option: " + options.get(i));
+                    break;
+            }
+        }
+
+        layout.validate();
+    }
+
+    /**
+     * Render in software through the headless Monocle platform and run the soak test in ApplicationCore
+     *
+     * @param args Soak test options, see class documentation
+     */
+    public static void main(String[] args) {
+        RenderBenchmark.launchHeadless(args, "--soak");
+    }
+
+    /**
+     * Send the layout, start driving sensor updates and sample the main pane after every pulse. Must be called on the
+     * JavaFX application thread.
+     *
+     * @param scene Scene that the main pane is in
+     */
+    public void start(Scene scene) {
+        Logger.logf(LogLevel.INFO, CLASS_NAME, "Starting soak test: [PAGES: %d], [GRID: %dx%d], [ROTATIONS: %d]",
+                layout.pages, layout.rows, layout.columns, rotations);
+
+        this.scene = scene;
+        layout.send(pageMessageReceived, sensorMessageReceived);
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, CLASS_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long startNs = System.nanoTime();
+        executor.scheduleAtFixedRate(() -> layout.sendUpdates(sensorDataMessageReceived,
+                (System.nanoTime() - startNs) / 1_000_000_000.0), 0, 1_000_000 / Math.max(1, updateRateHz),
+                TimeUnit.MICROSECONDS);
+
+        // Fail rather than wait forever if the pages stop rotating
+        final long rotationTimeoutMs = Math.max(MIN_ROTATION_TIMEOUT_MS,
+                layout.getRotationMs() * ROTATION_TIMEOUT_FACTOR);
+        lastRotationNs = System.nanoTime();
+        executor.scheduleAtFixedRate(() -> Platform.runLater(() -> {
+            if (System.nanoTime() - lastRotationNs > TimeUnit.MILLISECONDS.toNanos(rotationTimeoutMs)) {
+                failures.add("pages stopped rotating after " + rotation + " rotations");
+                finish();
+            }
+        }), rotationTimeoutMs, rotationTimeoutMs, TimeUnit.MILLISECONDS);
+
+        scene.addPostLayoutPulseListener(pulseListener);
+    }
+
+    private void sample() {
+        Node currentPage = mainPaneManager.getCurrentPage();
+        if (currentPage != null && currentPage != lastPage) {
+            lastPage = currentPage;
+            pageChanges++;
+
+            // The first page change shows the first page, every rotation after that ends when it is shown again
+            if (pageChanges > 1 && (pageChanges - 1) % layout.pages == 0) {
+                endRotation();
+                if (executor.isShutdown()) {
+                    return;
+                }
+            }
+        }
+
+        if (pageChanges > 0) {
+            maxChildren = Math.max(maxChildren, mainPaneManager.getChildCount());
+            maxAttachedPages = Math.max(maxAttachedPages, mainPaneManager.getAttachedPageCount());
+            maxNodes = Math.max(maxNodes, mainPaneManager.getNodeCount());
+        }
+    }
+
+    private void endRotation() {
+        rotation++;
+        lastRotationNs = System.nanoTime();
+        if (rotation == 2) {
+            baselineChildren = maxChildren;
+            baselineAttachedPages = maxAttachedPages;
+            baselineNodes = maxNodes;
+        } else if (rotation > 2) {
+            if (maxChildren != baselineChildren || maxAttachedPages != baselineAttachedPages ||
+                    maxNodes > baselineNodes) {
+                failures.add(String.format("rotation %d had children=%d attachedPages=%d nodes=%d", rotation - 2,
+                        maxChildren, maxAttachedPages, maxNodes));
+            }
+        }
+
+        maxChildren = 0;
+        maxAttachedPages = 0;
+        maxNodes = 0;
+        if (rotation >= rotations + 2) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (executor.isShutdown()) {
+            return;
+        }
+
+        executor.shutdownNow();
+        scene.removePostLayoutPulseListener(pulseListener);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("pages=%d grid=%dx%d skins=%s transition=%d/%dms pageDurationMs=%d " +
+                        "rotations=%d%n", layout.pages, layout.rows, layout.columns, layout.skinsToString(),
+                layout.transitionType, layout.transitionTimeMs, layout.pageDurationMs, Math.max(0, rotation - 2)));
+        report.append(String.format("baseline children=%d attachedPages=%d nodes=%d%n", baselineChildren,
+                baselineAttachedPages, baselineNodes));
+        report.append("result=").append(failures.isEmpty() ? "PASS" : "FAIL " + String.join("; ", failures));
+
+        Logger.log(LogLevel.INFO, CLASS_NAME, "Soak test complete\n" + report);
+
+        if (outputFile != null) {
+            try (FileWriter writer = new FileWriter(outputFile)) {
+                writer.write(report.append(System.lineSeparator()).toString());
+            } catch (IOException e) {
+                Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to write soak test report to: " + outputFile);
+                Logger.log(LogLevel.DEBUG, CLASS_NAME, e.getMessage());
+            }
+        }
+
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.benchmark;
+
+import com.bennero.common.logging.LogLevel;
+import com.bennero.common.logging.Logger;
+import com.bennero.server.ApplicationCore;
+import com.bennero.server.event.PageSetupEvent;
+import com.bennero.server.event.SensorDataEvent;
+import com.bennero.server.event.SensorSetupEvent;
+import com.bennero.server.metrics.RenderMetrics;
+import com.bennero.server.metrics.SampleWindow;
+import com.bennero.server.ui.MainPaneManager;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RenderBenchmark measures the rendering cost of sensor pages without a physical screen. It is run through main(),
+ * which boots ApplicationCore on the headless Monocle platform with the software renderer, so it can run on a Linux
+ * machine with no display or GPU (Monocle must be on the class path, e.g. the openjfx-monocle artifact).
+ * <p>
+ * Instead of connecting to an editor, ApplicationCore hands the benchmark the same event handlers that a connection
+ * uses. The benchmark sends a layout of pages with a configurable grid size and mix of skins through them, then drives
+ * sensor updates from its own thread like a connection would. After a warm-up (by default long enough for every page
+ * to be shown once), it records pulse durations, frame intervals, frames rendered and FX queue latency, and reports
+ * them when the run ends.
+ * <p>
+ * The run fails (exit code 1) if the main pane node count grows after the warm-up, if more than two pages are ever
+ * attached to the main pane, or if the 99th percentile pulse duration exceeds --max-pulse-ms when it is given.
+ * <p>
+ * Options, as well as the layout options of GeneratedLayout:
+ * <pre>
+ * --update-rate hz       Updates per second sent for every sensor (default 10)
+ * --warmup ms            Time before measurements start (default one rotation of the pages)
+ * --duration ms          Time that measurements are taken for (default 30000)
+ * --max-pulse-ms ms      Fail if the 99th percentile pulse duration is greater than this
+ * --output file          Also write the report to a file
+ * </pre>
+ * The display options --canvas-gauges, --surface-pages, --snapshot-transitions, --adaptive-quality and
+ * --render-scale scale can also be given, to benchmark those modes.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RenderMetrics
+ * @since 1.2
+ */
+public class RenderBenchmark {
+    private static final String CLASS_NAME = RenderBenchmark.class.getSimpleName();
+    private static final long NODE_SAMPLE_PERIOD_MS = 250;
+    private static final List<String> DISPLAY_OPTIONS = List.of("--canvas-gauges", "--surface-pages",
+            "--snapshot-transitions", "--adaptive-quality");
+    private static final List<String> DISPLAY_VALUE_OPTIONS = List.of("--render-scale");
+
+    private final MainPaneManager mainPaneManager;
+    private final EventHandler<PageSetupEvent> pageMessageReceived;
+    private final EventHandler<SensorSetupEvent> sensorMessageReceived;
+    private final EventHandler<SensorDataEvent> sensorDataMessageReceived;
+
+    private final GeneratedLayout layout = new GeneratedLayout();
+    private int updateRateHz = 10;
+    private long warmupMs = -1;
+    private long durationMs = 30000;
+    private double maxPulseMs = 0;
+    private String outputFile = null;
+
+    private ScheduledExecutorService executor;
+    private RenderMetrics metrics;
+    private boolean measuring;
+    private int warmupMaxNodes;
+    private int measuredMaxNodes;
+    private int maxAttachedPages;
+
+    // Only used by the executor thread, the count is handed to the JavaFX application thread when the benchmark ends
+    private long updatesSent;
+
+    /**
+     * Create the benchmark
+     *
+     * @param options                   Benchmark options, see class documentation
+     * @param mainPaneManager           Main pane of the application, used to check that its node count stays flat
+     * @param pageMessageReceived       Handler that pages are sent to
+     * @param sensorMessageReceived     Handler that sensors are sent to
+     * @param sensorDataMessageReceived Handler that sensor updates are sent to
+     */
+    public RenderBenchmark(List<String> options,
+                           MainPaneManager mainPaneManager,
+                           EventHandler<PageSetupEvent> pageMessageReceived,
+                           EventHandler<SensorSetupEvent> sensorMessageReceived,
+                           EventHandler<SensorDataEvent> sensorDataMessageReceived) {
+        this.mainPaneManager = mainPaneManager;
+        this.pageMessageReceived = pageMessageReceived;
+        this.sensorMessageReceived = sensorMessageReceived;
+        this.sensorDataMessageReceived = sensorDataMessageReceived;
+
+        for (int i = 0; i + 1 < options.size(); i += 2) {
+            String value = options.get(i + 1);
+            if (layout.parseOption(options.get(i), value)) {
+                continue;
+            }
+
+            switch (options.get(i).toLowerCase()) {
+                case "--update-rate":
+                    updateRateHz = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmupMs = Long.parseLong(value);
+                    break;
+                case "--duration":
+                    durationMs = Long.parseLong(value);
+                    break;
+                case "--max-pulse-ms":
+                    maxPulseMs = Double.parseDouble(value);
+                    break;
+                case "--output":
+                    outputFile = value;
+                    break;
+                default:
+                    Logger.log(LogLevel.WARNING, CLASS_NAME, "Unknown benchmark option: " + options.get(i));
+                    break;
+            }
+        }
+
+        layout.validate();
+
+        // By default, give every page (and the transition to it) the chance to be shown before measuring
+        if (warmupMs < 0) {
+            warmupMs = layout.getRotationMs();
+        }
+    }
+
+    /**
+     * Render in software through the headless Monocle platform and run the benchmark in ApplicationCore
+     *
+     * @param args Benchmark options, see class documentation
+     */
+    public static void main(String[] args) {
+        launchHeadless(args, "--benchmark");
+    }
+
+    /**
+     * Launch ApplicationCore on the headless platform in a mode that runs without an editor
+     *
+     * @param args     Display options followed by the options of the mode
+     * @param modeFlag Flag of the mode, e.g. --benchmark
+     */
+    static void launchHeadless(String[] args, String modeFlag) {
+        // Properties given on the command line take priority
+        setDefaultProperty("glass.platform", "Monocle");
+        setDefaultProperty("monocle.platform", "Headless");
+        setDefaultProperty("prism.order", "sw");
+
+        // Display options are given to ApplicationCore before the mode flag, everything after it is an option of the
+        // mode
+        List<String> launchArgs = new ArrayList<>();
+        List<String> modeArgs = new ArrayList<>();
+        launchArgs.add("--windowed");
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (DISPLAY_OPTIONS.contains(arg.toLowerCase())) {
+                launchArgs.add(arg);
+            } else if (DISPLAY_VALUE_OPTIONS.contains(arg.toLowerCase()) && i + 1 < args.length) {
+                launchArgs.add(arg);
+                launchArgs.add(args[++i]);
+            } else {
+                modeArgs.add(arg);
+            }
+        }
+
+        launchArgs.add(modeFlag);
+        launchArgs.addAll(modeArgs);
+        Application.launch(ApplicationCore.class, launchArgs.toArray(new String[0]));
+    }
+
+    private static void setDefaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Send the benchmark layout and start driving sensor updates. Must be called on the JavaFX application thread.
+     *
+     * @param scene Scene to measure
+     */
+    public void start(Scene scene) {
+        Logger.logf(LogLevel.INFO, CLASS_NAME, "Starting benchmark: [PAGES: %d], [GRID: %dx%d], [UPDATE RATE: %dHz], " +
+                "[WARMUP: %dms], [DURATION: %dms]", layout.pages, layout.rows, layout.columns, updateRateHz, warmupMs,
+                durationMs);
+
+        // Enough room to keep every frame of the measured period at 60 frames per second, with some spare
+        metrics = new RenderMetrics((int) Math.min(Integer.MAX_VALUE, durationMs * 120 / 1000 + 1));
+        metrics.attach(scene);
+
+        layout.send(pageMessageReceived, sensorMessageReceived);
+        final int sensorCount = layout.getSensorCount();
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, CLASS_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long startNs = System.nanoTime();
+        executor.scheduleAtFixedRate(() -> {
+            layout.sendUpdates(sensorDataMessageReceived, (System.nanoTime() - startNs) / 1_000_000_000.0);
+
+            updatesSent += sensorCount;
+            metrics.probeQueueLatency();
+        }, 0, 1_000_000 / Math.max(1, updateRateHz), TimeUnit.MICROSECONDS);
+
+        executor.scheduleAtFixedRate(() -> Platform.runLater(this::sampleNodeCount), NODE_SAMPLE_PERIOD_MS,
+                NODE_SAMPLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+        executor.schedule(() -> {
+            updatesSent = 0;
+            Platform.runLater(this::startMeasuring);
+        }, warmupMs, TimeUnit.MILLISECONDS);
+        executor.schedule(() -> {
+            final long measuredUpdatesSent = updatesSent;
+            Platform.runLater(() -> finish(measuredUpdatesSent));
+        }, warmupMs + durationMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void sampleNodeCount() {
+        int nodes = mainPaneManager.getNodeCount();
+        if (measuring) {
+            measuredMaxNodes = Math.max(measuredMaxNodes, nodes);
+        } else {
+            warmupMaxNodes = Math.max(warmupMaxNodes, nodes);
+        }
+
+        maxAttachedPages = Math.max(maxAttachedPages, mainPaneManager.getAttachedPageCount());
+    }
+
+    private void startMeasuring() {
+        metrics.reset();
+        measuring = true;
+    }
+
+    private void finish(long updatesSent) {
+        executor.shutdownNow();
+        sampleNodeCount();
+        metrics.detach();
+
+        List<String> failures = new ArrayList<>();
+        if (measuredMaxNodes > warmupMaxNodes) {
+            failures.add("main pane node count grew from " + warmupMaxNodes + " to " + measuredMaxNodes);
+        }
+
+        if (maxAttachedPages > 2) {
+            failures.add(maxAttachedPages + " pages were attached to the main pane at once");
+        }
+
+        double p99PulseMs = toMs(metrics.getPulseDurations().getPercentile(99));
+        if (maxPulseMs > 0 && p99PulseMs > maxPulseMs) {
+            failures.add(String.format("99th percentile pulse duration %.2fms exceeds %.2fms", p99PulseMs,
+                    maxPulseMs));
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("pages=%d grid=%dx%d skins=%s updateRateHz=%d transition=%d/%dms " +
+                        "durationMs=%d%n", layout.pages, layout.rows, layout.columns, layout.skinsToString(),
+                updateRateHz, layout.transitionType, layout.transitionTimeMs, durationMs));
+        report.append(String.format("frames=%d fps=%.1f updates=%d%n", metrics.getFrameCount(),
+                metrics.getFramesPerSecond(), updatesSent));
+        appendStatistics(report, "pulse", metrics.getPulseDurations());
+        appendStatistics(report, "frameInterval", metrics.getFrameIntervals());
+        appendStatistics(report, "fxQueueLatency", metrics.getQueueLatencies());
+        report.append(String.format("nodes warmupMax=%d measuredMax=%d attachedPagesMax=%d%n", warmupMaxNodes,
+                measuredMaxNodes, maxAttachedPages));
+        report.append("result=").append(failures.isEmpty() ? "PASS" : "FAIL " + String.join("; ", failures));
+
+        Logger.log(LogLevel.INFO, CLASS_NAME, "Benchmark complete\n" + report);
+
+        if (outputFile != null) {
+            try (FileWriter writer = new FileWriter(outputFile)) {
+                writer.write(report.append(System.lineSeparator()).toString());
+            } catch (IOException e) {
+                Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to write benchmark report to: " + outputFile);
+                Logger.log(LogLevel.DEBUG, CLASS_NAME, e.getMessage());
+            }
+        }
+
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private void appendStatistics(StringBuilder report, String name, SampleWindow samples) {
+        report.append(String.format("%s samples=%d meanMs=%.3f p50Ms=%.3f p99Ms=%.3f maxMs=%.3f%n", name,
+                samples.getCount(), toMs(Math.round(samples.getMean())), toMs(samples.getPercentile(50)),
+                toMs(samples.getPercentile(99)), toMs(samples.getMax())));
+    }
+
+    private static double toMs(long nanoseconds) {
+        return nanoseconds / 1_000_000.0;
+    }
+}
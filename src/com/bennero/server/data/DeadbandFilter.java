@@ -0,0 +1,188 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.data;
+
+import com.bennero.common.Skin;
+import com.bennero.common.SkinHelper;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * DeadbandFilter drops sensor updates that would not visibly change their sensor, so that work on the JavaFX
+ * application thread follows what can be seen rather than the rate that data arrives. An update is passed on when,
+ * compared to the last value that was passed on for the sensor, it changes:
+ * <ul>
+ *     <li>a digit of the displayed value (at DISPLAY_DECIMALS decimal places), or</li>
+ *     <li>a pixel of the gauge, worked out from the sensor max and the size that the gauge is drawn at</li>
+ * </ul>
+ * and, if an epsilon is configured, it differs from the last value by at least the epsilon.
+ * <p>
+ * The gauge size is estimated from the display size, the page grid and the sensor span, and its skin (needle skins
+ * sweep an arc, bar skins fill the width of their cell, other skins only show digits). Sensors that have not been
+ * configured, or that average their values (every sample contributes to the average), always have their updates passed
+ * on.
+ * <p>
+ * filter() is only ever called by the thread that receives sensor updates, so its check and update of the last value
+ * has a single writer. The other methods are called by the JavaFX application thread, reset() whenever the sensor
+ * graphics are given a value that did not pass through filter(), e.g. a stored value applied when a page is shown or
+ * an update that the quality governor deferred.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see SensorValueStore
+ * @since 1.2
+ */
+public class DeadbandFilter {
+    // Decimal places that sensor values are shown with
+    public static final int DISPLAY_DECIMALS = 1;
+
+    private static final int NUM_SENSOR_IDS = 256;
+    private static final int NO_VALUE = Float.floatToRawIntBits(Float.NaN);
+    private static final int NOT_CONFIGURED = Float.floatToRawIntBits(-1.0f);
+    private static final float DIGIT_STEP = (float) Math.pow(10, -DISPLAY_DECIMALS);
+
+    // Fraction of the cell size that a needle sweeps (a 270 degree arc over a diameter of the cell)
+    private static final double ARC_SWEEP_FACTOR = Math.PI * 0.75;
+
+    private final double displayWidth;
+    private final double displayHeight;
+    private final float epsilon;
+    private final AtomicIntegerArray pixelsPerUnit;
+    private final AtomicIntegerArray lastValues;
+
+    /**
+     * Create a deadband filter
+     *
+     * @param displayWidth  Width of the display in pixels
+     * @param displayHeight Height of the display in pixels
+     * @param epsilon       Smallest change in value that is passed on, or 0 to only filter on the displayed change
+     */
+    public DeadbandFilter(double displayWidth, double displayHeight, float epsilon) {
+        this.displayWidth = displayWidth;
+        this.displayHeight = displayHeight;
+        this.epsilon = epsilon;
+        this.pixelsPerUnit = new AtomicIntegerArray(NUM_SENSOR_IDS);
+        this.lastValues = new AtomicIntegerArray(NUM_SENSOR_IDS);
+        clear();
+    }
+
+    /**
+     * Configure the filter for a sensor, when it is added or its page or position changes
+     *
+     * @param sensorDescriptor Descriptor of the sensor
+     * @param rows             Rows of the page that the sensor is on
+     * @param columns          Columns of the page that the sensor is on
+     */
+    public void configure(SensorDescriptor sensorDescriptor, int rows, int columns) {
+        if (sensorDescriptor.isAverageEnabled()) {
+            remove(sensorDescriptor.getUniqueId());
+            return;
+        }
+
+        double cellWidth = displayWidth / Math.max(1, columns) * sensorDescriptor.getColumnSpan();
+        double cellHeight = displayHeight / Math.max(1, rows) * sensorDescriptor.getRowSpan();
+
+        double sweepPixels = 0.0;
+        byte skin = sensorDescriptor.getSkin();
+        if (SkinHelper.checkSupport(skin, Skin.NEEDLE_COLOUR_SUPPORTED)) {
+            sweepPixels = Math.min(cellWidth, cellHeight) * ARC_SWEEP_FACTOR;
+        } else if (SkinHelper.checkSupport(skin, Skin.BAR_COLOUR_SUPPORTED)) {
+            sweepPixels = cellWidth;
+        }
+
+        float max = sensorDescriptor.getMax();
+        float scale = max > 0.0f ? (float) (sweepPixels / max) : 0.0f;
+        final int index = toIndex(sensorDescriptor.getUniqueId());
+        pixelsPerUnit.set(index, Float.floatToRawIntBits(scale));
+        lastValues.set(index, NO_VALUE);
+    }
+
+    /**
+     * Forget the last value passed on for a sensor, so that its next update is passed on. Should be called when the
+     * sensor graphics are given a value by other means (e.g. the stored value when its page is shown).
+     *
+     * @param sensorId ID of the sensor
+     */
+    public void reset(byte sensorId) {
+        lastValues.set(toIndex(sensorId), NO_VALUE);
+    }
+
+    /**
+     * Remove the configuration of a sensor, its updates are always passed on
+     *
+     * @param sensorId ID of the sensor
+     */
+    public void remove(byte sensorId) {
+        final int index = toIndex(sensorId);
+        pixelsPerUnit.set(index, NOT_CONFIGURED);
+        lastValues.set(index, NO_VALUE);
+    }
+
+    public void clear() {
+        for (int i = 0; i < NUM_SENSOR_IDS; i++) {
+            pixelsPerUnit.set(i, NOT_CONFIGURED);
+            lastValues.set(i, NO_VALUE);
+        }
+    }
+
+    /**
+     * Check if an update visibly changes a sensor
+     *
+     * @param sensorId ID of the sensor
+     * @param value    Updated value
+     * @return True if the update should be passed on to the sensor graphics
+     */
+    public boolean filter(byte sensorId, float value) {
+        final int index = toIndex(sensorId);
+        final int lastBits = lastValues.get(index);
+        final int scaleBits = pixelsPerUnit.get(index);
+        if (scaleBits == NOT_CONFIGURED) {
+            return true;
+        }
+
+        if (lastBits == NO_VALUE) {
+            lastValues.set(index, Float.floatToRawIntBits(value));
+            return true;
+        }
+
+        final float scale = Float.intBitsToFloat(scaleBits);
+        final float last = Float.intBitsToFloat(lastBits);
+        if (epsilon > 0.0f && Math.abs(value - last) < epsilon) {
+            return false;
+        }
+
+        boolean digitChanged = Math.round(value / DIGIT_STEP) != Math.round(last / DIGIT_STEP);
+        boolean pixelChanged = scale > 0.0f && Math.round(value * scale) != Math.round(last * scale);
+        if (digitChanged || pixelChanged) {
+            lastValues.set(index, Float.floatToRawIntBits(value));
+            return true;
+        }
+
+        return false;
+    }
+
+    private static int toIndex(byte sensorId) {
+        return sensorId & 0xFF;
+    }
+}
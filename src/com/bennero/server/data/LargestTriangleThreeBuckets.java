@@ -0,0 +1,105 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.data;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of a series of values, as described by Sveinn Steinarsson. The first and
+ * last values are kept and the values in between are split into equal sized buckets. From each bucket, the value that
+ * forms the largest triangle with the value kept from the previous bucket and the average of the next bucket is kept.
+ * This keeps the peaks and troughs that make up the visible shape of the series, so drawing a long series costs the
+ * same as drawing the number of points that it is downsampled to.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see SensorHistory
+ * @since 1.2
+ */
+public final class LargestTriangleThreeBuckets {
+    private LargestTriangleThreeBuckets() {
+    }
+
+    /**
+     * Downsample a series of values. If there are no more values than points, the values are copied as they are.
+     *
+     * @param times     Times of the values, in ascending order
+     * @param values    Values
+     * @param size      Number of values in the series
+     * @param outTimes  Destination of the times of the points
+     * @param outValues Destination of the values of the points
+     * @param points    Maximum number of points, at least 3 for the series to be downsampled
+     * @return Number of points
+     */
+    public static int downsample(long[] times, float[] values, int size, long[] outTimes, float[] outValues,
+                                 int points) {
+        if (size <= points || points < 3) {
+            int count = Math.min(size, points);
+            System.arraycopy(times, size - count, outTimes, 0, count);
+            System.arraycopy(values, size - count, outValues, 0, count);
+            return count;
+        }
+
+        // Times are relative to the first value so the triangle areas are calculated on small numbers
+        final long origin = times[0];
+        final double bucketSize = (double) (size - 2) / (points - 2);
+        int kept = 0;
+        outTimes[0] = times[0];
+        outValues[0] = values[0];
+
+        for (int bucket = 0; bucket < points - 2; bucket++) {
+            // Average of the next bucket, which is the last value for the last bucket
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(size, (int) ((bucket + 2) * bucketSize) + 1);
+            double averageTime = 0.0;
+            double averageValue = 0.0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageTime += times[i] - origin;
+                averageValue += values[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            averageTime /= nextCount;
+            averageValue /= nextCount;
+
+            double keptTime = times[kept] - origin;
+            double keptValue = values[kept];
+            int start = (int) (bucket * bucketSize) + 1;
+            double largestArea = -1.0;
+            int largest = start;
+            for (int i = start; i < nextStart; i++) {
+                double area = Math.abs((keptTime - averageTime) * (values[i] - keptValue) -
+                        (keptTime - (times[i] - origin)) * (averageValue - keptValue));
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = i;
+                }
+            }
+
+            outTimes[bucket + 1] = times[largest];
+            outValues[bucket + 1] = values[largest];
+            kept = largest;
+        }
+
+        outTimes[points - 1] = times[size - 1];
+        outValues[points - 1] = values[size - 1];
+        return points;
+    }
+}
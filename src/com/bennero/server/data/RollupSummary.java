@@ -0,0 +1,77 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.data;
+
+/**
+ * RollupSummary is the minimum, maximum, average and count of the values of a sensor over a period, as returned by a
+ * SensorRollups query. A summary can be reused for many queries so that querying does not allocate.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see SensorRollups
+ * @since 1.2
+ */
+public class RollupSummary {
+    private float min;
+    private float max;
+    private double sum;
+    private long count;
+
+    public RollupSummary() {
+        reset();
+    }
+
+    public void reset() {
+        min = Float.POSITIVE_INFINITY;
+        max = Float.NEGATIVE_INFINITY;
+        sum = 0.0;
+        count = 0;
+    }
+
+    void add(float min, float max, double sum, long count) {
+        this.min = Math.min(this.min, min);
+        this.max = Math.max(this.max, max);
+        this.sum += sum;
+        this.count += count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public float getMin() {
+        return count > 0 ? min : Float.NaN;
+    }
+
+    public float getMax() {
+        return count > 0 ? max : Float.NaN;
+    }
+
+    public float getAverage() {
+        return count > 0 ? (float) (sum / count) : Float.NaN;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.data;
+
+import com.bennero.common.Sensor;
+import com.bennero.common.Skin;
+import com.bennero.common.SkinHelper;
+import com.bennero.common.messages.SensorCreateMessage;
+import javafx.scene.paint.Color;
+
+/**
+ * SensorDescriptor holds everything that is needed to create a sensor, without creating the sensor graphics. It is
+ * built from a SensorCreateMessage when it is received so that the sensor graphics only have to exist while the page
+ * that the sensor is on is in use. Colours that are not supported by the sensors skin are null.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see SensorCreateMessage
+ * @see Sensor
+ * @since 1.2
+ */
+public class SensorDescriptor {
+    private final byte uniqueId;
+    private final byte type;
+    private final byte skin;
+    private final float max;
+    private final float threshold;
+    private final String title;
+    private final boolean averageEnabled;
+    private final int averagingPeriodMs;
+    private final float initialValue;
+    private byte row;
+    private byte column;
+    private byte rowSpan;
+    private byte columnSpan;
+
+    private Color foregroundColour;
+    private Color averageColour;
+    private Color needleColour;
+    private Color valueColour;
+    private Color unitColour;
+    private Color knobColour;
+    private Color barColour;
+    private Color thresholdColour;
+    private Color titleColour;
+    private Color barBackgroundColour;
+    private Color tickLabelColour;
+    private Color tickMarkColour;
+
+    public SensorDescriptor(final SensorCreateMessage message) {
+        uniqueId = message.getSensorId();
+        type = message.getSensorType();
+        skin = message.getSkin();
+        max = message.getMax();
+        threshold = message.getThreshold();
+        title = message.getTitle();
+        averageEnabled = message.isAverageEnabled();
+        averagingPeriodMs = message.getAveragingPeriodMs();
+        initialValue = message.getInitialValue();
+        row = message.getRow();
+        column = message.getColumn();
+        rowSpan = message.getRowSpan();
+        columnSpan = message.getColumnSpan();
+
+        // Only process each sensor colour if it is supported by the skin that has been received
+        if (SkinHelper.checkSupport(skin, Skin.FOREGROUND_BASE_COLOUR_SUPPORTED)) {
+            foregroundColour = toColor(message.getForegroundColourR(), message.getForegroundColourG(), message.getForegroundColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.AVERAGE_COLOUR_SUPPORTED)) {
+            averageColour = toColor(message.getAverageColourR(), message.getAverageColourG(), message.getAverageColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.NEEDLE_COLOUR_SUPPORTED)) {
+            needleColour = toColor(message.getNeedleColourR(), message.getNeedleColourG(), message.getNeedleColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.VALUE_COLOUR_SUPPORTED)) {
+            valueColour = toColor(message.getValueColourR(), message.getValueColourG(), message.getValueColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.UNIT_COLOUR_SUPPORTED)) {
+            unitColour = toColor(message.getUnitColourR(), message.getUnitColourG(), message.getUnitColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.KNOB_COLOUR_SUPPORTED)) {
+            knobColour = toColor(message.getKnobColourR(), message.getKnobColourG(), message.getKnobColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.BAR_COLOUR_SUPPORTED)) {
+            barColour = toColor(message.getBarColourR(), message.getBarColourG(), message.getBarColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.THRESHOLD_COLOUR_SUPPORTED)) {
+            thresholdColour = toColor(message.getThresholdColourR(), message.getThresholdColourG(), message.getThresholdColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.TITLE_COLOUR_SUPPORTED)) {
+            titleColour = toColor(message.getTitleColourR(), message.getTitleColourG(), message.getTitleColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.BAR_BACKGROUND_COLOUR_SUPPORTED)) {
+            barBackgroundColour = toColor(message.getBarBackgroundColourR(), message.getBarBackgroundColourG(), message.getBarBackgroundColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.TICK_LABEL_COLOUR_SUPPORTED)) {
+            tickLabelColour = toColor(message.getTickLabelColourR(), message.getTickLabelColourG(), message.getTickLabelColourB());
+        }
+
+        if (SkinHelper.checkSupport(skin, Skin.TICK_MARK_COLOUR_SUPPORTED)) {
+            tickMarkColour = toColor(message.getTickMarkColourR(), message.getTickMarkColourG(), message.getTickMarkColourB());
+        }
+    }
+
+    /**
+     * Create a sensor descriptor that uses the default colours of its skin
+     *
+     * @param uniqueId   ID of the sensor
+     * @param type       Type of the sensor
+     * @param skin       Skin of the sensor
+     * @param max        Maximum value of the sensor
+     * @param threshold  Threshold of the sensor
+     * @param title      Title of the sensor
+     * @param row        Row that the sensor is positioned at on its page
+     * @param column     Column that the sensor is positioned at on its page
+     * @param rowSpan    Number of rows that the sensor covers
+     * @param columnSpan Number of columns that the sensor covers
+     */
+    public SensorDescriptor(byte uniqueId, byte type, byte skin, float max, float threshold, String title, byte row,
+                            byte column, byte rowSpan, byte columnSpan) {
+        this.uniqueId = uniqueId;
+        this.type = type;
+        this.skin = skin;
+        this.max = max;
+        this.threshold = threshold;
+        this.title = title;
+        this.averageEnabled = false;
+        this.averagingPeriodMs = 0;
+        this.initialValue = 0.0f;
+        this.row = row;
+        this.column = column;
+        this.rowSpan = rowSpan;
+        this.columnSpan = columnSpan;
+    }
+
+    /**
+     * Create the sensor graphics. Must be called on the JavaFX application thread.
+     *
+     * @return A new sensor
+     */
+    public Sensor createSensor() {
+        Sensor sensor = new Sensor(uniqueId, row, column, type, skin, max, threshold, title, title, averageEnabled,
+                averagingPeriodMs, rowSpan, columnSpan);
+        sensor.setValue(initialValue);
+
+        if (foregroundColour != null) {
+            sensor.setForegroundColour(foregroundColour);
+        }
+
+        if (averageColour != null) {
+            sensor.setAverageColour(averageColour);
+        }
+
+        if (needleColour != null) {
+            sensor.setNeedleColour(needleColour);
+        }
+
+        if (valueColour != null) {
+            sensor.setValueColour(valueColour);
+        }
+
+        if (unitColour != null) {
+            sensor.setUnitColour(unitColour);
+        }
+
+        if (knobColour != null) {
+            sensor.setKnobColour(knobColour);
+        }
+
+        if (barColour != null) {
+            sensor.setBarColour(barColour);
+        }
+
+        if (thresholdColour != null) {
+            sensor.setThresholdColour(thresholdColour);
+        }
+
+        if (titleColour != null) {
+            sensor.setTitleColour(titleColour);
+        }
+
+        if (barBackgroundColour != null) {
+            sensor.setBarBackgroundColour(barBackgroundColour);
+        }
+
+        if (tickLabelColour != null) {
+            sensor.setTickLabelColour(tickLabelColour);
+        }
+
+        if (tickMarkColour != null) {
+            sensor.setTickMarkColour(tickMarkColour);
+        }
+
+        return sensor;
+    }
+
+    public void setTransform(byte row, byte column, byte rowSpan, byte columnSpan) {
+        this.row = row;
+        this.column = column;
+        this.rowSpan = rowSpan;
+        this.columnSpan = columnSpan;
+    }
+
+    public byte getUniqueId() {
+        return uniqueId;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public byte getSkin() {
+        return skin;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean isAverageEnabled() {
+        return averageEnabled;
+    }
+
+    public int getAveragingPeriodMs() {
+        return averagingPeriodMs;
+    }
+
+    public float getInitialValue() {
+        return initialValue;
+    }
+
+    public byte getRow() {
+        return row;
+    }
+
+    public byte getColumn() {
+        return column;
+    }
+
+    public byte getRowSpan() {
+        return rowSpan;
+    }
+
+    public byte getColumnSpan() {
+        return columnSpan;
+    }
+
+    public Color getForegroundColour() {
+        return foregroundColour;
+    }
+
+    public Color getAverageColour() {
+        return averageColour;
+    }
+
+    public Color getNeedleColour() {
+        return needleColour;
+    }
+
+    public Color getValueColour() {
+        return valueColour;
+    }
+
+    public Color getUnitColour() {
+        return unitColour;
+    }
+
+    public Color getKnobColour() {
+        return knobColour;
+    }
+
+    public Color getBarColour() {
+        return barColour;
+    }
+
+    public Color getThresholdColour() {
+        return thresholdColour;
+    }
+
+    public Color getTitleColour() {
+        return titleColour;
+    }
+
+    public Color getBarBackgroundColour() {
+        return barBackgroundColour;
+    }
+
+    public Color getTickLabelColour() {
+        return tickLabelColour;
+    }
+
+    public Color getTickMarkColour() {
+        return tickMarkColour;
+    }
+
+    private Color toColor(byte r, byte g, byte b) {
+        return Color.rgb(r & 0xFF, g & 0xFF, b & 0xFF);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.data;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * SensorHistory holds the most recent values of every sensor in fixed size ring buffers of primitives, so recording a
+ * value never allocates and each sensor takes a fixed amount of memory. The buffers of a sensor are created when its
+ * first value is recorded. Values are recorded by the thread that receives sensor updates and read by the JavaFX
+ * application thread: a read copies the values out and drops any that were overwritten whilst they were being copied.
+ * <p>
+ * Times are from System.nanoTime() so that history is not affected by changes to the system clock.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see LargestTriangleThreeBuckets
+ * @since 1.2
+ */
+public class SensorHistory {
+    private static final int NUM_SENSOR_IDS = 256;
+
+    private final int capacity;
+    private final AtomicReferenceArray<Ring> rings;
+
+    // Copies of a ring taken when downsampling, only used by the reading thread
+    private long[] readTimes;
+    private float[] readValues;
+
+    /**
+     * Create a sensor history
+     *
+     * @param capacity Number of values kept for each sensor
+     */
+    public SensorHistory(int capacity) {
+        this.capacity = capacity;
+        this.rings = new AtomicReferenceArray<>(NUM_SENSOR_IDS);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Record a value of a sensor. Calls must not overlap, e.g. they are made from one thread or under one lock.
+     *
+     * @param sensorId ID of the sensor
+     * @param timeNs   Time that the value was received at, from System.nanoTime()
+     * @param value    Value of the sensor
+     */
+    public void record(byte sensorId, long timeNs, float value) {
+        final int index = toIndex(sensorId);
+        Ring ring = rings.get(index);
+        if (ring == null) {
+            ring = new Ring(capacity);
+            rings.set(index, ring);
+        }
+
+        ring.add(timeNs, value);
+    }
+
+    /**
+     * Get the number of values recorded for a sensor since its history was last cleared, including values that have
+     * since been overwritten
+     *
+     * @param sensorId ID of the sensor
+     * @return Number of values recorded
+     */
+    public long getRecordedCount(byte sensorId) {
+        Ring ring = rings.get(toIndex(sensorId));
+        return ring != null ? ring.count : 0;
+    }
+
+    /**
+     * Copy the values of a sensor that were recorded at or after a time, oldest first
+     *
+     * @param sensorId ID of the sensor
+     * @param fromNs   Time of the oldest value to copy, from System.nanoTime()
+     * @param times    Destination of the times of the values, at least as long as the capacity
+     * @param values   Destination of the values, at least as long as the capacity
+     * @return Number of values copied
+     */
+    public int read(byte sensorId, long fromNs, long[] times, float[] values) {
+        Ring ring = rings.get(toIndex(sensorId));
+        if (ring == null) {
+            return 0;
+        }
+
+        long end = ring.count;
+        long start = Math.max(0, end - capacity);
+        int size = 0;
+        for (long i = start; i < end; i++) {
+            int position = (int) (i % capacity);
+            times[size] = ring.times[position];
+            values[size] = ring.values[position];
+            size++;
+        }
+
+        // Drop anything that the writer may have overwritten whilst it was being copied, including the value that it
+        // may be part way through writing
+        long overwritten = Math.max(0, ring.count + 1 - capacity - start);
+        int first = (int) Math.min(size, overwritten);
+        while (first < size && times[first] - fromNs < 0) {
+            first++;
+        }
+
+        if (first > 0) {
+            System.arraycopy(times, first, times, 0, size - first);
+            System.arraycopy(values, first, values, 0, size - first);
+        }
+
+        return size - first;
+    }
+
+    /**
+     * Downsample the values of a sensor that were recorded at or after a time, keeping the shape of the values, so that
+     * a long history can be drawn with a small number of points. Must only be called from one thread, normally the
+     * JavaFX application thread.
+     *
+     * @param sensorId ID of the sensor
+     * @param fromNs   Time of the oldest value to include, from System.nanoTime()
+     * @param times    Destination of the times of the points
+     * @param values   Destination of the values of the points
+     * @return Number of points, at most the length of the destination arrays
+     * @see LargestTriangleThreeBuckets
+     */
+    public int downsample(byte sensorId, long fromNs, long[] times, float[] values) {
+        if (readTimes == null) {
+            readTimes = new long[capacity];
+            readValues = new float[capacity];
+        }
+
+        int size = read(sensorId, fromNs, readTimes, readValues);
+        return LargestTriangleThreeBuckets.downsample(readTimes, readValues, size, times, values,
+                Math.min(times.length, values.length));
+    }
+
+    public void remove(byte sensorId) {
+        rings.set(toIndex(sensorId), null);
+    }
+
+    public void clear() {
+        for (int i = 0; i < NUM_SENSOR_IDS; i++) {
+            rings.set(i, null);
+        }
+    }
+
+    private static int toIndex(byte sensorId) {
+        return sensorId & 0xFF;
+    }
+
+    private static class Ring {
+        private final long[] times;
+        private final float[] values;
+
+        // Written last so that a reader that sees the count also sees the value that it counts
+        private volatile long count;
+
+        private Ring(int capacity) {
+            this.times = new long[capacity];
+            this.values = new float[capacity];
+            this.count = 0;
+        }
+
+        private void add(long timeNs, float value) {
+            int position = (int) (count % times.length);
+            times[position] = timeNs;
+            values[position] = value;
+            count = count + 1;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.data;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * SensorRollups keeps a summary of the values of every sensor over long periods of time, in a bounded and predictable
+ * amount of memory. Each sensor has a short window of raw values and rings of per-second, per-minute and per-hour
+ * buckets, each bucket holding the minimum, maximum, sum and count of the values received in it. Every value is folded
+ * in to the current bucket of each resolution as it is recorded, so recording is constant time and a query over any
+ * period only combines the buckets of the finest resolution that covers it.
+ * <p>
+ * Bucket rings are fixed size primitive arrays created when the first value of a sensor is recorded. Buckets are
+ * aligned to the system clock so that e.g. the per-hour buckets start on the hour. Values are recorded by the thread
+ * that receives sensor updates and queried from other threads, each sensor is locked whilst it is being updated or
+ * queried.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RollupSummary
+ * @since 1.2
+ */
+public class SensorRollups {
+    private static final int NUM_SENSOR_IDS = 256;
+
+    // Raw values are kept for this long, or for the number of values that fit in the raw window if they arrive faster
+    private static final long RAW_WINDOW_MS = 10_000L;
+    private static final int RAW_CAPACITY = 600;
+
+    // Resolution of each ring of buckets and the number of buckets in it: 2 minutes, 3 hours and 2 days
+    private static final long[] RESOLUTIONS_MS = {1_000L, 60_000L, 3_600_000L};
+    private static final int[] BUCKETS = {120, 180, 48};
+
+    private final AtomicReferenceArray<Rollup> rollups;
+
+    public SensorRollups() {
+        rollups = new AtomicReferenceArray<>(NUM_SENSOR_IDS);
+    }
+
+    /**
+     * Get the longest period that can be queried
+     *
+     * @return Longest period in milliseconds
+     */
+    public static long getMaxPeriodMs() {
+        int last = RESOLUTIONS_MS.length - 1;
+        return RESOLUTIONS_MS[last] * BUCKETS[last];
+    }
+
+    /**
+     * Get the resolution that a period is summarised to. A summary over the period can only change when a bucket of
+     * this resolution starts, or when a value is recorded.
+     *
+     * @param periodMs Length of the period, up to getMaxPeriodMs()
+     * @return Resolution in milliseconds
+     */
+    public static long getResolutionMs(long periodMs) {
+        return RESOLUTIONS_MS[getLevel(periodMs)];
+    }
+
+    /**
+     * Record a value of a sensor. Calls must not overlap, e.g. they are made from one thread or under one lock.
+     *
+     * @param sensorId ID of the sensor
+     * @param timeMs   Time that the value was received at, from System.currentTimeMillis()
+     * @param value    Value of the sensor
+     */
+    public void record(byte sensorId, long timeMs, float value) {
+        final int index = toIndex(sensorId);
+        Rollup rollup = rollups.get(index);
+        if (rollup == null) {
+            rollup = new Rollup();
+            rollups.set(index, rollup);
+        }
+
+        rollup.add(timeMs, value);
+    }
+
+    /**
+     * Summarise the values of a sensor over a period ending at a time. Periods longer than the raw window are
+     * summarised to the resolution of the buckets used, so the start of the period may be rounded down by up to one
+     * bucket.
+     *
+     * @param sensorId ID of the sensor
+     * @param nowMs    End of the period, from System.currentTimeMillis()
+     * @param periodMs Length of the period, up to getMaxPeriodMs()
+     * @param summary  Summary to write the result to, it is reset first
+     * @return The summary, with a count of zero if there were no values in the period
+     */
+    public RollupSummary query(byte sensorId, long nowMs, long periodMs, RollupSummary summary) {
+        summary.reset();
+        Rollup rollup = rollups.get(toIndex(sensorId));
+        if (rollup != null) {
+            rollup.query(nowMs, periodMs, summary);
+        }
+
+        return summary;
+    }
+
+    public void remove(byte sensorId) {
+        rollups.set(toIndex(sensorId), null);
+    }
+
+    public void clear() {
+        for (int i = 0; i < NUM_SENSOR_IDS; i++) {
+            rollups.set(i, null);
+        }
+    }
+
+    // Finest resolution that covers the whole period
+    private static int getLevel(long periodMs) {
+        int level = 0;
+        while (level < RESOLUTIONS_MS.length - 1 && RESOLUTIONS_MS[level] * BUCKETS[level] < periodMs) {
+            level++;
+        }
+
+        return level;
+    }
+
+    private static int toIndex(byte sensorId) {
+        return sensorId & 0xFF;
+    }
+
+    private static class Rollup {
+        private final long[] rawTimes;
+        private final float[] rawValues;
+        private long rawCount;
+
+        // Bucket rings, indexed by [resolution][bucket]. The bucket number is the time divided by the resolution, it
+        // identifies which period a slot of the ring currently holds.
+        private final long[][] bucketNumbers;
+        private final float[][] minimums;
+        private final float[][] maximums;
+        private final double[][] sums;
+        private final int[][] counts;
+
+        private Rollup() {
+            rawTimes = new long[RAW_CAPACITY];
+            rawValues = new float[RAW_CAPACITY];
+            rawCount = 0;
+
+            bucketNumbers = new long[RESOLUTIONS_MS.length][];
+            minimums = new float[RESOLUTIONS_MS.length][];
+            maximums = new float[RESOLUTIONS_MS.length][];
+            sums = new double[RESOLUTIONS_MS.length][];
+            counts = new int[RESOLUTIONS_MS.length][];
+            for (int level = 0; level < RESOLUTIONS_MS.length; level++) {
+                bucketNumbers[level] = new long[BUCKETS[level]];
+                minimums[level] = new float[BUCKETS[level]];
+                maximums[level] = new float[BUCKETS[level]];
+                sums[level] = new double[BUCKETS[level]];
+                counts[level] = new int[BUCKETS[level]];
+            }
+        }
+
+        private synchronized void add(long timeMs, float value) {
+            int position = (int) (rawCount % RAW_CAPACITY);
+            rawTimes[position] = timeMs;
+            rawValues[position] = value;
+            rawCount++;
+
+            for (int level = 0; level < RESOLUTIONS_MS.length; level++) {
+                long bucketNumber = Math.floorDiv(timeMs, RESOLUTIONS_MS[level]);
+                int slot = (int) Math.floorMod(bucketNumber, (long) BUCKETS[level]);
+                if (counts[level][slot] == 0 || bucketNumbers[level][slot] != bucketNumber) {
+                    // The slot held an older period, start the bucket again with this value
+                    bucketNumbers[level][slot] = bucketNumber;
+                    minimums[level][slot] = value;
+                    maximums[level][slot] = value;
+                    sums[level][slot] = value;
+                    counts[level][slot] = 1;
+                } else {
+                    minimums[level][slot] = Math.min(minimums[level][slot], value);
+                    maximums[level][slot] = Math.max(maximums[level][slot], value);
+                    sums[level][slot] += value;
+                    counts[level][slot]++;
+                }
+            }
+        }
+
+        private synchronized void query(long nowMs, long periodMs, RollupSummary summary) {
+            final long fromMs = nowMs - periodMs;
+
+            // Short periods are summarised exactly from the raw values if the raw window still reaches back far enough
+            long rawStart = Math.max(0, rawCount - RAW_CAPACITY);
+            if (periodMs <= RAW_WINDOW_MS && (rawStart == 0 || rawTimes[(int) (rawStart % RAW_CAPACITY)] <= fromMs)) {
+                for (long i = rawStart; i < rawCount; i++) {
+                    int position = (int) (i % RAW_CAPACITY);
+                    if (rawTimes[position] > fromMs && rawTimes[position] <= nowMs) {
+                        summary.add(rawValues[position], rawValues[position], rawValues[position], 1);
+                    }
+                }
+                return;
+            }
+
+            final int level = getLevel(periodMs);
+            long lastBucket = Math.floorDiv(nowMs, RESOLUTIONS_MS[level]);
+            long firstBucket = Math.max(Math.floorDiv(fromMs, RESOLUTIONS_MS[level]), lastBucket - BUCKETS[level] + 1);
+            for (long bucketNumber = firstBucket; bucketNumber <= lastBucket; bucketNumber++) {
+                int slot = (int) Math.floorMod(bucketNumber, (long) BUCKETS[level]);
+                if (counts[level][slot] > 0 && bucketNumbers[level][slot] == bucketNumber) {
+                    summary.add(minimums[level][slot], maximums[level][slot], sums[level][slot],
+                            counts[level][slot]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.data;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * SensorValueStore holds the latest value of every sensor, written by the thread that receives sensor updates and
+ * read by the JavaFX application thread. It also records which sensors are live (on a page that is currently on
+ * screen) so that updates for sensors that cannot be seen are only stored rather than being passed on to the sensor
+ * graphics. When a page is shown, its stored values are applied in one batch.
+ * <p>
+ * Sensor IDs are a single byte so the values are held in fixed size primitive arrays indexed by ID.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+public class SensorValueStore {
+    private static final int NUM_SENSOR_IDS = 256;
+
+    private final AtomicIntegerArray values;
+    private final AtomicIntegerArray live;
+
+    public SensorValueStore() {
+        values = new AtomicIntegerArray(NUM_SENSOR_IDS);
+        live = new AtomicIntegerArray(NUM_SENSOR_IDS);
+    }
+
+    /**
+     * Store the latest value of a sensor
+     *
+     * @param sensorId ID of the sensor
+     * @param value    Latest value
+     * @return True if the sensor is live and the value should also be given to the sensor graphics
+     */
+    public boolean update(byte sensorId, float value) {
+        final int index = toIndex(sensorId);
+        values.set(index, Float.floatToRawIntBits(value));
+        return live.get(index) != 0;
+    }
+
+    public float get(byte sensorId) {
+        return Float.intBitsToFloat(values.get(toIndex(sensorId)));
+    }
+
+    public boolean isLive(byte sensorId) {
+        return live.get(toIndex(sensorId)) != 0;
+    }
+
+    /**
+     * Set whether a sensor is live. A sensor should be set live before its stored value is applied so that no update
+     * is missed in between.
+     *
+     * @param sensorId ID of the sensor
+     * @param state    True if the sensor is on a page that is on screen
+     */
+    public void setLive(byte sensorId, boolean state) {
+        live.set(toIndex(sensorId), state ? 1 : 0);
+    }
+
+    public void clear() {
+        for (int i = 0; i < NUM_SENSOR_IDS; i++) {
+            values.set(i, 0);
+            live.set(i, 0);
+        }
+    }
+
+    private static int toIndex(byte sensorId) {
+        return sensorId & 0xFF;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.derived;
+
+import java.util.Arrays;
+
+/**
+ * CompiledExpression is the tree of primitive operations that an expression compiles to, flattened into arrays so that
+ * each node is an index. Nodes are stored in post-order, every node comes after its operands, so evaluating the nodes
+ * in index order always reads operands that are up to date.
+ * <p>
+ * Evaluation is incremental: setting an input only marks the node above it, and a node that is evaluated only marks
+ * the node above it if its own value changed. A change to one input of a max() over many sensors therefore costs the
+ * one max() node, and nothing above it if the maximum did not change.
+ * <p>
+ * Inputs that have not been set are NaN. They are left out of min(), max(), sum() and avg(), any other operation on
+ * them gives NaN, so the expression has no value until the inputs that it needs have been set.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see ExpressionCompiler
+ * @since 1.2
+ */
+class CompiledExpression {
+    private static final int NUM_SENSOR_IDS = 256;
+
+    static final byte INPUT = 0;
+    static final byte CONSTANT = 1;
+    static final byte NEGATE = 2;
+    static final byte ABS = 3;
+    static final byte ADD = 4;
+    static final byte SUBTRACT = 5;
+    static final byte MULTIPLY = 6;
+    static final byte DIVIDE = 7;
+    static final byte MIN = 8;
+    static final byte MAX = 9;
+    static final byte SUM = 10;
+    static final byte AVERAGE = 11;
+
+    private final byte[] operations;
+    private final int[] operandStarts;
+    private final int[] operands;
+    private final int[] parents;
+    private final int[] inputNodes;
+    private final byte[] inputSensorIds;
+    private final float[] values;
+    private final boolean[] dirty;
+    private boolean rootChanged;
+
+    /**
+     * Create a compiled expression from its nodes in post-order. The last node is the root.
+     *
+     * @param operations    Operation of each node
+     * @param operandStarts Index of the first operand of each node in operands, with one extra entry for the end
+     * @param operands      Node indexes of the operands of every node
+     * @param sensorIds     Sensor ID of each input node
+     * @param constants     Value of each constant node
+     */
+    CompiledExpression(byte[] operations, int[] operandStarts, int[] operands, byte[] sensorIds, float[] constants) {
+        this.operations = operations;
+        this.operandStarts = operandStarts;
+        this.operands = operands;
+        this.parents = new int[operations.length];
+        this.values = new float[operations.length];
+        this.dirty = new boolean[operations.length];
+
+        int numInputs = 0;
+        for (int node = 0; node < operations.length; node++) {
+            parents[node] = -1;
+            if (operations[node] == INPUT) {
+                numInputs++;
+            } else if (operations[node] == CONSTANT) {
+                values[node] = constants[node];
+            }
+        }
+
+        inputNodes = new int[numInputs];
+        inputSensorIds = new byte[numInputs];
+        for (int node = 0, input = 0; node < operations.length; node++) {
+            for (int i = operandStarts[node]; i < operandStarts[node + 1]; i++) {
+                parents[operands[i]] = node;
+            }
+
+            if (operations[node] == INPUT) {
+                inputNodes[input] = node;
+                inputSensorIds[input] = sensorIds[node];
+                input++;
+            }
+        }
+
+        reset();
+    }
+
+    /**
+     * Unset every input, so that the expression has no value until its inputs are set again
+     */
+    void reset() {
+        for (int node = 0; node < operations.length; node++) {
+            if (operations[node] != CONSTANT) {
+                values[node] = Float.NaN;
+                dirty[node] = operations[node] != INPUT;
+            }
+        }
+
+        rootChanged = false;
+    }
+
+    /**
+     * Get the distinct sensors that the expression reads
+     *
+     * @return Sensor IDs of the inputs
+     */
+    byte[] getInputSensorIds() {
+        boolean[] seen = new boolean[NUM_SENSOR_IDS];
+        byte[] sensorIds = new byte[inputSensorIds.length];
+        int numSensorIds = 0;
+        for (byte sensorId : inputSensorIds) {
+            if (!seen[sensorId & 0xFF]) {
+                seen[sensorId & 0xFF] = true;
+                sensorIds[numSensorIds++] = sensorId;
+            }
+        }
+
+        return Arrays.copyOf(sensorIds, numSensorIds);
+    }
+
+    /**
+     * Set the value of a sensor that the expression reads. Nothing is evaluated until evaluate() is called.
+     *
+     * @param sensorId ID of the sensor
+     * @param value    Latest value of the sensor
+     */
+    void setInput(byte sensorId, float value) {
+        for (int i = 0; i < inputNodes.length; i++) {
+            if (inputSensorIds[i] == sensorId) {
+                setValue(inputNodes[i], value);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the nodes affected by the inputs set since the last evaluation
+     *
+     * @return True if the value of the expression changed
+     */
+    boolean evaluate() {
+        for (int node = 0; node < operations.length; node++) {
+            if (dirty[node]) {
+                dirty[node] = false;
+                setValue(node, apply(node));
+            }
+        }
+
+        boolean changed = rootChanged;
+        rootChanged = false;
+        return changed;
+    }
+
+    /**
+     * @return Value of the expression, or NaN if the inputs that it needs have not been set
+     */
+    float getValue() {
+        return values[operations.length - 1];
+    }
+
+    private void setValue(int node, float value) {
+        if (Float.floatToIntBits(values[node]) == Float.floatToIntBits(value)) {
+            return;
+        }
+
+        values[node] = value;
+        int parent = parents[node];
+        if (parent < 0) {
+            rootChanged = true;
+        } else {
+            dirty[parent] = true;
+        }
+    }
+
+    private float apply(int node) {
+        final int start = operandStarts[node];
+        final int end = operandStarts[node + 1];
+        switch (operations[node]) {
+            case NEGATE:
+                return -values[operands[start]];
+            case ABS:
+                return Math.abs(values[operands[start]]);
+            case ADD:
+                return values[operands[start]] + values[operands[start + 1]];
+            case SUBTRACT:
+                return values[operands[start]] - values[operands[start + 1]];
+            case MULTIPLY:
+                return values[operands[start]] * values[operands[start + 1]];
+            case DIVIDE:
+                // A sensor can not show infinity, so dividing by zero gives zero
+                float dividend = values[operands[start]];
+                float divisor = values[operands[start + 1]];
+                return divisor == 0.0f && !Float.isNaN(dividend) ? 0.0f : dividend / divisor;
+            case MIN:
+                float min = Float.NaN;
+                for (int i = start; i < end; i++) {
+                    float value = values[operands[i]];
+                    if (!Float.isNaN(value) && (Float.isNaN(min) || value < min)) {
+                        min = value;
+                    }
+                }
+                return min;
+            case MAX:
+                float max = Float.NaN;
+                for (int i = start; i < end; i++) {
+                    float value = values[operands[i]];
+                    if (!Float.isNaN(value) && (Float.isNaN(max) || value > max)) {
+                        max = value;
+                    }
+                }
+                return max;
+            case SUM:
+            case AVERAGE:
+                float sum = 0.0f;
+                int count = 0;
+                for (int i = start; i < end; i++) {
+                    float value = values[operands[i]];
+                    if (!Float.isNaN(value)) {
+                        sum += value;
+                        count++;
+                    }
+                }
+
+                if (count == 0) {
+                    return Float.NaN;
+                }
+                return operations[node] == SUM ? sum : sum / count;
+            default:
+                return values[node];
+        }
+    }
+}
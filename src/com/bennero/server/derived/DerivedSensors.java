@@ -0,0 +1,226 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.derived;
+
+import com.bennero.server.data.SensorValueStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * DerivedSensors gives sensors a value worked out from other sensors, e.g. the hottest of all core temperatures or the
+ * total power of several packages, without any change to the editor. The editor places a sensor as normal and the
+ * display is told an expression for its ID (see ExpressionCompiler), values sent for that sensor are then ignored.
+ * <p>
+ * The thread that receives sensor updates only flags which inputs changed, the values themselves are read from the
+ * SensorValueStore. Once per pulse, the JavaFX application thread feeds the changed inputs to the expressions that read
+ * them and evaluates only those expressions, so however many updates arrive in between, each expression is evaluated
+ * at most once a pulse and only along the nodes that changed.
+ * <p>
+ * An input only counts once an update has been received for it, inputs that have not been received are left out of
+ * min(), max(), sum() and avg() rather than read as zero. A derived sensor is not given a value until its expression
+ * has one.
+ * <p>
+ * Derived sensors must all be added before sensor updates are received.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see CompiledExpression
+ * @since 1.2
+ */
+public class DerivedSensors {
+    private static final int NUM_SENSOR_IDS = 256;
+    private static final DerivedSensor[] NO_DEPENDENTS = new DerivedSensor[0];
+
+    public interface DerivedValueHandler {
+        void handle(byte sensorId, float value);
+    }
+
+    private static class DerivedSensor {
+        private final byte sensorId;
+        private final CompiledExpression expression;
+        private boolean inputChanged;
+        private boolean republish;
+
+        private DerivedSensor(byte sensorId, CompiledExpression expression) {
+            this.sensorId = sensorId;
+            this.expression = expression;
+            this.inputChanged = false;
+            this.republish = false;
+        }
+    }
+
+    private final List<DerivedSensor> derivedSensors;
+    private final boolean[] derived;
+    private final DerivedSensor[][] dependents;
+    private final AtomicIntegerArray changedInputs;
+    private final AtomicBoolean changePending;
+    private byte[] inputSensorIds;
+
+    public DerivedSensors() {
+        derivedSensors = new ArrayList<>();
+        derived = new boolean[NUM_SENSOR_IDS];
+        dependents = new DerivedSensor[NUM_SENSOR_IDS][];
+        Arrays.fill(dependents, NO_DEPENDENTS);
+        changedInputs = new AtomicIntegerArray(NUM_SENSOR_IDS);
+        changePending = new AtomicBoolean(false);
+        inputSensorIds = new byte[0];
+    }
+
+    /**
+     * Derive the value of a sensor from an expression over other sensors. Derived sensors can not read other derived
+     * sensors.
+     *
+     * @param sensorId   ID of the derived sensor
+     * @param expression Expression that gives the value of the sensor
+     * @throws IllegalArgumentException if the expression is not valid or reads a derived sensor
+     */
+    public void add(byte sensorId, String expression) {
+        CompiledExpression compiledExpression = ExpressionCompiler.compile(expression);
+        byte[] expressionInputs = compiledExpression.getInputSensorIds();
+        if (derived[sensorId & 0xFF] || dependents[sensorId & 0xFF].length > 0) {
+            throw new IllegalArgumentException("Sensor " + (sensorId & 0xFF) + " is already derived or read by a " +
+                    "derived sensor");
+        }
+
+        for (byte inputSensorId : expressionInputs) {
+            if (derived[inputSensorId & 0xFF] || inputSensorId == sensorId) {
+                throw new IllegalArgumentException("Derived sensors can not read derived sensors: '" + expression +
+                        "'");
+            }
+        }
+
+        DerivedSensor derivedSensor = new DerivedSensor(sensorId, compiledExpression);
+        derivedSensors.add(derivedSensor);
+        derived[sensorId & 0xFF] = true;
+        for (byte inputSensorId : expressionInputs) {
+            final int index = inputSensorId & 0xFF;
+            if (dependents[index].length == 0) {
+                inputSensorIds = Arrays.copyOf(inputSensorIds, inputSensorIds.length + 1);
+                inputSensorIds[inputSensorIds.length - 1] = inputSensorId;
+            }
+
+            dependents[index] = Arrays.copyOf(dependents[index], dependents[index].length + 1);
+            dependents[index][dependents[index].length - 1] = derivedSensor;
+        }
+    }
+
+    public boolean isDerived(byte sensorId) {
+        return derived[sensorId & 0xFF];
+    }
+
+    /**
+     * Record that the stored value of a sensor changed. Called by the thread that receives sensor updates, after the
+     * value has been stored.
+     *
+     * @param sensorId ID of the sensor
+     * @return True if this is the first change since the last evaluation, so a pulse should be requested
+     */
+    public boolean inputChanged(byte sensorId) {
+        final int index = sensorId & 0xFF;
+        if (dependents[index].length == 0) {
+            return false;
+        }
+
+        changedInputs.set(index, 1);
+        return changePending.compareAndSet(false, true);
+    }
+
+    /**
+     * Give a derived sensor its value again on the next evaluation, even if the value has not changed, e.g. when the
+     * sensor has been created again with the initial value from the editor. Called by the JavaFX application thread.
+     *
+     * @param sensorId ID of the sensor
+     * @return True if the sensor is derived, so a pulse should be requested
+     */
+    public boolean republish(byte sensorId) {
+        for (DerivedSensor derivedSensor : derivedSensors) {
+            if (derivedSensor.sensorId == sensorId) {
+                derivedSensor.republish = true;
+                changePending.set(true);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Forget the values of every input, e.g. when the stored sensor values are cleared. Called by the JavaFX
+     * application thread.
+     */
+    public void clear() {
+        for (byte inputSensorId : inputSensorIds) {
+            changedInputs.set(inputSensorId & 0xFF, 0);
+        }
+
+        for (DerivedSensor derivedSensor : derivedSensors) {
+            derivedSensor.expression.reset();
+            derivedSensor.inputChanged = false;
+            derivedSensor.republish = false;
+        }
+    }
+
+    /**
+     * Evaluate the derived sensors that read a sensor that changed since the last evaluation. Called by the JavaFX
+     * application thread once a pulse.
+     *
+     * @param sensorValueStore Store holding the latest value of every sensor
+     * @param valueChanged     Handler given the value of each derived sensor that changed
+     */
+    public void evaluate(SensorValueStore sensorValueStore, DerivedValueHandler valueChanged) {
+        // Clear the pending change before reading the inputs so that a change made during the evaluation requests
+        // another
+        if (!changePending.getAndSet(false)) {
+            return;
+        }
+
+        for (byte inputSensorId : inputSensorIds) {
+            final int index = inputSensorId & 0xFF;
+            if (changedInputs.getAndSet(index, 0) != 0) {
+                float value = sensorValueStore.get(inputSensorId);
+                for (DerivedSensor derivedSensor : dependents[index]) {
+                    derivedSensor.expression.setInput(inputSensorId, value);
+                    derivedSensor.inputChanged = true;
+                }
+            }
+        }
+
+        for (DerivedSensor derivedSensor : derivedSensors) {
+            if (derivedSensor.inputChanged || derivedSensor.republish) {
+                boolean changed = derivedSensor.expression.evaluate() || derivedSensor.republish;
+                derivedSensor.inputChanged = false;
+                derivedSensor.republish = false;
+
+                float value = derivedSensor.expression.getValue();
+                if (changed && !Float.isNaN(value)) {
+                    valueChanged.handle(derivedSensor.sensorId, value);
+                }
+            }
+        }
+    }
+}
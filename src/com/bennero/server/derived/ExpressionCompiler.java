@@ -0,0 +1,282 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.derived;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ExpressionCompiler compiles the expression of a derived sensor into a tree of primitive operations. Expressions are
+ * compiled once, when the derived sensor is defined, so nothing is parsed or allocated when they are evaluated.
+ * <p>
+ * Expressions read other sensors as s followed by the sensor ID, e.g. s12, and support:
+ * <ul>
+ *     <li>Numbers, e.g. 1.5</li>
+ *     <li>+, -, * and / with the usual precedence, unary - and brackets</li>
+ *     <li>min(), max(), sum() and avg() of any number of arguments, and abs()</li>
+ * </ul>
+ * For example max(s1, s2, s3, s4) for the hottest of four cores, or (s20 + s21) / 2.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see CompiledExpression
+ * @since 1.2
+ */
+class ExpressionCompiler {
+    private static final int NUM_SENSOR_IDS = 256;
+
+    private final String expression;
+    private final List<Byte> operations;
+    private final List<int[]> nodeOperands;
+    private final List<Byte> sensorIds;
+    private final List<Float> constants;
+    private int position;
+
+    private ExpressionCompiler(String expression) {
+        this.expression = expression;
+        this.operations = new ArrayList<>();
+        this.nodeOperands = new ArrayList<>();
+        this.sensorIds = new ArrayList<>();
+        this.constants = new ArrayList<>();
+        this.position = 0;
+    }
+
+    /**
+     * Compile an expression
+     *
+     * @param expression Expression to compile
+     * @return Compiled expression
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    static CompiledExpression compile(String expression) {
+        ExpressionCompiler compiler = new ExpressionCompiler(expression.toLowerCase());
+        compiler.parseExpression();
+        compiler.skipWhitespace();
+        if (compiler.position < expression.length()) {
+            throw compiler.error("Unexpected '" + expression.charAt(compiler.position) + "'");
+        }
+
+        return compiler.build();
+    }
+
+    // expression := term (('+' | '-') term)*
+    private int parseExpression() {
+        int node = parseTerm();
+        while (true) {
+            if (accept('+')) {
+                node = addNode(CompiledExpression.ADD, node, parseTerm());
+            } else if (accept('-')) {
+                node = addNode(CompiledExpression.SUBTRACT, node, parseTerm());
+            } else {
+                return node;
+            }
+        }
+    }
+
+    // term := factor (('*' | '/') factor)*
+    private int parseTerm() {
+        int node = parseFactor();
+        while (true) {
+            if (accept('*')) {
+                node = addNode(CompiledExpression.MULTIPLY, node, parseFactor());
+            } else if (accept('/')) {
+                node = addNode(CompiledExpression.DIVIDE, node, parseFactor());
+            } else {
+                return node;
+            }
+        }
+    }
+
+    // factor := '-' factor | '(' expression ')' | number | sensor | function '(' expression (',' expression)* ')'
+    private int parseFactor() {
+        if (accept('-')) {
+            return addNode(CompiledExpression.NEGATE, parseFactor());
+        }
+
+        if (accept('(')) {
+            int node = parseExpression();
+            expect(')');
+            return node;
+        }
+
+        skipWhitespace();
+        if (position >= expression.length()) {
+            throw error("Unexpected end of expression");
+        }
+
+        char c = expression.charAt(position);
+        if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+
+        if (!Character.isLetter(c)) {
+            throw error("Unexpected '" + c + "'");
+        }
+
+        final int start = position;
+        while (position < expression.length() && Character.isLetter(expression.charAt(position))) {
+            position++;
+        }
+
+        String name = expression.substring(start, position);
+        if (name.equals("s") && position < expression.length() && Character.isDigit(expression.charAt(position))) {
+            return parseSensor(start);
+        }
+
+        return parseFunction(name, start);
+    }
+
+    private int parseNumber() {
+        final int start = position;
+        while (position < expression.length() &&
+                (Character.isDigit(expression.charAt(position)) || expression.charAt(position) == '.')) {
+            position++;
+        }
+
+        try {
+            int node = addNode(CompiledExpression.CONSTANT);
+            constants.set(node, Float.parseFloat(expression.substring(start, position)));
+            return node;
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Invalid number");
+        }
+    }
+
+    private int parseSensor(int start) {
+        final int digitsStart = position;
+        while (position < expression.length() && Character.isDigit(expression.charAt(position))) {
+            position++;
+        }
+
+        int sensorId = Integer.parseInt(expression.substring(digitsStart, Math.min(position, digitsStart + 4)));
+        if (position - digitsStart > 3 || sensorId >= NUM_SENSOR_IDS) {
+            position = start;
+            throw error("Sensor ID out of range");
+        }
+
+        int node = addNode(CompiledExpression.INPUT);
+        sensorIds.set(node, (byte) sensorId);
+        return node;
+    }
+
+    private int parseFunction(String name, int start) {
+        final byte operation;
+        switch (name) {
+            case "min":
+                operation = CompiledExpression.MIN;
+                break;
+            case "max":
+                operation = CompiledExpression.MAX;
+                break;
+            case "sum":
+                operation = CompiledExpression.SUM;
+                break;
+            case "avg":
+                operation = CompiledExpression.AVERAGE;
+                break;
+            case "abs":
+                operation = CompiledExpression.ABS;
+                break;
+            default:
+                position = start;
+                throw error("Unknown function '" + name + "'");
+        }
+
+        expect('(');
+        List<Integer> arguments = new ArrayList<>();
+        do {
+            arguments.add(parseExpression());
+        } while (accept(','));
+        expect(')');
+
+        if (operation == CompiledExpression.ABS && arguments.size() != 1) {
+            position = start;
+            throw error("abs() takes one argument");
+        }
+
+        int[] operands = new int[arguments.size()];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = arguments.get(i);
+        }
+
+        return addNode(operation, operands);
+    }
+
+    // Nodes are added after their operands so they are in post-order
+    private int addNode(byte operation, int... operands) {
+        operations.add(operation);
+        nodeOperands.add(operands);
+        sensorIds.add((byte) 0);
+        constants.add(0.0f);
+        return operations.size() - 1;
+    }
+
+    private CompiledExpression build() {
+        final int numNodes = operations.size();
+        byte[] operationArray = new byte[numNodes];
+        int[] operandStarts = new int[numNodes + 1];
+        byte[] sensorIdArray = new byte[numNodes];
+        float[] constantArray = new float[numNodes];
+        for (int node = 0; node < numNodes; node++) {
+            operationArray[node] = operations.get(node);
+            operandStarts[node + 1] = operandStarts[node] + nodeOperands.get(node).length;
+            sensorIdArray[node] = sensorIds.get(node);
+            constantArray[node] = constants.get(node);
+        }
+
+        int[] operands = new int[operandStarts[numNodes]];
+        for (int node = 0; node < numNodes; node++) {
+            System.arraycopy(nodeOperands.get(node), 0, operands, operandStarts[node], nodeOperands.get(node).length);
+        }
+
+        return new CompiledExpression(operationArray, operandStarts, operands, sensorIdArray, constantArray);
+    }
+
+    private boolean accept(char c) {
+        skipWhitespace();
+        if (position < expression.length() && expression.charAt(position) == c) {
+            position++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!accept(c)) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of '" + expression + "'");
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.event;
+
+import javafx.event.Event;
+
+/**
+ * LayoutTransactionEvent creates an event that is used to mark the beginning or the end (commit) of a layout
+ * transaction. Structural changes (page and sensor creation, removal and transformation) received between the two are
+ * applied to the display together when the transaction is committed.
+ * <p>
+ * The transaction messages carry no data other than their type. The message types are not yet part of the common
+ * MessageType definitions so they are defined here, and must match the values that the editor sends.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see Event
+ * @since 1.2
+ */
+public class LayoutTransactionEvent extends Event {
+    public static final byte LAYOUT_BEGIN = 0x60;
+    public static final byte LAYOUT_COMMIT = 0x61;
+
+    private final boolean commit;
+
+    public LayoutTransactionEvent(final byte messageType) {
+        super(messageType, null, null);
+        this.commit = messageType == LAYOUT_COMMIT;
+    }
+
+    public boolean isBegin() {
+        return !commit;
+    }
+
+    public boolean isCommit() {
+        return commit;
+    }
+}
@@ -73,6 +73,11 @@ public class PageSetupEvent extends Event {
         );
     }
 
+    public PageSetupEvent(final PageData pageData) {
+        super(pageData, null, null);
+        this.pageData = pageData;
+    }
+
     private Color toColor(byte r, byte g, byte b) {
         return Color.rgb(r & 0xFF, g & 0xFF, b & 0xFF);
     }
@@ -48,6 +48,12 @@ public class SensorDataEvent extends Event {
         this.value = message.getSensorUpdates()[0].getValue();
     }
 
+    public SensorDataEvent(final byte sensorId, final float value) {
+        super(null, null, null);
+        this.sensorId = sensorId;
+        this.value = value;
+    }
+
     public byte getSensorId() {
         return sensorId;
     }
@@ -23,12 +23,9 @@
 
 package com.bennero.server.event;
 
-import com.bennero.common.Sensor;
-import com.bennero.common.Skin;
-import com.bennero.common.SkinHelper;
 import com.bennero.common.messages.SensorCreateMessage;
+import com.bennero.server.data.SensorDescriptor;
 import javafx.event.Event;
-import javafx.scene.paint.Color;
 
 /**
  * SensorSetupEvent creates an event that is used to provide a SensorSetupMessage object back to a listener through an
@@ -41,7 +38,7 @@ import javafx.scene.paint.Color;
  * @since 1.0
  */
 public class SensorSetupEvent extends Event {
-    private final Sensor sensor;
+    private final SensorDescriptor sensorDescriptor;
     private final byte pageId;
 
     public SensorSetupEvent(final SensorCreateMessage message) {
@@ -49,73 +46,26 @@ public class SensorSetupEvent extends Event {
 
         pageId = message.getPageId();
 
-        sensor = new Sensor(message.getSensorId(), message.getRow(), message.getColumn(), message.getSensorType(),
-                message.getSkin(), message.getMax(), message.getThreshold(), message.getTitle(), message.getTitle(),
-                message.isAverageEnabled(), message.getAveragingPeriodMs(), message.getRowSpan(),
-                message.getColumnSpan());
-        sensor.setValue(message.getInitialValue());
-
-        // Only process each sensor colour if it is supported by the skin that has been received
-        final byte skin = message.getSkin();
-
-        if (SkinHelper.checkSupport(skin, Skin.FOREGROUND_BASE_COLOUR_SUPPORTED)) {
-            sensor.setForegroundColour(toColor(message.getForegroundColourR(), message.getForegroundColourG(), message.getForegroundColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.AVERAGE_COLOUR_SUPPORTED)) {
-            sensor.setAverageColour(toColor(message.getAverageColourR(), message.getAverageColourG(), message.getAverageColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.NEEDLE_COLOUR_SUPPORTED)) {
-            sensor.setNeedleColour(toColor(message.getNeedleColourR(), message.getNeedleColourG(), message.getNeedleColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.VALUE_COLOUR_SUPPORTED)) {
-            sensor.setValueColour(toColor(message.getValueColourR(), message.getValueColourG(), message.getValueColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.UNIT_COLOUR_SUPPORTED)) {
-            sensor.setUnitColour(toColor(message.getUnitColourR(), message.getUnitColourG(), message.getUnitColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.KNOB_COLOUR_SUPPORTED)) {
-            sensor.setKnobColour(toColor(message.getKnobColourR(), message.getKnobColourG(), message.getKnobColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.BAR_COLOUR_SUPPORTED)) {
-            sensor.setBarColour(toColor(message.getBarColourR(), message.getBarColourG(), message.getBarColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.THRESHOLD_COLOUR_SUPPORTED)) {
-            sensor.setThresholdColour(toColor(message.getThresholdColourR(), message.getThresholdColourG(), message.getThresholdColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.TITLE_COLOUR_SUPPORTED)) {
-            sensor.setTitleColour(toColor(message.getTitleColourR(), message.getTitleColourG(), message.getTitleColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.BAR_BACKGROUND_COLOUR_SUPPORTED)) {
-            sensor.setBarBackgroundColour(toColor(message.getBarBackgroundColourR(), message.getBarBackgroundColourG(), message.getBarBackgroundColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.TICK_LABEL_COLOUR_SUPPORTED)) {
-            sensor.setTickLabelColour(toColor(message.getTickLabelColourR(), message.getTickLabelColourG(), message.getTickLabelColourB()));
-        }
-
-        if (SkinHelper.checkSupport(skin, Skin.TICK_MARK_COLOUR_SUPPORTED)) {
-            sensor.setTickMarkColour(toColor(message.getTickMarkColourR(), message.getTickMarkColourG(), message.getTickMarkColourB()));
-        }
+        // The sensor graphics are not created here as this is not the JavaFX application thread, and the page that the
+        // sensor is on may not be in use yet
+        sensorDescriptor = new SensorDescriptor(message);
     }
 
-    private Color toColor(byte r, byte g, byte b) {
-        return Color.rgb(r & 0xFF, g & 0xFF, b & 0xFF);
+    public SensorSetupEvent(final byte pageId, final SensorDescriptor sensorDescriptor) {
+        super(sensorDescriptor, null, null);
+        this.pageId = pageId;
+        this.sensorDescriptor = sensorDescriptor;
     }
 
-    public Sensor getSensor() {
-        return sensor;
+    public SensorDescriptor getSensorDescriptor() {
+        return sensorDescriptor;
     }
 
     public byte getPageId() {
         return pageId;
     }
-}
\ No newline at end of file
+
+    public float getInitialValue() {
+        return sensorDescriptor.getInitialValue();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.history;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BitReader reads values of any number of bits, most significant bit first, from a buffer written by a BitWriter. The
+ * buffer position is not used, the reader keeps its own position in bits.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see BitWriter
+ * @since 1.2
+ */
+class BitReader {
+    private final ByteBuffer buffer;
+    private final long limitBits;
+    private long positionBits;
+
+    /**
+     * Create a bit reader
+     *
+     * @param buffer       Buffer to read from
+     * @param positionBits Position to start reading from, in bits
+     * @param limitBits    Position to stop reading at, in bits
+     */
+    BitReader(ByteBuffer buffer, long positionBits, long limitBits) {
+        this.buffer = buffer;
+        this.positionBits = positionBits;
+        this.limitBits = Math.min(limitBits, (long) buffer.capacity() * Byte.SIZE);
+    }
+
+    boolean hasRemaining() {
+        return positionBits < limitBits;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * Read a value
+     *
+     * @param count Number of bits to read, up to 64
+     * @return The value in the lowest bits
+     * @throws IndexOutOfBoundsException If the value goes past the limit
+     */
+    long readBits(int count) {
+        if (positionBits + count > limitBits) {
+            throw new IndexOutOfBoundsException("Read past the end of the bit stream");
+        }
+
+        long value = 0;
+        while (count > 0) {
+            int index = (int) (positionBits >>> 3);
+            int available = Byte.SIZE - (int) (positionBits & 7);
+            int read = Math.min(available, count);
+            int bits = ((buffer.get(index) & 0xFF) >>> (available - read)) & ((1 << read) - 1);
+            value = (value << read) | bits;
+            positionBits += read;
+            count -= read;
+        }
+
+        return value;
+    }
+}
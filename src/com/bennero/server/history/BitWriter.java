@@ -0,0 +1,76 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.history;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BitWriter writes values of any number of bits, most significant bit first, in to a buffer that starts zeroed. The
+ * buffer position is not used, the writer keeps its own position in bits.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see BitReader
+ * @since 1.2
+ */
+class BitWriter {
+    private final ByteBuffer buffer;
+    private final long limitBits;
+    private long positionBits;
+
+    BitWriter(ByteBuffer buffer, long positionBits) {
+        this.buffer = buffer;
+        this.limitBits = (long) buffer.capacity() * Byte.SIZE;
+        this.positionBits = positionBits;
+    }
+
+    long getPositionBits() {
+        return positionBits;
+    }
+
+    long getRemainingBits() {
+        return limitBits - positionBits;
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Write the lowest bits of a value
+     *
+     * @param value Value to write
+     * @param count Number of bits to write, up to 64
+     */
+    void writeBits(long value, int count) {
+        while (count > 0) {
+            int index = (int) (positionBits >>> 3);
+            int free = Byte.SIZE - (int) (positionBits & 7);
+            int written = Math.min(free, count);
+            int bits = (int) (value >>> (count - written)) & ((1 << written) - 1);
+            buffer.put(index, (byte) (buffer.get(index) | (bits << (free - written))));
+            positionBits += written;
+            count -= written;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.history;
+
+import java.util.Arrays;
+
+/**
+ * GorillaCodec compresses a stream of sensor values in the style of Facebook's Gorilla time series database. The values
+ * of all sensors are interleaved in one stream, each record starting with the sensor ID, and each sensor is compressed
+ * against its own previous record:
+ * <ul>
+ *     <li>Times are stored as the difference between the current and previous gap between values (delta-of-delta),
+ *     which is zero for values that arrive at a steady rate and takes a single bit</li>
+ *     <li>Values are stored as the XOR with the previous value, which is zero for an unchanged value and otherwise
+ *     only stores the bits that changed</li>
+ * </ul>
+ * The first record of each sensor stores its time and value in full. A decoder must start from the same point in the
+ * stream as the encoder, so each history segment starts a new codec.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see HistorySegment
+ * @since 1.2
+ */
+class GorillaCodec {
+    // Largest number of bits that a record can take
+    static final int MAX_RECORD_BITS = 8 + 4 + 64 + 2 + 5 + 5 + 32;
+
+    private static final int NUM_SENSOR_IDS = 256;
+
+    interface RecordHandler {
+        void handle(byte sensorId, long timeMs, float value);
+    }
+
+    private final boolean[] started;
+    private final long[] previousTimes;
+    private final long[] previousDeltas;
+    private final int[] previousValues;
+    private final int[] previousLeadingZeros;
+    private final int[] previousTrailingZeros;
+
+    GorillaCodec() {
+        started = new boolean[NUM_SENSOR_IDS];
+        previousTimes = new long[NUM_SENSOR_IDS];
+        previousDeltas = new long[NUM_SENSOR_IDS];
+        previousValues = new int[NUM_SENSOR_IDS];
+        previousLeadingZeros = new int[NUM_SENSOR_IDS];
+        previousTrailingZeros = new int[NUM_SENSOR_IDS];
+        Arrays.fill(previousLeadingZeros, -1);
+    }
+
+    void encode(BitWriter out, byte sensorId, long timeMs, float value) {
+        final int index = sensorId & 0xFF;
+        final int valueBits = Float.floatToRawIntBits(value);
+        out.writeBits(index, 8);
+
+        if (!started[index]) {
+            out.writeBits(timeMs, 64);
+            out.writeBits(valueBits, 32);
+            started[index] = true;
+            previousTimes[index] = timeMs;
+            previousDeltas[index] = 0;
+            previousValues[index] = valueBits;
+            return;
+        }
+
+        long delta = timeMs - previousTimes[index];
+        encodeDeltaOfDelta(out, delta - previousDeltas[index]);
+        previousTimes[index] = timeMs;
+        previousDeltas[index] = delta;
+
+        int xor = valueBits ^ previousValues[index];
+        previousValues[index] = valueBits;
+        if (xor == 0) {
+            out.writeBit(false);
+            return;
+        }
+
+        out.writeBit(true);
+        int leadingZeros = Math.min(31, Integer.numberOfLeadingZeros(xor));
+        int trailingZeros = Integer.numberOfTrailingZeros(xor);
+        if (previousLeadingZeros[index] >= 0 && leadingZeros >= previousLeadingZeros[index] &&
+                trailingZeros >= previousTrailingZeros[index]) {
+            // The changed bits fit in the window of the previous value, only store the bits in the window
+            out.writeBit(false);
+            int length = Integer.SIZE - previousLeadingZeros[index] - previousTrailingZeros[index];
+            out.writeBits(xor >>> previousTrailingZeros[index], length);
+        } else {
+            int length = Integer.SIZE - leadingZeros - trailingZeros;
+            out.writeBit(true);
+            out.writeBits(leadingZeros, 5);
+            out.writeBits(length - 1, 5);
+            out.writeBits(xor >>> trailingZeros, length);
+            previousLeadingZeros[index] = leadingZeros;
+            previousTrailingZeros[index] = trailingZeros;
+        }
+    }
+
+    /**
+     * Decode the next record
+     *
+     * @param in      Stream to read from
+     * @param handler Handler given the record
+     */
+    void decode(BitReader in, RecordHandler handler) {
+        final int index = (int) in.readBits(8);
+
+        if (!started[index]) {
+            started[index] = true;
+            previousTimes[index] = in.readBits(64);
+            previousDeltas[index] = 0;
+            previousValues[index] = (int) in.readBits(32);
+        } else {
+            long delta = previousDeltas[index] + decodeDeltaOfDelta(in);
+            previousTimes[index] += delta;
+            previousDeltas[index] = delta;
+
+            if (in.readBit()) {
+                int xor;
+                if (!in.readBit()) {
+                    int length = Integer.SIZE - previousLeadingZeros[index] - previousTrailingZeros[index];
+                    xor = (int) in.readBits(length) << previousTrailingZeros[index];
+                } else {
+                    int leadingZeros = (int) in.readBits(5);
+                    int length = (int) in.readBits(5) + 1;
+                    int trailingZeros = Integer.SIZE - leadingZeros - length;
+                    xor = (int) in.readBits(length) << trailingZeros;
+                    previousLeadingZeros[index] = leadingZeros;
+                    previousTrailingZeros[index] = trailingZeros;
+                }
+                previousValues[index] ^= xor;
+            }
+        }
+
+        handler.handle((byte) index, previousTimes[index], Float.intBitsToFloat(previousValues[index]));
+    }
+
+    private static void encodeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            out.writeBit(false);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            out.writeBits(0b10, 2);
+            out.writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            out.writeBits(0b110, 3);
+            out.writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(deltaOfDelta, 12);
+        } else {
+            out.writeBits(0b1111, 4);
+            out.writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private static long decodeDeltaOfDelta(BitReader in) {
+        if (!in.readBit()) {
+            return 0;
+        } else if (!in.readBit()) {
+            return toSigned(in.readBits(7), 7);
+        } else if (!in.readBit()) {
+            return toSigned(in.readBits(9), 9);
+        } else if (!in.readBit()) {
+            return toSigned(in.readBits(12), 12);
+        }
+
+        return in.readBits(64);
+    }
+
+    // Values in the range -(2^(bits-1) - 1) to 2^(bits-1) are stored in two's complement of the given number of bits
+    private static long toSigned(long value, int bits) {
+        return value > (1L << (bits - 1)) ? value - (1L << bits) : value;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.history;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * HistoryExporter writes the values recorded by a HistoryLog over a range of time as CSV, one value per row with the
+ * columns time_ms (milliseconds since the epoch), time (ISO-8601 UTC), sensor_id and value. Segments are decoded one at
+ * a time and rows are written as they are decoded, so exporting does not hold the history in memory.
+ * <p>
+ * It can be run from the command line, including on a copy of the history directory taken from a display:
+ * <pre>
+ *     HistoryExporter &lt;history directory&gt; &lt;from&gt; &lt;to&gt; [output file]
+ * </pre>
+ * Times are either milliseconds since the epoch or an ISO-8601 local date and time (e.g. 2021-06-01T13:45:00) in the
+ * time zone of the machine. Rows are written to standard output if no output file is given.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see HistoryLog
+ * @since 1.2
+ */
+public class HistoryExporter {
+    private HistoryExporter() {
+    }
+
+    /**
+     * Export the values recorded in a range of time as CSV
+     *
+     * @param directory Directory of the history segments
+     * @param fromMs    Start of the range in milliseconds since the epoch, inclusive
+     * @param toMs      End of the range in milliseconds since the epoch, inclusive
+     * @param writer    Writer to write the CSV to, it is flushed but not closed
+     * @return Number of values exported
+     * @throws IOException If a segment could not be read or the CSV could not be written
+     */
+    public static long export(File directory, long fromMs, long toMs, Writer writer) throws IOException {
+        writer.write("time_ms,time,sensor_id,value\n");
+
+        File[] segments = HistoryLog.listSegments(directory);
+        long[] startTimesMs = new long[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            startTimesMs[i] = HistorySegment.readStartTime(segments[i]);
+        }
+
+        long[] exported = {0};
+        for (int i = 0; i < segments.length; i++) {
+            // Segments are in time order, so one that starts after the range ends the export and one that is
+            // followed by a segment starting before the range has nothing in it
+            if (startTimesMs[i] > toMs) {
+                break;
+            }
+
+            if (startTimesMs[i] < 0 || (i + 1 < segments.length && startTimesMs[i + 1] >= 0 &&
+                    startTimesMs[i + 1] < fromMs)) {
+                continue;
+            }
+
+            try {
+                HistorySegment.read(segments[i], (sensorId, timeMs, value) -> {
+                    if (timeMs >= fromMs && timeMs <= toMs) {
+                        try {
+                            writer.write(Long.toString(timeMs));
+                            writer.write(',');
+                            writer.write(Instant.ofEpochMilli(timeMs).toString());
+                            writer.write(',');
+                            writer.write(Integer.toString(sensorId & 0xFF));
+                            writer.write(',');
+                            writer.write(Float.toString(value));
+                            writer.write('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        exported[0]++;
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        writer.flush();
+        return exported[0];
+    }
+
+    /**
+     * Export a range of the history from the command line, see class documentation
+     *
+     * @param args History directory, from, to and optionally the output file
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: HistoryExporter <history directory> <from> <to> [output file]");
+            System.exit(1);
+        }
+
+        try {
+            long fromMs = parseTime(args[1]);
+            long toMs = parseTime(args[2]);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(args.length > 3 ?
+                    new FileOutputStream(args[3]) : System.out, StandardCharsets.UTF_8));
+            long exported = export(new File(args[0]), fromMs, toMs, writer);
+            if (args.length > 3) {
+                writer.close();
+            }
+
+            System.err.println("Exported " + exported + " values");
+        } catch (DateTimeParseException e) {
+            System.err.println("Invalid time: " + e.getParsedString());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Failed to export history: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static long parseTime(String time) {
+        try {
+            return Long.parseLong(time);
+        } catch (NumberFormatException e) {
+            return LocalDateTime.parse(time).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.history;
+
+import com.bennero.common.logging.LogLevel;
+import com.bennero.common.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HistoryLog records every sensor value that the display receives to storage, so that what the display showed before
+ * the monitored machine (or the display) crashed can be looked at afterwards. Values are appended to memory mapped,
+ * Gorilla compressed segment files of a fixed size. When a segment is full, the next one is started and the oldest
+ * segments are deleted so that the log never takes more than the segment size multiplied by the segment count.
+ * <p>
+ * Segments are written sequentially and only forced to storage periodically and when they are full, which suits SD
+ * cards. Each run of the application starts a new segment, leaving the segments of the previous run as they were.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see HistorySegment
+ * @see HistoryExporter
+ * @since 1.2
+ */
+public class HistoryLog {
+    // Class name used in logging
+    private static final String CLASS_NAME = HistoryLog.class.getSimpleName();
+
+    static final String SEGMENT_PREFIX = "history-";
+    static final String SEGMENT_SUFFIX = ".hml";
+
+    private final File directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final ScheduledExecutorService flusher;
+    private long nextSequence;
+    private volatile HistorySegment segment;
+
+    /**
+     * Create a history log and start its first segment
+     *
+     * @param directory       Directory to keep the segments in
+     * @param segmentBytes    Size of each segment file
+     * @param maxSegments     Number of segments to keep, including the one being written
+     * @param flushIntervalMs Time between forcing the segment being written to storage
+     */
+    public HistoryLog(File directory, int segmentBytes, int maxSegments, long flushIntervalMs) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, CLASS_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        File[] segments = listSegments(directory);
+        nextSequence = segments.length > 0 ? getSequence(segments[segments.length - 1]) + 1 : 0;
+        startSegment(System.currentTimeMillis());
+
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        Logger.logf(LogLevel.INFO, CLASS_NAME, "Recording sensor history to %s [SEGMENTS: %d x %d KB]",
+                directory.getPath(), this.maxSegments, segmentBytes / 1024);
+    }
+
+    /**
+     * Append a sensor value to the log. Calls must not overlap, e.g. they are made from one thread or under one lock.
+     *
+     * @param sensorId ID of the sensor
+     * @param timeMs   Time that the value was received at, from System.currentTimeMillis()
+     * @param value    Value of the sensor
+     */
+    public void append(byte sensorId, long timeMs, float value) {
+        HistorySegment current = segment;
+        if (current == null) {
+            return;
+        }
+
+        if (!current.append(sensorId, timeMs, value)) {
+            current.force();
+            startSegment(timeMs);
+            if (segment != null) {
+                segment.append(sensorId, timeMs, value);
+            }
+        }
+    }
+
+    /**
+     * Force the segment being written to storage and stop recording
+     */
+    public void close() {
+        flusher.shutdownNow();
+        HistorySegment current = segment;
+        segment = null;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    private void flush() {
+        HistorySegment current = segment;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    private void startSegment(long startTimeMs) {
+        File file = new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        nextSequence++;
+        try {
+            segment = HistorySegment.create(file, segmentBytes, startTimeMs);
+        } catch (IOException e) {
+            // Stop recording rather than trying again for every value
+            Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to create history segment: " + file.getPath());
+            Logger.log(LogLevel.DEBUG, CLASS_NAME, e.getMessage());
+            segment = null;
+            return;
+        }
+
+        File[] segments = listSegments(directory);
+        for (int i = 0; i < segments.length - maxSegments; i++) {
+            if (!segments[i].delete()) {
+                Logger.log(LogLevel.WARNING, CLASS_NAME, "Failed to delete history segment: " +
+                        segments[i].getPath());
+            }
+        }
+    }
+
+    /**
+     * List the segment files in a directory, oldest first
+     *
+     * @param directory Directory of the segments
+     * @return Segment files
+     */
+    static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) &&
+                name.endsWith(SEGMENT_SUFFIX) && getSequence(name) >= 0);
+        if (segments == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(segments, Comparator.comparingLong(segment -> getSequence(segment)));
+        return segments;
+    }
+
+    private static long getSequence(File file) {
+        return getSequence(file.getName());
+    }
+
+    private static long getSequence(String name) {
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * HistorySegment is one fixed size file of a history log. The file is memory mapped and written from start to end
+ * with GorillaCodec records, so writes are sequential and a record costs a few memory writes rather than a system
+ * call. The file is a 32 byte header followed by the record bit stream:
+ * <ul>
+ *     <li>Magic number (4 bytes) and format version (4 bytes)</li>
+ *     <li>Time of the segment start in milliseconds since the epoch (8 bytes)</li>
+ *     <li>Length of the committed bit stream (8 bytes), updated after each record is written</li>
+ *     <li>Number of committed records (8 bytes)</li>
+ * </ul>
+ * Records past the committed length are ignored when reading, so a record that was part written when the application
+ * stopped is never read. Written records survive the application crashing because they are in the operating system's
+ * page cache; they are only lost on power failure if the segment was not forced to storage since.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see HistoryLog
+ * @since 1.2
+ */
+class HistorySegment {
+    // 'HWMH' (Hardware Monitor History)
+    private static final int MAGIC = 0x48574D48;
+    private static final int VERSION = 1;
+    private static final int START_TIME_OFFSET = 8;
+    private static final int COMMITTED_BITS_OFFSET = 16;
+    private static final int RECORD_COUNT_OFFSET = 24;
+    private static final int HEADER_BYTES = 32;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final BitWriter writer;
+    private final GorillaCodec codec;
+    private long recordCount;
+
+    private HistorySegment(File file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        this.writer = new BitWriter(buffer, (long) HEADER_BYTES * Byte.SIZE);
+        this.codec = new GorillaCodec();
+        this.recordCount = 0;
+    }
+
+    /**
+     * Create a new, empty segment file
+     *
+     * @param file        Segment file, replaced if it exists
+     * @param sizeBytes   Size of the file
+     * @param startTimeMs Time that the segment starts at
+     * @return The segment
+     * @throws IOException If the file could not be created
+     */
+    static HistorySegment create(File file, int sizeBytes, long startTimeMs) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(START_TIME_OFFSET, startTimeMs);
+            buffer.putLong(COMMITTED_BITS_OFFSET, (long) HEADER_BYTES * Byte.SIZE);
+            buffer.putLong(RECORD_COUNT_OFFSET, 0);
+            return new HistorySegment(file, buffer);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Append a record to the segment
+     *
+     * @param sensorId ID of the sensor
+     * @param timeMs   Time of the value in milliseconds since the epoch
+     * @param value    Value of the sensor
+     * @return True if the record was written, false if the segment is full
+     */
+    boolean append(byte sensorId, long timeMs, float value) {
+        if (writer.getRemainingBits() < GorillaCodec.MAX_RECORD_BITS) {
+            return false;
+        }
+
+        codec.encode(writer, sensorId, timeMs, value);
+        recordCount++;
+
+        // Committed after the record so that a part written record is never read
+        buffer.putLong(COMMITTED_BITS_OFFSET, writer.getPositionBits());
+        buffer.putLong(RECORD_COUNT_OFFSET, recordCount);
+        return true;
+    }
+
+    /**
+     * Write any changes to storage. May be called from any thread.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Get the start time of a segment file without reading its records
+     *
+     * @param file Segment file
+     * @return Start time in milliseconds since the epoch, or -1 if the file is not a valid segment
+     * @throws IOException If the file could not be read
+     */
+    static long readStartTime(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return -1;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION ? buffer.getLong(START_TIME_OFFSET) : -1;
+        }
+    }
+
+    /**
+     * Read every committed record of a segment file, in the order that they were written
+     *
+     * @param file    Segment file
+     * @param handler Handler given each record
+     * @return Number of records read, or -1 if the file is not a valid segment
+     * @throws IOException If the file could not be read
+     */
+    static long read(File file, GorillaCodec.RecordHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return -1;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                return -1;
+            }
+
+            // The record count is written after the bit length, so only read as many records as both allow for
+            final long committedBits = buffer.getLong(COMMITTED_BITS_OFFSET);
+            final long recordCount = buffer.getLong(RECORD_COUNT_OFFSET);
+            BitReader reader = new BitReader(buffer, (long) HEADER_BYTES * Byte.SIZE, committedBits);
+            GorillaCodec codec = new GorillaCodec();
+            long read = 0;
+            while (read < recordCount && reader.hasRemaining()) {
+                codec.decode(reader, handler);
+                read++;
+            }
+
+            return read;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.image;
+
+import com.bennero.common.logging.LogLevel;
+import com.bennero.common.logging.Logger;
+import com.bennero.common.osspecific.OSUtils;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * BackgroundImageCache decodes page background images on a background thread and shares the decoded images between
+ * all of the pages that use them. Images are decoded at the smallest size that covers the display rather than their
+ * full resolution, and are kept in a least recently used cache that is keyed by the file name and modification time
+ * (so a re-transferred image is decoded again). The cache is bounded by a memory budget in bytes rather than an image
+ * count so that it behaves the same regardless of the display resolution.
+ * <p>
+ * Each received image is also transcoded once into a raw pixel file at that size (see RawImageFile), so
+ * that later loads memory map the pixels instead of decoding the PNG/JPEG again.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RawImageFile
+ * @since 1.2
+ */
+public class BackgroundImageCache {
+    // Tag for logging
+    private static final String CLASS_NAME = BackgroundImageCache.class.getSimpleName();
+
+    // Decoded images are 32-bit ARGB
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final int targetWidth;
+    private final int targetHeight;
+    private final long memoryBudgetBytes;
+    private final LinkedHashMap<String, Image> images;
+    private final ExecutorService loader;
+    private long memoryUsedBytes;
+
+    public BackgroundImageCache(int targetWidth, int targetHeight, long memoryBudgetBytes) {
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.images = new LinkedHashMap<>(16, 0.75f, true);
+        this.memoryUsedBytes = 0;
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, CLASS_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static File getImageFile(String imageName) {
+        return new File(OSUtils.getBackgroundImageDirectory() + "_in" + File.separator + imageName);
+    }
+
+    private File getRawImageFile(String imageName) {
+        return new File(OSUtils.getBackgroundImageDirectory() + "_cache" + File.separator + imageName + "_" +
+                targetWidth + "x" + targetHeight + ".raw");
+    }
+
+    // Write the raw image file of an image, deleting the files of the image at any other size (e.g. from before the
+    // display resolution changed) so that the cache directory does not grow each time
+    private void writeRawImageFile(String imageName, Image image) {
+        File rawFile = getRawImageFile(imageName);
+        RawImageFile.write(rawFile, image);
+
+        File[] cachedFiles = rawFile.getParentFile().listFiles();
+        if (cachedFiles != null) {
+            Pattern rawFileName = Pattern.compile(Pattern.quote(imageName) + "_\\d+x\\d+\\.raw");
+            for (File cachedFile : cachedFiles) {
+                if (!cachedFile.equals(rawFile) && rawFileName.matcher(cachedFile.getName()).matches() &&
+                        cachedFile.delete()) {
+                    Logger.log(LogLevel.DEBUG, CLASS_NAME, "Deleted stale raw image file: " + cachedFile.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Prepare an image that has just been received. Any decoded copy of a previous image with the same name is removed
+     * and the image is transcoded to a raw pixel file in the background, so that pages using it do not have to decode
+     * it.
+     *
+     * @param imageName Name of the background image file
+     */
+    public void prepare(String imageName) {
+        invalidate(imageName);
+
+        loader.execute(() -> {
+            File file = getImageFile(imageName);
+            Image image = decode(file);
+            if (image != null) {
+                writeRawImageFile(imageName, image);
+                Logger.log(LogLevel.DEBUG, CLASS_NAME, "Transcoded background image: " + imageName);
+            }
+        });
+    }
+
+    /**
+     * Load a background image. If the image is already decoded the handler is called immediately, otherwise the image
+     * is decoded on the loader thread and the handler is called on the JavaFX application thread once it is ready. The
+     * handler is not called if the image does not exist or could not be decoded.
+     *
+     * @param imageName Name of the background image file
+     * @param handler   Handler to receive the decoded image
+     */
+    public void load(String imageName, Consumer<Image> handler) {
+        final File file = getImageFile(imageName);
+        Image cached = get(toKey(imageName, file.lastModified()));
+        if (cached != null) {
+            handler.accept(cached);
+            return;
+        }
+
+        loader.execute(() -> {
+            // Look again as the image may have been decoded by a request that was queued before this one
+            final String key = toKey(imageName, file.lastModified());
+            Image image = get(key);
+            if (image == null) {
+                image = read(imageName, file);
+                if (image != null) {
+                    put(key, image);
+                }
+            }
+
+            if (image != null) {
+                final Image loaded = image;
+                Platform.runLater(() -> handler.accept(loaded));
+            }
+        });
+    }
+
+    /**
+     * Remove all decoded versions of an image from the cache. This should be called when an image file is replaced so
+     * that the memory is released straight away rather than when it becomes the least recently used.
+     *
+     * @param imageName Name of the background image file
+     */
+    public synchronized void invalidate(String imageName) {
+        final String prefix = imageName + File.pathSeparator;
+        Iterator<Map.Entry<String, Image>> iterator = images.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Image> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                memoryUsedBytes -= sizeOf(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized long getMemoryUsedBytes() {
+        return memoryUsedBytes;
+    }
+
+    public int getTargetWidth() {
+        return targetWidth;
+    }
+
+    public int getTargetHeight() {
+        return targetHeight;
+    }
+
+    private Image read(String imageName, File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        File rawFile = getRawImageFile(imageName);
+        Image image = RawImageFile.read(rawFile, file.lastModified());
+        if (image == null || !covers(image)) {
+            // Not transcoded yet (e.g. received by an older version or the display resolution changed)
+            image = decode(file);
+            if (image != null) {
+                writeRawImageFile(imageName, image);
+            }
+        }
+
+        return image;
+    }
+
+    // Decode straight to the size that covers the display, as pages show their background image with a cover size.
+    // The aspect ratio of an image is only known once it has been decoded, so an image that is wider than the display
+    // is decoded again to the display height.
+    private Image decode(File file) {
+        Image image = decode(file, targetWidth, 0);
+        if (image != null && !covers(image)) {
+            image = decode(file, 0, targetHeight);
+        }
+
+        return image;
+    }
+
+    private Image decode(File file, int width, int height) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (InputStream is = new FileInputStream(file)) {
+            // The full resolution image is never held in memory
+            Image image = new Image(is, width, height, true, true);
+            if (image.isError()) {
+                Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to decode background image: " + file.getName());
+                return null;
+            }
+
+            return image;
+        } catch (IOException e) {
+            Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to read background image: " + file.getName());
+            Logger.log(LogLevel.DEBUG, CLASS_NAME, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean covers(Image image) {
+        return Math.round(image.getWidth()) >= targetWidth && Math.round(image.getHeight()) >= targetHeight;
+    }
+
+    private synchronized Image get(String key) {
+        return images.get(key);
+    }
+
+    private synchronized void put(String key, Image image) {
+        Image previous = images.put(key, image);
+        if (previous != null) {
+            memoryUsedBytes -= sizeOf(previous);
+        }
+        memoryUsedBytes += sizeOf(image);
+
+        // Evict the least recently used images until within budget, always keeping the image that was just added
+        Iterator<Map.Entry<String, Image>> iterator = images.entrySet().iterator();
+        while (memoryUsedBytes > memoryBudgetBytes && iterator.hasNext()) {
+            Map.Entry<String, Image> entry = iterator.next();
+            if (entry.getValue() != image) {
+                memoryUsedBytes -= sizeOf(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String toKey(String imageName, long lastModified) {
+        return imageName + File.pathSeparator + lastModified;
+    }
+
+    private static long sizeOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * BYTES_PER_PIXEL;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.image;
+
+import com.bennero.common.logging.LogLevel;
+import com.bennero.common.logging.Logger;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * RawImageFile reads and writes images as raw, uncompressed, premultiplied pixels (BGRA byte order, which is the
+ * memory layout of premultiplied ARGB integers on little-endian machines and the native format of the JavaFX
+ * renderer). Loading one of these files is a memory map and a pixel copy, so it skips the PNG/JPEG decoding that is
+ * the slowest part of setting up a page on low power devices such as the Raspberry Pi.
+ * <p>
+ * The file format is a 12 byte header (magic number, width, height) followed by width x height x 4 bytes of pixels.
+ * Files are written to a temporary file and then moved into place so a partially written file is never read.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see BackgroundImageCache
+ * @since 1.2
+ */
+class RawImageFile {
+    // Tag for logging
+    private static final String CLASS_NAME = RawImageFile.class.getSimpleName();
+
+    // 'HWMR' (Hardware Monitor Raw)
+    private static final int MAGIC = 0x48574D52;
+    private static final int HEADER_BYTES = 12;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * Read a raw image file
+     *
+     * @param file         Raw image file
+     * @param notOlderThan Modification time that the raw file must not be older than (e.g. of the source image)
+     * @return The image or null if the file does not exist, is out of date or is not valid
+     */
+    static Image read(File file, long notOlderThan) {
+        if (!file.exists() || file.lastModified() < notOlderThan) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final int magic = buffer.getInt();
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            if (magic != MAGIC || width <= 0 || height <= 0 ||
+                    channel.size() != HEADER_BYTES + (long) width * height * BYTES_PER_PIXEL) {
+                Logger.log(LogLevel.WARNING, CLASS_NAME, "Ignoring invalid raw image file: " + file.getName());
+                return null;
+            }
+
+            WritableImage image = new WritableImage(width, height);
+            image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(), buffer,
+                    width * BYTES_PER_PIXEL);
+            return image;
+        } catch (IOException e) {
+            Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to read raw image file: " + file.getName());
+            Logger.log(LogLevel.DEBUG, CLASS_NAME, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write an image to a raw image file
+     *
+     * @param file  Raw image file
+     * @param image Image to write, must be fully loaded
+     */
+    static void write(File file, Image image) {
+        PixelReader pixelReader = image.getPixelReader();
+        if (pixelReader == null) {
+            return;
+        }
+
+        final int width = (int) image.getWidth();
+        final int height = (int) image.getHeight();
+        final long numBytes = HEADER_BYTES + (long) width * height * BYTES_PER_PIXEL;
+
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, numBytes);
+                buffer.putInt(MAGIC);
+                buffer.putInt(width);
+                buffer.putInt(height);
+
+                ByteBuffer pixels = buffer.slice();
+                pixelReader.getPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(), pixels,
+                        width * BYTES_PER_PIXEL);
+                buffer.force();
+            }
+
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Logger.log(LogLevel.ERROR, CLASS_NAME, "Failed to write raw image file: " + file.getName());
+            Logger.log(LogLevel.DEBUG, CLASS_NAME, e.getMessage());
+            temporaryFile.delete();
+        }
+    }
+}
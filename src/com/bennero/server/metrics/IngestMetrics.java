@@ -0,0 +1,117 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.metrics;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * IngestMetrics counts what happens to messages between being received and being applied on the JavaFX application
+ * thread. The counters are cumulative and can be used from any thread; readers such as the performance HUD work out
+ * rates by comparing counts over time.
+ * <ul>
+ *     <li>Messages received, by message type</li>
+ *     <li>FX queue depth: work posted to the JavaFX application thread through runLater() that has not run yet</li>
+ *     <li>Conflated updates: sensor updates that were only stored because the sensor was not on screen, they are
+ *     applied together when the sensor is next shown</li>
+ *     <li>Filtered updates: sensor updates that were only stored because they would not visibly change the sensor, or
+ *     because the render quality limits how often the sensor is updated</li>
+ *     <li>Dropped updates: sensor updates that reached the JavaFX application thread for a sensor that no longer
+ *     exists</li>
+ * </ul>
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+public class IngestMetrics {
+    private static final int MESSAGE_TYPES = 256;
+
+    private final AtomicLongArray messages;
+    private final AtomicInteger fxQueueDepth;
+    private final AtomicLong conflatedUpdates;
+    private final AtomicLong droppedUpdates;
+    private final AtomicLong filteredUpdates;
+
+    public IngestMetrics() {
+        messages = new AtomicLongArray(MESSAGE_TYPES);
+        fxQueueDepth = new AtomicInteger();
+        conflatedUpdates = new AtomicLong();
+        droppedUpdates = new AtomicLong();
+        filteredUpdates = new AtomicLong();
+    }
+
+    public void recordMessage(byte messageType) {
+        messages.incrementAndGet(messageType & 0xFF);
+    }
+
+    public void recordConflatedUpdate() {
+        conflatedUpdates.incrementAndGet();
+    }
+
+    public void recordDroppedUpdate() {
+        droppedUpdates.incrementAndGet();
+    }
+
+    public void recordFilteredUpdate() {
+        filteredUpdates.incrementAndGet();
+    }
+
+    /**
+     * Run on the JavaFX application thread (as Platform.runLater()), counting the runnable in the FX queue depth until
+     * it has run
+     *
+     * @param runnable Runnable to run on the JavaFX application thread
+     */
+    public void runLater(Runnable runnable) {
+        fxQueueDepth.incrementAndGet();
+        Platform.runLater(() -> {
+            fxQueueDepth.decrementAndGet();
+            runnable.run();
+        });
+    }
+
+    public long getMessageCount(byte messageType) {
+        return messages.get(messageType & 0xFF);
+    }
+
+    public int getFxQueueDepth() {
+        return fxQueueDepth.get();
+    }
+
+    public long getConflatedUpdates() {
+        return conflatedUpdates.get();
+    }
+
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+
+    public long getFilteredUpdates() {
+        return filteredUpdates.get();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.metrics;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+/**
+ * RenderMetrics measures how the JavaFX application thread is coping with the scene. Once attached to a scene it
+ * records, for every pulse:
+ * <ul>
+ *     <li>the pulse duration, from the start of the pulse (animations) to the end of CSS and layout</li>
+ *     <li>the frame interval, the time between the start of one pulse and the next. Rendering runs on its own thread
+ *     so a slow render shows up here rather than in the pulse duration, as the next pulse is held back until the
+ *     render thread is free.</li>
+ * </ul>
+ * FX queue latency, the time between a Platform.runLater call and the runnable being run, is measured by calling
+ * probeQueueLatency() from any thread.
+ * <p>
+ * Other than probeQueueLatency(), RenderMetrics must only be used on the JavaFX application thread.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+public class RenderMetrics {
+    private final SampleWindow pulseDurations;
+    private final SampleWindow frameIntervals;
+    private final SampleWindow queueLatencies;
+    private final AnimationTimer pulseTimer;
+    private final Runnable postLayoutPulseListener;
+    private Scene scene;
+    private long pulseStartNs;
+    private long frames;
+
+    public RenderMetrics(int sampleCapacity) {
+        pulseDurations = new SampleWindow(sampleCapacity);
+        frameIntervals = new SampleWindow(sampleCapacity);
+        queueLatencies = new SampleWindow(sampleCapacity);
+        pulseStartNs = 0;
+        frames = 0;
+
+        // Animation timers are the first thing handled in a pulse
+        pulseTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                long startNs = System.nanoTime();
+                if (pulseStartNs != 0) {
+                    frameIntervals.add(startNs - pulseStartNs);
+                }
+
+                pulseStartNs = startNs;
+                frames++;
+            }
+        };
+
+        postLayoutPulseListener = () -> {
+            if (pulseStartNs != 0) {
+                pulseDurations.add(System.nanoTime() - pulseStartNs);
+            }
+        };
+    }
+
+    public void attach(Scene scene) {
+        detach();
+        this.scene = scene;
+        scene.addPostLayoutPulseListener(postLayoutPulseListener);
+        pulseTimer.start();
+    }
+
+    public void detach() {
+        if (scene != null) {
+            pulseTimer.stop();
+            scene.removePostLayoutPulseListener(postLayoutPulseListener);
+            scene = null;
+            pulseStartNs = 0;
+        }
+    }
+
+    /**
+     * Measure how long it currently takes for a runnable to be run on the JavaFX application thread. Can be called
+     * from any thread.
+     */
+    public void probeQueueLatency() {
+        final long postedNs = System.nanoTime();
+        Platform.runLater(() -> queueLatencies.add(System.nanoTime() - postedNs));
+    }
+
+    public void reset() {
+        pulseDurations.reset();
+        frameIntervals.reset();
+        queueLatencies.reset();
+        frames = 0;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Get the frame rate over the frame intervals in the sample window
+     *
+     * @return Frames per second
+     */
+    public double getFramesPerSecond() {
+        int size = frameIntervals.getSize();
+        long totalNs = 0;
+        for (int i = 0; i < size; i++) {
+            totalNs += frameIntervals.get(i);
+        }
+
+        return totalNs == 0 ? 0.0 : size * 1_000_000_000.0 / totalNs;
+    }
+
+    /**
+     * @return Pulse durations in nanoseconds
+     */
+    public SampleWindow getPulseDurations() {
+        return pulseDurations;
+    }
+
+    /**
+     * @return Time between the start of consecutive pulses in nanoseconds
+     */
+    public SampleWindow getFrameIntervals() {
+        return frameIntervals;
+    }
+
+    /**
+     * @return FX queue latencies in nanoseconds
+     */
+    public SampleWindow getQueueLatencies() {
+        return queueLatencies;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.metrics;
+
+import java.util.Arrays;
+
+/**
+ * SampleWindow holds the most recent samples of a measurement (e.g. pulse durations in nanoseconds) in a fixed size
+ * ring buffer, so that recording a sample never allocates. Statistics are calculated over the samples in the window,
+ * while the count and maximum cover every sample since the window was last reset.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+public class SampleWindow {
+    private final long[] samples;
+    private int next;
+    private int size;
+    private long count;
+    private long total;
+    private long max;
+
+    public SampleWindow(int capacity) {
+        samples = new long[capacity];
+        reset();
+    }
+
+    public void add(long sample) {
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+
+        count++;
+        total += sample;
+        max = Math.max(max, sample);
+    }
+
+    public void reset() {
+        next = 0;
+        size = 0;
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    public int getCapacity() {
+        return samples.length;
+    }
+
+    /**
+     * Get the number of samples in the window
+     *
+     * @return Number of samples that statistics are calculated from
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get a sample from the window
+     *
+     * @param age Age of the sample, where 0 is the most recent
+     * @return The sample
+     */
+    public long get(int age) {
+        if (age < 0 || age >= size) {
+            throw new IndexOutOfBoundsException("Sample " + age + " is not in the window of " + size + " samples");
+        }
+
+        return samples[(next - 1 - age + samples.length) % samples.length];
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) total / count;
+    }
+
+    /**
+     * Get the largest sample in the window. Unlike getMax(), older samples that have left the window are not included.
+     *
+     * @return Largest sample in the window, or 0 if it is empty
+     */
+    public long getWindowMax() {
+        long windowMax = 0;
+        for (int i = 0; i < size; i++) {
+            windowMax = Math.max(windowMax, samples[i]);
+        }
+
+        return windowMax;
+    }
+
+    /**
+     * Calculate a percentile of the samples in the window. This sorts a copy of the window so it is intended for
+     * reporting, not for calling every frame.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return The sample at the percentile, or 0 if the window is empty
+     */
+    public long getPercentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+}
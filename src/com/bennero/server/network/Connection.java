@@ -66,6 +66,7 @@ public class Connection implements Runnable {
     private EventHandler<RemovePageEvent> removePageMessageReceived;
     private EventHandler<RemoveSensorEvent> removeSensorMessageReceived;
     private EventHandler<SensorTransformationEvent> sensorTransformationMessageReceived;
+    private EventHandler<LayoutTransactionEvent> layoutTransactionMessageReceived;
 
     private Boolean connected;
     private volatile String clientHostname;
@@ -80,7 +81,8 @@ public class Connection implements Runnable {
                       EventHandler<RemovePageEvent> removePageMessageReceived,
                       EventHandler<SensorDataEvent> sensorDataMessageReceived,
                       EventHandler<RemoveSensorEvent> removeSensorMessageReceived,
-                      EventHandler<SensorTransformationEvent> sensorTransformationMessageReceived) {
+                      EventHandler<SensorTransformationEvent> sensorTransformationMessageReceived,
+                      EventHandler<LayoutTransactionEvent> layoutTransactionMessageReceived) {
         this.connection = connection;
         this.socketChannel = socketChannel;
         this.connectedEvent = connectedEvent;
@@ -91,6 +93,7 @@ public class Connection implements Runnable {
         this.sensorDataMessageReceived = sensorDataMessageReceived;
         this.removeSensorMessageReceived = removeSensorMessageReceived;
         this.sensorTransformationMessageReceived = sensorTransformationMessageReceived;
+        this.layoutTransactionMessageReceived = layoutTransactionMessageReceived;
         connected = false;
         stop = false;
 
@@ -170,6 +173,10 @@ public class Connection implements Runnable {
             case MessageType.SENSOR_TRANSFORM:
                 sensorTransformationMessageReceived.handle(new SensorTransformationEvent(new SensorTransformationMessage(bytes)));
                 break;
+            case LayoutTransactionEvent.LAYOUT_BEGIN:
+            case LayoutTransactionEvent.LAYOUT_COMMIT:
+                layoutTransactionMessageReceived.handle(new LayoutTransactionEvent(Message.getType(bytes)));
+                break;
             case MessageType.CONNECTION_REQUEST:
                 handleConnectionRequest(new ConnectionRequestMessage(bytes));
                 break;
@@ -33,6 +33,8 @@ import com.bennero.common.osspecific.OSUtils;
 import com.bennero.common.osspecific.RaspberryPiScreenUtils;
 import com.bennero.server.Identity;
 import com.bennero.server.SynchronizedConnection;
+import com.bennero.server.event.DisplayPowerEvent;
+import javafx.event.EventHandler;
 
 import java.io.IOException;
 import java.io.PrintStream;
@@ -63,9 +65,11 @@ class HeartbeatSender implements Runnable {
     private boolean connectionLostCounterEnabled;
     private int secondsConnectionLost;
     private boolean sendHeartbeats;
+    private EventHandler<DisplayPowerEvent> displayPowerChanged;
 
-    public HeartbeatSender(SynchronizedConnection connection) {
+    public HeartbeatSender(SynchronizedConnection connection, EventHandler<DisplayPowerEvent> displayPowerChanged) {
         this.connection = connection;
+        this.displayPowerChanged = displayPowerChanged;
         socket = new Socket();
         secondsConnectionLost = 0;
         connectionLostCounterEnabled = false;
@@ -123,6 +127,7 @@ class HeartbeatSender implements Runnable {
                 if (OSUtils.getOperatingSystem() == OSUtils.OperatingSystem.RASPBERRY_PI &&
                         !RaspberryPiScreenUtils.isDisplayEnabled()) {
                     RaspberryPiScreenUtils.setDisplayEnabled(true);
+                    displayPowerChanged.handle(new DisplayPowerEvent(true));
                 }
             } else if(!connection.isStopped() && connectionLostCounterEnabled) {
                 Logger.log(LogLevel.DEBUG, CLASS_NAME, "Seconds since connection lost: " + secondsConnectionLost);
@@ -133,6 +138,7 @@ class HeartbeatSender implements Runnable {
                         OSUtils.getOperatingSystem() == OSUtils.OperatingSystem.RASPBERRY_PI &&
                         RaspberryPiScreenUtils.isDisplayEnabled()) {
                     RaspberryPiScreenUtils.setDisplayEnabled(false);
+                    displayPowerChanged.handle(new DisplayPowerEvent(false));
                 }
             }
 
@@ -64,6 +64,8 @@ public class Server implements Runnable {
     private EventHandler<RemovePageEvent> removePageMessageReceived;
     private EventHandler<RemoveSensorEvent> removeSensorMessageReceived;
     private EventHandler<SensorTransformationEvent> sensorTransformationMessageReceived;
+    private EventHandler<LayoutTransactionEvent> layoutTransactionMessageReceived;
+    private EventHandler<DisplayPowerEvent> displayPowerChanged;
 
     private SynchronizedConnection activeConnection;
 
@@ -83,7 +85,9 @@ public class Server implements Runnable {
                   EventHandler<RemovePageEvent> removePageMessageReceived,
                   EventHandler<SensorDataEvent> sensorDataMessageReceived,
                   EventHandler<RemoveSensorEvent> removeSensorMessageReceived,
-                  EventHandler<SensorTransformationEvent> sensorTransformationMessageReceived) {
+                  EventHandler<SensorTransformationEvent> sensorTransformationMessageReceived,
+                  EventHandler<LayoutTransactionEvent> layoutTransactionMessageReceived,
+                  EventHandler<DisplayPowerEvent> displayPowerChanged) {
         this.siteLocalAddressInformation = siteLocalAddressInformation;
         this.connectedEvent = connectedEvent;
         this.disconnectedEvent = disconnectedEvent;
@@ -93,6 +97,8 @@ public class Server implements Runnable {
         this.sensorDataMessageReceived = sensorDataMessageReceived;
         this.removeSensorMessageReceived = removeSensorMessageReceived;
         this.sensorTransformationMessageReceived = sensorTransformationMessageReceived;
+        this.layoutTransactionMessageReceived = layoutTransactionMessageReceived;
+        this.displayPowerChanged = displayPowerChanged;
         activeConnection = new SynchronizedConnection();
         acceptConnections = true;
     }
@@ -107,7 +113,7 @@ public class Server implements Runnable {
         broadcastReplyThread = new Thread(broadcastReplier);
         broadcastReplyThread.start();
 
-        heartbeatSender = new HeartbeatSender(activeConnection);
+        heartbeatSender = new HeartbeatSender(activeConnection, displayPowerChanged);
         heartbeatSenderThread = new Thread(heartbeatSender);
         heartbeatSenderThread.start();
 
@@ -124,7 +130,8 @@ public class Server implements Runnable {
                 // Disconnect event we should remove the connection from the list (the thread will die automatically)
                 Connection connection = new Connection(activeConnection, socketChannel, connectedEvent,
                         disconnectedEvent, pageMessageReceived, sensorMessageReceived, removePageMessageReceived,
-                        sensorDataMessageReceived, removeSensorMessageReceived, sensorTransformationMessageReceived);
+                        sensorDataMessageReceived, removeSensorMessageReceived, sensorTransformationMessageReceived,
+                        layoutTransactionMessageReceived);
 
                 Thread thread = new Thread(connection);
                 thread.start();
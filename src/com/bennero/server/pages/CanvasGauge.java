@@ -0,0 +1,123 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.pages;
+
+import com.bennero.server.data.SensorDescriptor;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+
+/**
+ * CanvasGauge draws a sensor directly on to a single canvas, as a lighter alternative to the Sensor control for low
+ * power displays. The sensor is drawn in a simplified form of its skin by a GaugePainter. The canvas is only redrawn
+ * when the value or the size of the gauge changes.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see GaugePainter
+ * @see SensorRenderMode
+ * @since 1.2
+ */
+public class CanvasGauge extends Region {
+    private final SensorDescriptor sensorDescriptor;
+    private final GaugePainter painter;
+    private final Canvas canvas;
+    private float value;
+
+    /**
+     * Create a canvas gauge
+     *
+     * @param sensorDescriptor Descriptor of the sensor
+     * @param cellOverlays     Information to draw in the cell in addition to the sensor
+     */
+    public CanvasGauge(SensorDescriptor sensorDescriptor, CellOverlays cellOverlays) {
+        this.sensorDescriptor = sensorDescriptor;
+        this.painter = new GaugePainter(sensorDescriptor, cellOverlays);
+        this.canvas = new Canvas();
+        this.value = sensorDescriptor.getInitialValue();
+        getChildren().add(canvas);
+    }
+
+    public byte getUniqueId() {
+        return sensorDescriptor.getUniqueId();
+    }
+
+    public int getRow() {
+        return sensorDescriptor.getRow();
+    }
+
+    public int getColumn() {
+        return sensorDescriptor.getColumn();
+    }
+
+    public int getRowSpan() {
+        return sensorDescriptor.getRowSpan();
+    }
+
+    public int getColumnSpan() {
+        return sensorDescriptor.getColumnSpan();
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public void setValue(float value) {
+        if (this.value != value) {
+            this.value = value;
+            draw();
+        }
+    }
+
+    /**
+     * Draw the gauge again if the minimum and maximum drawn in the cell have changed without the value changing
+     *
+     * @return True if the gauge was drawn again
+     */
+    public boolean repaintCellOverlays() {
+        if (!painter.isRollupStale()) {
+            return false;
+        }
+
+        draw();
+        return true;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (canvas.getWidth() != width || canvas.getHeight() != height) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            draw();
+        }
+    }
+
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        painter.paint(gc, 0, 0, canvas.getWidth(), canvas.getHeight(), value);
+    }
+}
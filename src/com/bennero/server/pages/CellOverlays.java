@@ -0,0 +1,98 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.pages;
+
+import com.bennero.server.data.SensorHistory;
+import com.bennero.server.data.SensorRollups;
+
+/**
+ * CellOverlays holds the optional information that the canvas based render modes draw in a sensor cell in addition to
+ * the sensor itself:
+ * <ul>
+ *     <li>The trend of the sensor from its history</li>
+ *     <li>The minimum and maximum of the sensor over a period, from its rollups</li>
+ * </ul>
+ * Each source is null if it is not enabled, in which case nothing is drawn for it.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see GaugePainter
+ * @since 1.2
+ */
+public class CellOverlays {
+    public static final CellOverlays NONE = new CellOverlays(null, null, 0);
+
+    private final SensorHistory sensorHistory;
+    private final SensorRollups sensorRollups;
+    private final long rollupPeriodMs;
+
+    /**
+     * Create cell overlays
+     *
+     * @param sensorHistory  History to draw the trends of the sensors from, or null to not draw trends
+     * @param sensorRollups  Rollups to draw the minimum and maximum of the sensors from, or null to not draw them
+     * @param rollupPeriodMs Period that the minimum and maximum are drawn over
+     */
+    public CellOverlays(SensorHistory sensorHistory, SensorRollups sensorRollups, long rollupPeriodMs) {
+        this.sensorHistory = sensorHistory;
+        this.sensorRollups = sensorRollups;
+        this.rollupPeriodMs = rollupPeriodMs;
+    }
+
+    public SensorHistory getSensorHistory() {
+        return sensorHistory;
+    }
+
+    public SensorRollups getSensorRollups() {
+        return sensorRollups;
+    }
+
+    public long getRollupPeriodMs() {
+        return rollupPeriodMs;
+    }
+
+    /**
+     * Forget everything held about a sensor, e.g. when it is removed
+     *
+     * @param sensorId ID of the sensor
+     */
+    public void removeSensor(byte sensorId) {
+        if (sensorHistory != null) {
+            sensorHistory.remove(sensorId);
+        }
+
+        if (sensorRollups != null) {
+            sensorRollups.remove(sensorId);
+        }
+    }
+
+    public void clear() {
+        if (sensorHistory != null) {
+            sensorHistory.clear();
+        }
+
+        if (sensorRollups != null) {
+            sensorRollups.clear();
+        }
+    }
+}
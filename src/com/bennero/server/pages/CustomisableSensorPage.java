@@ -27,21 +27,19 @@ import com.bennero.common.Constants;
 import com.bennero.common.PageData;
 import com.bennero.common.PageTemplate;
 import com.bennero.common.Sensor;
-import com.bennero.common.osspecific.OSUtils;
+import com.bennero.server.data.SensorDescriptor;
+import com.bennero.server.image.BackgroundImageCache;
 import javafx.animation.Transition;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 /**
@@ -49,6 +47,10 @@ import java.util.List;
  * and data send by the editor system. It is designed to accept page data objects that define any changes such as the
  * layout, title, subtitle, sensor layouts etc. These page data are processed by the network components of the hardware
  * monitor (from received network messages)
+ * <p>
+ * Sensors are drawn as Sensor controls, or as CanvasGauges if the page is created with the CANVAS render mode. With
+ * the SURFACE render mode, the whole page is drawn by a PageSurface instead of by nodes. Sensors that are not Sensor
+ * controls are not part of the page data.
  *
  * @author Christian Benner
  * @version %I%, %G%
@@ -57,7 +59,15 @@ import java.util.List;
  */
 public class CustomisableSensorPage extends StackPane implements PageTemplate {
     private final static Insets PAGE_PADDING = new Insets(10, 10, 10, 10);
-
+    private final static Border ALERT_BORDER = new Border(new BorderStroke(PageSurface.ALERT_COLOUR,
+            BorderStrokeStyle.SOLID, CornerRadii.EMPTY, new BorderWidths(PageSurface.ALERT_BORDER_WIDTH)));
+
+    private final BackgroundImageCache backgroundImageCache;
+    private final SensorRenderMode sensorRenderMode;
+    private final CellOverlays cellOverlays;
+    private final LinkedHashMap<Byte, CanvasGauge> gauges;
+    private final LinkedHashMap<Byte, SensorDescriptor> surfaceSensors;
+    private PageSurface pageSurface;
     private PageData pageData;
     private GridPane sensorPane;
 
@@ -66,17 +76,48 @@ public class CustomisableSensorPage extends StackPane implements PageTemplate {
     private HBox subtitleBox;
 
     private BorderPane borderPane;
-    private ArrayList<Sensor> placedSensors;
+    private OccupancyGrid occupancyGrid;
 
     private Label titleLabel;
     private Label subtitleLabel;
 
     private Transition transitionControl;
 
-    public CustomisableSensorPage(PageData pageData) {
+    public CustomisableSensorPage(PageData pageData, BackgroundImageCache backgroundImageCache) {
+        this(pageData, backgroundImageCache, SensorRenderMode.CONTROL, Collections.emptyList(),
+                CellOverlays.NONE);
+    }
+
+    /**
+     * Create a page with sensors drawn in the given render mode
+     *
+     * @param pageData             Page data
+     * @param backgroundImageCache Cache to load the background image from
+     * @param sensorRenderMode     How the sensors are drawn
+     * @param sensors              Sensors to create on the page, in addition to any already in the page data
+     * @param cellOverlays         Information to draw in sensor cells in addition to the sensors, only drawn by the
+     *                             CANVAS and SURFACE render modes
+     */
+    public CustomisableSensorPage(PageData pageData, BackgroundImageCache backgroundImageCache,
+                                  SensorRenderMode sensorRenderMode, Collection<SensorDescriptor> sensors,
+                                  CellOverlays cellOverlays) {
         this.pageData = pageData;
+        this.backgroundImageCache = backgroundImageCache;
+        this.sensorRenderMode = sensorRenderMode;
+        this.cellOverlays = cellOverlays;
+        this.gauges = new LinkedHashMap<>();
+        this.surfaceSensors = new LinkedHashMap<>();
+        if (sensorRenderMode == SensorRenderMode.SURFACE) {
+            pageSurface = new PageSurface(pageData, backgroundImageCache, cellOverlays);
+        }
+
         setBackgroundFromData();
 
+        // Sensors are created before the grid so that it is only laid out once
+        for (SensorDescriptor sensorDescriptor : sensors) {
+            createSensor(sensorDescriptor);
+        }
+
         headerPane = new VBox();
 
         initTitle();
@@ -89,13 +130,18 @@ public class CustomisableSensorPage extends StackPane implements PageTemplate {
         borderPane.setTop(headerPane);
         borderPane.setPadding(PAGE_PADDING);
 
-        super.getChildren().add(borderPane);
+        // The header and grid nodes are still kept up to date in the surface render mode, but are not shown
+        super.getChildren().add(pageSurface != null ? pageSurface : borderPane);
     }
 
     public PageData getPageData() {
         return pageData;
     }
 
+    public SensorRenderMode getSensorRenderMode() {
+        return sensorRenderMode;
+    }
+
     public Transition getTransitionControl() {
         return this.transitionControl;
     }
@@ -105,7 +151,13 @@ public class CustomisableSensorPage extends StackPane implements PageTemplate {
     }
 
     protected void initGrid() {
-        placedSensors = new ArrayList<>();
+        if (pageSurface != null) {
+            occupancyGrid = new OccupancyGrid(pageData.getRows(), pageData.getColumns());
+            pageSurface.setSensors(surfaceSensors.values());
+            return;
+        }
+
+        occupancyGrid = new OccupancyGrid(pageData.getRows(), pageData.getColumns());
         sensorPane = new GridPane();
         sensorPane.setPadding(new Insets(15, 15, 15, 15));
         sensorPane.setHgap(10.0f);
@@ -132,46 +184,18 @@ public class CustomisableSensorPage extends StackPane implements PageTemplate {
     }
 
     protected boolean isSpaceTaken(Sensor sensor) {
-        boolean taken = false;
-
         // Check that no other sensor has been placed at that position
-        for (int i = 0; i < placedSensors.size() && !taken; i++) {
-            Sensor placedSensor = placedSensors.get(i);
-
-            if (placedSensor != sensor) {
-                int startColumn = sensor.getColumn();
-                int endColumn = startColumn + sensor.getColumnSpan();
-                int startRow = sensor.getRow();
-                int endRow = startRow + sensor.getRowSpan();
-
-                int placedStartColumn = placedSensor.getColumn();
-                int placedEndColumn = placedStartColumn + placedSensor.getColumnSpan();
-                int placedStartRow = placedSensor.getRow();
-                int placedEndRow = placedStartRow + placedSensor.getRowSpan();
-
-                boolean withinRow = (startRow >= placedStartRow && startRow < placedEndRow) ||
-                        (endRow > placedStartRow && endRow <= placedEndRow);
-                boolean withinColumn = (startColumn >= placedStartColumn && startColumn < placedEndColumn) ||
-                        (endColumn > placedStartColumn && endColumn <= placedEndColumn);
-
-                if (withinRow && withinColumn) {
-                    taken = true;
-                }
-            }
-        }
-
-        return taken;
+        return occupancyGrid.isSpaceTaken(sensor);
     }
 
     protected void placeSensors() {
         // Add sensors to page
         for (Sensor sensor : pageData.getSensorList()) {
             if (!isSpaceTaken(sensor)) {
-                placedSensors.add(sensor);
-
                 // This is required in the non-editor version
                 StackPane stackPane = new StackPane();
                 stackPane.getChildren().add(sensor);
+                occupancyGrid.place(sensor, stackPane);
 
                 GridPane.setRowSpan(stackPane, sensor.getRowSpan());
                 GridPane.setColumnSpan(stackPane, sensor.getColumnSpan());
@@ -179,6 +203,29 @@ public class CustomisableSensorPage extends StackPane implements PageTemplate {
                 sensorPane.add(stackPane, sensor.getColumn(), sensor.getRow());
             }
         }
+
+        for (CanvasGauge gauge : gauges.values()) {
+            if (!occupancyGrid.isSpaceTaken(gauge)) {
+                StackPane stackPane = new StackPane();
+                stackPane.getChildren().add(gauge);
+                occupancyGrid.place(gauge, stackPane);
+
+                GridPane.setRowSpan(stackPane, gauge.getRowSpan());
+                GridPane.setColumnSpan(stackPane, gauge.getColumnSpan());
+
+                sensorPane.add(stackPane, gauge.getColumn(), gauge.getRow());
+            }
+        }
+    }
+
+    private void createSensor(SensorDescriptor sensorDescriptor) {
+        if (sensorRenderMode == SensorRenderMode.CANVAS) {
+            gauges.put(sensorDescriptor.getUniqueId(), new CanvasGauge(sensorDescriptor, cellOverlays));
+        } else if (sensorRenderMode == SensorRenderMode.SURFACE) {
+            surfaceSensors.put(sensorDescriptor.getUniqueId(), sensorDescriptor);
+        } else {
+            pageData.addSensor(sensorDescriptor.createSensor());
+        }
     }
 
     public void initTitle() {
@@ -243,6 +290,10 @@ public class CustomisableSensorPage extends StackPane implements PageTemplate {
         setSubtitleEnabled(pageData.isSubtitleEnabled());
         setSubtitleAlignment(pageData.getSubtitleAlignment());
         setBackgroundImage(pageData.getBackgroundImage());
+
+        if (pageSurface != null) {
+            pageSurface.invalidate();
+        }
     }
 
     @Override
@@ -510,24 +561,23 @@ public class CustomisableSensorPage extends StackPane implements PageTemplate {
     }
 
     private void setBackgroundFromData() {
+        // The page surface draws the background itself, it is drawn again when the page data is updated
+        if (pageSurface != null) {
+            return;
+        }
+
         if(pageData.getBackgroundImage().isEmpty()) {
             super.setBackground(new Background(new BackgroundFill(pageData.getColour(), CornerRadii.EMPTY, Insets.EMPTY)));
         } else {
-            // Load image file and set background
-            try {
-                File file = new File(OSUtils.getBackgroundImageDirectory() + "_in" + File.separator + pageData.getBackgroundImage());
-                if(!file.exists()) {
-                    return;
+            // Image is decoded off the JavaFX thread (or shared with another page) and set when it is ready
+            final String imageName = pageData.getBackgroundImage();
+            backgroundImageCache.load(imageName, image -> {
+                // The background image may have been changed again whilst this one was loading
+                if (imageName.equals(pageData.getBackgroundImage())) {
+                    BackgroundSize backgroundSize = new BackgroundSize(BackgroundSize.AUTO, BackgroundSize.AUTO, false, false, false, true);
+                    super.setBackground(new Background(new BackgroundImage(image, BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.CENTER, backgroundSize)));
                 }
-
-                InputStream is = new FileInputStream(file);
-                Image image = new Image(is);
-
-                BackgroundSize backgroundSize = new BackgroundSize(BackgroundSize.AUTO, BackgroundSize.AUTO, false, false, false, true);
-                super.setBackground(new Background(new BackgroundImage(image, BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, BackgroundPosition.CENTER, backgroundSize)));
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            }
+            });
         }
     }
 
@@ -542,44 +592,117 @@ public class CustomisableSensorPage extends StackPane implements PageTemplate {
         initGrid();
     }
 
+    /**
+     * Create a sensor on the page, drawn in the render mode of the page
+     *
+     * @param sensorDescriptor Descriptor of the sensor
+     */
+    public void addSensor(SensorDescriptor sensorDescriptor) {
+        createSensor(sensorDescriptor);
+        initGrid();
+    }
+
+    /**
+     * Set the value of a sensor that is on the page
+     *
+     * @param sensorId ID of the sensor
+     * @param value    Value to set
+     * @return True if the sensor is on the page
+     */
+    public boolean setSensorValue(byte sensorId, float value) {
+        if (pageSurface != null) {
+            return pageSurface.setSensorValue(sensorId, value);
+        }
+
+        OccupancyGrid.Placement placement = occupancyGrid.get(sensorId);
+        if (placement != null) {
+            placement.setValue(value);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Show or hide the alert border around the cell of a sensor, which is toggled to flash the cell while the alert of
+     * the sensor is firing
+     *
+     * @param sensorId ID of the sensor
+     * @param visible  True to show the alert border
+     */
+    public void setAlertFlash(byte sensorId, boolean visible) {
+        if (pageSurface != null) {
+            pageSurface.setAlertFlash(sensorId, visible);
+            return;
+        }
+
+        OccupancyGrid.Placement placement = occupancyGrid.get(sensorId);
+        if (placement != null && placement.getCell() instanceof Region) {
+            ((Region) placement.getCell()).setBorder(visible ? ALERT_BORDER : null);
+        }
+    }
+
+    /**
+     * Paint the sensors whose cell overlays are out of date again. Sensors drawn as controls do not have cell
+     * overlays.
+     *
+     * @return True if any sensor was painted again
+     */
+    public boolean repaintCellOverlays() {
+        boolean repainted = pageSurface != null && pageSurface.repaintCellOverlays();
+        for (CanvasGauge gauge : gauges.values()) {
+            repainted |= gauge.repaintCellOverlays();
+        }
+
+        return repainted;
+    }
+
     @Override
     public void removeSensor(Sensor sensor) {
         sensorPane.getChildren().remove(sensor);
         pageData.removeSensor(sensor);
-        placedSensors.remove(sensor);
+        occupancyGrid.remove(sensor.getUniqueId());
         initGrid();
     }
 
     public void removeSensor(int uniqueId) {
-        // Find sensor in the list
-        boolean found = false;
-        for (int i = 0; i < placedSensors.size() && !found; i++) {
-            if (placedSensors.get(i).getUniqueId() == uniqueId) {
-                found = true;
-                removeSensor(placedSensors.get(i));
-            }
+        if (surfaceSensors.remove((byte) uniqueId) != null) {
+            initGrid();
+            return;
+        }
+
+        if (gauges.remove((byte) uniqueId) != null) {
+            occupancyGrid.remove((byte) uniqueId);
+            initGrid();
+            return;
+        }
+
+        OccupancyGrid.Placement placement = occupancyGrid.get((byte) uniqueId);
+        if (placement != null) {
+            removeSensor(placement.getSensor());
         }
     }
 
     public void transformSensor(int sensorId, byte row, byte column, byte rowSpan, byte columnSpan) {
-        // Find sensor in the list
-        boolean found = false;
-        for (int i = 0; i < placedSensors.size() && !found; i++) {
-            if (placedSensors.get(i).getUniqueId() == sensorId) {
-                found = true;
+        // Surface sensors take their position from their sensor descriptor, which has already been transformed
+        if (surfaceSensors.containsKey((byte) sensorId)) {
+            initGrid();
+            return;
+        }
 
-                Sensor sensor = placedSensors.get(i);
+        OccupancyGrid.Placement placement = occupancyGrid.get((byte) sensorId);
+        if (placement != null) {
+            // Canvas gauges take their position from their sensor descriptor, which has already been transformed
+            Sensor sensor = placement.getSensor();
+            if (sensor != null) {
                 sensor.setPosition(row, column);
                 sensor.setRowSpan(rowSpan);
                 sensor.setColumnSpan(columnSpan);
-
-                sensorPane.getChildren().remove(sensor);
-                GridPane.setRowIndex(sensor, (int) row);
-                GridPane.setColumnIndex(sensor, (int) column);
-                GridPane.setRowSpan(sensor, (int) rowSpan);
-                GridPane.setColumnSpan(sensor, (int) columnSpan);
-                sensorPane.getChildren().add(sensor);
             }
+            occupancyGrid.move((byte) sensorId, row, column, rowSpan, columnSpan);
+
+            // Move the cell that wraps the sensor, the grid pane will re-position it on the next layout pass
+            GridPane.setConstraints(placement.getCell(), column, row, columnSpan, rowSpan);
         }
     }
 
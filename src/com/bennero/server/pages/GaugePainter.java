@@ -0,0 +1,314 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.pages;
+
+import com.bennero.common.Skin;
+import com.bennero.common.SkinHelper;
+import com.bennero.server.data.RollupSummary;
+import com.bennero.server.data.SensorDescriptor;
+import com.bennero.server.data.SensorHistory;
+import com.bennero.server.data.SensorRollups;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.ArcType;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * GaugePainter paints a sensor on to a canvas in a simplified form of its skin, as used by the canvas based render
+ * modes. Rather than reproducing every skin, the sensor is painted in one of three forms depending on what its skin
+ * supports:
+ * <ul>
+ *     <li>Radial: skins with a needle are painted as an arc with a needle</li>
+ *     <li>Bar: skins with a bar are painted as a horizontal bar</li>
+ *     <li>Numeric: other skins are painted as the value only</li>
+ * </ul>
+ * The colours that the editor chose for the sensor are used where the form has an equivalent. Value averaging is not
+ * shown. Depending on the cell overlays, the trend of the sensor is painted behind it and its minimum and maximum over
+ * a period are painted under the title.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see SensorDescriptor
+ * @since 1.2
+ */
+class GaugePainter {
+    private enum Form {
+        RADIAL,
+        BAR,
+        NUMERIC,
+    }
+
+    private static final double START_ANGLE = 225.0;
+    private static final double SWEEP_ANGLE = 270.0;
+    private static final String FONT_FAMILY = Font.getDefault().getFamily();
+    private static final Color DEFAULT_FOREGROUND = Color.WHITE;
+    private static final Color DEFAULT_BAR = Color.rgb(0, 160, 255);
+    private static final Color DEFAULT_BAR_BACKGROUND = Color.rgb(255, 255, 255, 0.15);
+    private static final Color DEFAULT_THRESHOLD = Color.RED;
+    private static final double TREND_OPACITY = 0.5;
+    private static final double ROLLUP_OPACITY = 0.75;
+
+    private final SensorDescriptor sensorDescriptor;
+    private final Form form;
+
+    private final Color titleColour;
+    private final Color valueColour;
+    private final Color barColour;
+    private final Color barBackgroundColour;
+    private final Color needleColour;
+    private final Color thresholdColour;
+    private final Color tickMarkColour;
+    private final Color trendColour;
+    private final TrendLine trendLine;
+    private final SensorRollups sensorRollups;
+    private final long rollupPeriodMs;
+    private final RollupSummary rollupSummary;
+    private final String rollupPeriod;
+    private final Color rollupColour;
+
+    // Minimum and maximum last painted under the title, NaN if none were painted
+    private float paintedRollupMin = Float.NaN;
+    private float paintedRollupMax = Float.NaN;
+
+    /**
+     * Create a painter for a sensor
+     *
+     * @param sensorDescriptor Descriptor of the sensor
+     * @param cellOverlays     Information to paint in the cell in addition to the sensor
+     */
+    GaugePainter(SensorDescriptor sensorDescriptor, CellOverlays cellOverlays) {
+        this.sensorDescriptor = sensorDescriptor;
+        SensorHistory sensorHistory = cellOverlays.getSensorHistory();
+        this.trendLine = sensorHistory != null ? new TrendLine(sensorHistory, sensorDescriptor.getUniqueId()) : null;
+        this.sensorRollups = cellOverlays.getSensorRollups();
+        this.rollupPeriodMs = cellOverlays.getRollupPeriodMs();
+        this.rollupSummary = new RollupSummary();
+        this.rollupPeriod = formatPeriod(rollupPeriodMs);
+
+        byte skin = sensorDescriptor.getSkin();
+        if (SkinHelper.checkSupport(skin, Skin.NEEDLE_COLOUR_SUPPORTED)) {
+            form = Form.RADIAL;
+        } else if (SkinHelper.checkSupport(skin, Skin.BAR_COLOUR_SUPPORTED)) {
+            form = Form.BAR;
+        } else {
+            form = Form.NUMERIC;
+        }
+
+        Color foregroundColour = orDefault(sensorDescriptor.getForegroundColour(), DEFAULT_FOREGROUND);
+        titleColour = orDefault(sensorDescriptor.getTitleColour(), foregroundColour);
+        valueColour = orDefault(sensorDescriptor.getValueColour(), foregroundColour);
+        barColour = orDefault(sensorDescriptor.getBarColour(), DEFAULT_BAR);
+        barBackgroundColour = orDefault(sensorDescriptor.getBarBackgroundColour(), DEFAULT_BAR_BACKGROUND);
+        needleColour = orDefault(sensorDescriptor.getNeedleColour(), foregroundColour);
+        thresholdColour = orDefault(sensorDescriptor.getThresholdColour(), DEFAULT_THRESHOLD);
+        tickMarkColour = orDefault(sensorDescriptor.getTickMarkColour(), foregroundColour);
+        trendColour = barColour.deriveColor(0.0, 1.0, 1.0, TREND_OPACITY);
+        rollupColour = titleColour.deriveColor(0.0, 1.0, 1.0, ROLLUP_OPACITY);
+    }
+
+    /**
+     * Paint the sensor into an area of a canvas. The area is not cleared first.
+     *
+     * @param gc     Graphics context of the canvas
+     * @param x      Left of the area
+     * @param y      Top of the area
+     * @param width  Width of the area
+     * @param height Height of the area
+     * @param value  Value of the sensor
+     */
+    void paint(GraphicsContext gc, double x, double y, double width, double height, float value) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        gc.save();
+        gc.translate(x, y);
+
+        // Title across the top of the cell
+        double titleSize = Math.max(8.0, Math.min(height * 0.12, width * 0.08));
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.TOP);
+        gc.setFill(titleColour);
+        gc.setFont(Font.font(FONT_FAMILY, FontWeight.NORMAL, titleSize));
+        gc.fillText(sensorDescriptor.getTitle(), width / 2.0, 0, width);
+
+        double top = titleSize * 1.4;
+        if (sensorRollups != null) {
+            top = paintRollup(gc, width, top, titleSize * 0.75);
+        }
+
+        if (trendLine != null) {
+            trendLine.paint(gc, 0, top, width, height - top, sensorDescriptor.getMax(), value, trendColour);
+        }
+
+        switch (form) {
+            case RADIAL:
+                paintRadial(gc, width, height, top, value);
+                break;
+            case BAR:
+                paintBar(gc, width, height, top, value);
+                break;
+            default:
+                paintValue(gc, width / 2.0, top + (height - top) / 2.0, (height - top) * 0.5, width, value);
+                break;
+        }
+
+        gc.restore();
+    }
+
+    /**
+     * Check if the minimum and maximum painted under the title are out of date, e.g. because the extremes have left
+     * the rollup period without the value of the sensor changing
+     *
+     * @return True if the sensor should be painted again
+     */
+    boolean isRollupStale() {
+        if (sensorRollups == null) {
+            return false;
+        }
+
+        sensorRollups.query(sensorDescriptor.getUniqueId(), System.currentTimeMillis(), rollupPeriodMs,
+                rollupSummary);
+        if (rollupSummary.isEmpty()) {
+            return !Float.isNaN(paintedRollupMin);
+        }
+
+        return Float.compare(rollupSummary.getMin(), paintedRollupMin) != 0 ||
+                Float.compare(rollupSummary.getMax(), paintedRollupMax) != 0;
+    }
+
+    private void paintRadial(GraphicsContext gc, double width, double height, double top, float value) {
+        double size = Math.min(width, height - top);
+        double lineWidth = Math.max(2.0, size * 0.08);
+        double radius = (size - lineWidth) / 2.0;
+        double centreX = width / 2.0;
+        double centreY = top + (height - top) / 2.0;
+
+        gc.setLineCap(StrokeLineCap.BUTT);
+        gc.setLineWidth(lineWidth);
+        gc.setStroke(barBackgroundColour);
+        gc.strokeArc(centreX - radius, centreY - radius, radius * 2, radius * 2, START_ANGLE, -SWEEP_ANGLE,
+                ArcType.OPEN);
+
+        double fraction = getFraction(value);
+        gc.setStroke(isOverThreshold(value) ? thresholdColour : barColour);
+        gc.strokeArc(centreX - radius, centreY - radius, radius * 2, radius * 2, START_ANGLE,
+                -SWEEP_ANGLE * fraction, ArcType.OPEN);
+
+        // Threshold tick across the arc
+        double thresholdAngle = Math.toRadians(START_ANGLE - SWEEP_ANGLE * getFraction(sensorDescriptor.getThreshold()));
+        double inner = radius - lineWidth;
+        double outer = radius + lineWidth / 2.0;
+        gc.setLineWidth(Math.max(1.0, lineWidth * 0.25));
+        gc.setStroke(tickMarkColour);
+        gc.strokeLine(centreX + Math.cos(thresholdAngle) * inner, centreY - Math.sin(thresholdAngle) * inner,
+                centreX + Math.cos(thresholdAngle) * outer, centreY - Math.sin(thresholdAngle) * outer);
+
+        // Needle
+        double needleAngle = Math.toRadians(START_ANGLE - SWEEP_ANGLE * fraction);
+        gc.setLineCap(StrokeLineCap.ROUND);
+        gc.setLineWidth(Math.max(1.5, lineWidth * 0.3));
+        gc.setStroke(needleColour);
+        gc.strokeLine(centreX, centreY, centreX + Math.cos(needleAngle) * inner,
+                centreY - Math.sin(needleAngle) * inner);
+
+        paintValue(gc, centreX, centreY + radius * 0.55, radius * 0.4, radius * 1.4, value);
+    }
+
+    private void paintBar(GraphicsContext gc, double width, double height, double top, float value) {
+        double barHeight = Math.max(4.0, (height - top) * 0.3);
+        double barY = height - barHeight;
+
+        gc.setFill(barBackgroundColour);
+        gc.fillRect(0, barY, width, barHeight);
+        gc.setFill(isOverThreshold(value) ? thresholdColour : barColour);
+        gc.fillRect(0, barY, width * getFraction(value), barHeight);
+
+        double thresholdX = width * getFraction(sensorDescriptor.getThreshold());
+        gc.setStroke(tickMarkColour);
+        gc.setLineWidth(1.0);
+        gc.strokeLine(thresholdX, barY, thresholdX, height);
+
+        double valueAreaHeight = barY - top;
+        paintValue(gc, width / 2.0, top + valueAreaHeight / 2.0, valueAreaHeight * 0.7, width, value);
+    }
+
+    private void paintValue(GraphicsContext gc, double centreX, double centreY, double size, double maxWidth,
+                            float value) {
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.setFill(valueColour);
+        gc.setFont(Font.font(FONT_FAMILY, FontWeight.BOLD, Math.max(8.0, size)));
+        gc.fillText(String.format("%.1f", value), centreX, centreY, maxWidth);
+    }
+
+    // Minimum and maximum over the rollup period, returns the top of the area below it
+    private double paintRollup(GraphicsContext gc, double width, double top, double size) {
+        sensorRollups.query(sensorDescriptor.getUniqueId(), System.currentTimeMillis(), rollupPeriodMs,
+                rollupSummary);
+        paintedRollupMin = rollupSummary.isEmpty() ? Float.NaN : rollupSummary.getMin();
+        paintedRollupMax = rollupSummary.isEmpty() ? Float.NaN : rollupSummary.getMax();
+        if (!rollupSummary.isEmpty()) {
+            gc.setTextAlign(TextAlignment.CENTER);
+            gc.setTextBaseline(VPos.TOP);
+            gc.setFill(rollupColour);
+            gc.setFont(Font.font(FONT_FAMILY, FontWeight.NORMAL, size));
+            gc.fillText(String.format("%s  min %.1f  max %.1f", rollupPeriod, rollupSummary.getMin(),
+                    rollupSummary.getMax()), width / 2.0, top, width);
+        }
+
+        return top + size * 1.4;
+    }
+
+    private static String formatPeriod(long periodMs) {
+        if (periodMs >= 3_600_000L && periodMs % 3_600_000L == 0) {
+            return (periodMs / 3_600_000L) + "h";
+        } else if (periodMs >= 60_000L && periodMs % 60_000L == 0) {
+            return (periodMs / 60_000L) + "m";
+        }
+
+        return (periodMs / 1000L) + "s";
+    }
+
+    private boolean isOverThreshold(float value) {
+        return sensorDescriptor.getThreshold() > 0.0f && value >= sensorDescriptor.getThreshold();
+    }
+
+    private double getFraction(float sensorValue) {
+        float max = sensorDescriptor.getMax();
+        if (max <= 0.0f) {
+            return 0.0;
+        }
+
+        return Math.max(0.0, Math.min(1.0, sensorValue / max));
+    }
+
+    private static Color orDefault(Color colour, Color defaultColour) {
+        return colour != null ? colour : defaultColour;
+    }
+}
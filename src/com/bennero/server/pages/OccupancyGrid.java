@@ -0,0 +1,207 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.pages;
+
+import com.bennero.common.Sensor;
+import javafx.scene.Node;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * OccupancyGrid tracks which cells of a sensor page are in use and where each sensor has been placed. Occupancy is
+ * stored as a count of the sensors covering each of the rows x columns cells so that a collision check only visits the
+ * cells that the sensor spans, and placed sensors are indexed by their unique ID so that they can be found without
+ * searching through the page. Counting rather than flagging the cells keeps them occupied while any sensor still
+ * covers them, as a transform from the editor can move a sensor over another. Cells that fall outside of the grid are
+ * not tracked.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see CustomisableSensorPage
+ * @since 1.2
+ */
+class OccupancyGrid {
+    private final int rows;
+    private final int columns;
+    private final int[] occupancy;
+    private final HashMap<Byte, Placement> placements;
+
+    OccupancyGrid(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.occupancy = new int[rows * columns];
+        this.placements = new HashMap<>();
+    }
+
+    boolean isSpaceTaken(Sensor sensor) {
+        return isSpaceTaken(sensor.getRow(), sensor.getColumn(), sensor.getRowSpan(), sensor.getColumnSpan(),
+                placements.get(sensor.getUniqueId()));
+    }
+
+    boolean isSpaceTaken(CanvasGauge gauge) {
+        return isSpaceTaken(gauge.getRow(), gauge.getColumn(), gauge.getRowSpan(), gauge.getColumnSpan(),
+                placements.get(gauge.getUniqueId()));
+    }
+
+    boolean isSpaceTaken(int row, int column, int rowSpan, int columnSpan, byte ignoreSensorId) {
+        return isSpaceTaken(row, column, rowSpan, columnSpan, placements.get(ignoreSensorId));
+    }
+
+    void place(Sensor sensor, Node cell) {
+        place(sensor.getUniqueId(), new Placement(sensor, null, cell, sensor.getRow(), sensor.getColumn(),
+                sensor.getRowSpan(), sensor.getColumnSpan()));
+    }
+
+    void place(CanvasGauge gauge, Node cell) {
+        place(gauge.getUniqueId(), new Placement(null, gauge, cell, gauge.getRow(), gauge.getColumn(),
+                gauge.getRowSpan(), gauge.getColumnSpan()));
+    }
+
+    // Place a sensor that is drawn by its page rather than by a node of its own
+    void place(byte sensorId, int row, int column, int rowSpan, int columnSpan) {
+        place(sensorId, new Placement(null, null, null, row, column, rowSpan, columnSpan));
+    }
+
+    private void place(byte sensorId, Placement placement) {
+        Placement previous = placements.put(sensorId, placement);
+        if (previous != null) {
+            mark(previous, false);
+        }
+
+        mark(placement, true);
+    }
+
+    Placement get(byte sensorId) {
+        return placements.get(sensorId);
+    }
+
+    Placement remove(byte sensorId) {
+        Placement placement = placements.remove(sensorId);
+        if (placement != null) {
+            mark(placement, false);
+        }
+
+        return placement;
+    }
+
+    void move(byte sensorId, int row, int column, int rowSpan, int columnSpan) {
+        Placement placement = placements.get(sensorId);
+        if (placement != null) {
+            mark(placement, false);
+            placement.row = row;
+            placement.column = column;
+            placement.rowSpan = rowSpan;
+            placement.columnSpan = columnSpan;
+            mark(placement, true);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(occupancy, 0);
+        placements.clear();
+    }
+
+    private boolean isSpaceTaken(int row, int column, int rowSpan, int columnSpan, Placement ignore) {
+        int endRow = Math.min(row + rowSpan, rows);
+        int endColumn = Math.min(column + columnSpan, columns);
+
+        for (int y = Math.max(row, 0); y < endRow; y++) {
+            for (int x = Math.max(column, 0); x < endColumn; x++) {
+                // A cell belonging to the sensor being checked is only a collision if another sensor also covers it
+                int owners = ignore != null && ignore.contains(y, x) ? 1 : 0;
+                if (occupancy[y * columns + x] > owners) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void mark(Placement placement, boolean state) {
+        int endRow = Math.min(placement.row + placement.rowSpan, rows);
+        int endColumn = Math.min(placement.column + placement.columnSpan, columns);
+        int change = state ? 1 : -1;
+
+        for (int y = Math.max(placement.row, 0); y < endRow; y++) {
+            int rowStart = y * columns;
+            for (int x = Math.max(placement.column, 0); x < endColumn; x++) {
+                occupancy[rowStart + x] += change;
+            }
+        }
+    }
+
+    // A placed sensor, which is drawn by a Sensor control, a CanvasGauge or by its page
+    static class Placement {
+        private final Sensor sensor;
+        private final CanvasGauge gauge;
+        private final Node cell;
+        private int row;
+        private int column;
+        private int rowSpan;
+        private int columnSpan;
+
+        private Placement(Sensor sensor, CanvasGauge gauge, Node cell, int row, int column, int rowSpan,
+                          int columnSpan) {
+            this.sensor = sensor;
+            this.gauge = gauge;
+            this.cell = cell;
+            this.row = row;
+            this.column = column;
+            this.rowSpan = rowSpan;
+            this.columnSpan = columnSpan;
+        }
+
+        /**
+         * @return The Sensor control, or null if the sensor is drawn by a CanvasGauge
+         */
+        Sensor getSensor() {
+            return sensor;
+        }
+
+        /**
+         * @return The CanvasGauge, or null if the sensor is drawn by a Sensor control
+         */
+        CanvasGauge getGauge() {
+            return gauge;
+        }
+
+        void setValue(float value) {
+            if (sensor != null) {
+                sensor.setValue(value);
+            } else if (gauge != null) {
+                gauge.setValue(value);
+            }
+        }
+
+        Node getCell() {
+            return cell;
+        }
+
+        private boolean contains(int y, int x) {
+            return y >= row && y < row + rowSpan && x >= column && x < column + columnSpan;
+        }
+    }
+}
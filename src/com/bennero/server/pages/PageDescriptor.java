@@ -0,0 +1,205 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.pages;
+
+import com.bennero.common.PageData;
+import com.bennero.server.data.SensorDescriptor;
+import com.bennero.server.image.BackgroundImageCache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * PageDescriptor holds a page as its page data and sensor descriptors, and only builds the page graphics (a
+ * CustomisableSensorPage and its sensors) when it is materialized. This allows many pages to be configured while only
+ * the pages that are on, or about to be on screen, take up memory for their graphics. Changes to the page are recorded
+ * in the descriptor and also applied to the graphics if the page is materialized.
+ * <p>
+ * Updates to the graphics can be suspended so that a batch of changes is only recorded in the descriptor, the graphics
+ * are then rebuilt in one pass when updates are resumed (if anything changed).
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see CustomisableSensorPage
+ * @see SensorDescriptor
+ * @since 1.2
+ */
+public class PageDescriptor {
+    private final LinkedHashMap<Byte, SensorDescriptor> sensors;
+    private PageData pageData;
+    private CustomisableSensorPage page;
+    private boolean suspended;
+    private boolean modified;
+
+    public PageDescriptor(PageData pageData) {
+        this.pageData = pageData;
+        this.sensors = new LinkedHashMap<>();
+        this.page = null;
+        this.suspended = false;
+        this.modified = false;
+    }
+
+    public byte getUniqueId() {
+        return pageData.getUniqueId();
+    }
+
+    public PageData getPageData() {
+        return pageData;
+    }
+
+    public Collection<SensorDescriptor> getSensors() {
+        return sensors.values();
+    }
+
+    public boolean containsSensor(byte sensorId) {
+        return sensors.containsKey(sensorId);
+    }
+
+    public boolean isMaterialized() {
+        return page != null;
+    }
+
+    /**
+     * Get the page graphics
+     *
+     * @return The page graphics or null if the page is not materialized
+     */
+    public CustomisableSensorPage getPage() {
+        return page;
+    }
+
+    /**
+     * Build the page graphics if they do not already exist. Must be called on the JavaFX application thread.
+     *
+     * @param backgroundImageCache Cache to load the pages background image from
+     * @param sensorRenderMode     How the sensors of the page are drawn
+     * @param cellOverlays         Information to draw in sensor cells in addition to the sensors
+     * @return The page graphics
+     */
+    public CustomisableSensorPage materialize(BackgroundImageCache backgroundImageCache,
+                                              SensorRenderMode sensorRenderMode, CellOverlays cellOverlays) {
+        if (page == null) {
+            // The page graphics get their own copy of the page data because it holds the sensors created for them
+            PageData data = new PageData(pageData.getUniqueId(), pageData.getColour(), pageData.getTitleColour(),
+                    pageData.getSubtitleColour(), pageData.getRows(), pageData.getColumns(),
+                    pageData.getNextPageId(), pageData.getTransitionType(), pageData.getTransitionTime(),
+                    pageData.getDurationMs(), pageData.getTitle(), pageData.isTitleEnabled(),
+                    pageData.getTitleAlignment(), pageData.getSubtitle(), pageData.isSubtitleEnabled(),
+                    pageData.getSubtitleAlignment(), pageData.getBackgroundImage());
+
+            page = new CustomisableSensorPage(data, backgroundImageCache, sensorRenderMode, sensors.values(),
+                    cellOverlays);
+        }
+
+        return page;
+    }
+
+    /**
+     * Release the page graphics. The page should not be in the scene.
+     */
+    public void release() {
+        page = null;
+        suspended = false;
+        modified = false;
+    }
+
+    /**
+     * Stop changes from being applied to the page graphics, they are only recorded in the descriptor until
+     * resumeUpdates is called
+     */
+    public void suspendUpdates() {
+        suspended = true;
+        modified = false;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Resume applying changes to the page graphics
+     *
+     * @return True if the page was changed whilst suspended, in which case the page graphics are out of date and
+     * should be released or rebuilt
+     */
+    public boolean resumeUpdates() {
+        boolean outOfDate = suspended && modified && page != null;
+        suspended = false;
+        modified = false;
+        return outOfDate;
+    }
+
+    // Record that the page has changed, returns true if the change should also be applied to the page graphics
+    private boolean recordChange() {
+        modified = true;
+        return page != null && !suspended;
+    }
+
+    public void update(PageData pageData) {
+        this.pageData = pageData;
+
+        if (recordChange()) {
+            page.updatePageData(pageData);
+        }
+    }
+
+    /**
+     * Add a sensor to the page
+     *
+     * @param sensorDescriptor Descriptor of the sensor
+     * @return True if graphics were created for the sensor, false if they will be created when the page is next
+     * materialized
+     */
+    public boolean addSensor(SensorDescriptor sensorDescriptor) {
+        sensors.put(sensorDescriptor.getUniqueId(), sensorDescriptor);
+
+        if (recordChange()) {
+            page.addSensor(sensorDescriptor);
+            return true;
+        }
+
+        return false;
+    }
+
+    public boolean removeSensor(byte sensorId) {
+        boolean exists = sensors.remove(sensorId) != null;
+
+        if (recordChange()) {
+            page.removeSensor(sensorId);
+        }
+
+        return exists;
+    }
+
+    public void transformSensor(byte sensorId, byte row, byte column, byte rowSpan, byte columnSpan) {
+        SensorDescriptor sensorDescriptor = sensors.get(sensorId);
+        if (sensorDescriptor != null) {
+            sensorDescriptor.setTransform(row, column, rowSpan, columnSpan);
+        }
+
+        if (recordChange()) {
+            page.transformSensor(sensorId, row, column, rowSpan, columnSpan);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.pages;
+
+import com.bennero.common.Constants;
+import com.bennero.common.PageData;
+import com.bennero.server.data.SensorDescriptor;
+import com.bennero.server.image.BackgroundImageCache;
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * PageSurface draws a whole sensor page on to two canvases, for the SURFACE render mode:
+ * <ul>
+ *     <li>A background layer with the page colour or background image, title and subtitle. It is only drawn again
+ *     when the page data or the size of the page changes.</li>
+ *     <li>A sensor layer that is drawn over the background. When a sensor value changes, only the grid cell of that
+ *     sensor is cleared and painted again, once per pulse however many updates arrived for it.</li>
+ * </ul>
+ * The work done each frame is proportional to the number of sensors that changed, which on a slowly changing page is
+ * close to nothing. Sensors are painted in a simplified form of their skin by a GaugePainter.
+ * <p>
+ * The layout matches the node based page: the page padding, title and subtitle sizes, and the grid padding and gaps.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see CustomisableSensorPage
+ * @see GaugePainter
+ * @since 1.2
+ */
+class PageSurface extends Region {
+    private static final double PAGE_PADDING = 10.0;
+    private static final double GRID_PADDING = 15.0;
+    private static final double GRID_GAP = 10.0;
+    private static final double TITLE_FONT_SIZE = 42.0;
+    private static final double SUBTITLE_FONT_SIZE = 28.0;
+    private static final double LINE_SPACING = 1.3;
+    static final Color ALERT_COLOUR = Color.RED;
+    static final double ALERT_BORDER_WIDTH = 4.0;
+
+    private final PageData pageData;
+    private final BackgroundImageCache backgroundImageCache;
+    private final CellOverlays cellOverlays;
+    private final Canvas backgroundLayer;
+    private final Canvas sensorLayer;
+    private final LinkedHashMap<Byte, Cell> cells;
+    private final ArrayList<Cell> dirtyCells;
+    private final Runnable pulseListener;
+
+    private OccupancyGrid occupancyGrid;
+    private Image backgroundImage;
+    private String backgroundImageName;
+    private double gridTop;
+    private boolean paintScheduled;
+    private boolean paintingBackground;
+
+    PageSurface(PageData pageData, BackgroundImageCache backgroundImageCache, CellOverlays cellOverlays) {
+        this.pageData = pageData;
+        this.backgroundImageCache = backgroundImageCache;
+        this.cellOverlays = cellOverlays;
+        this.backgroundLayer = new Canvas();
+        this.sensorLayer = new Canvas();
+        this.cells = new LinkedHashMap<>();
+        this.dirtyCells = new ArrayList<>();
+        this.occupancyGrid = new OccupancyGrid(pageData.getRows(), pageData.getColumns());
+        this.backgroundImage = null;
+        this.backgroundImageName = "";
+        this.paintScheduled = false;
+        getChildren().addAll(backgroundLayer, sensorLayer);
+
+        // Changed cells are painted at the start of a pulse, before the scene is rendered
+        pulseListener = this::paintDirtyCells;
+        sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (oldScene != null) {
+                oldScene.removePreLayoutPulseListener(pulseListener);
+            }
+
+            if (newScene != null) {
+                newScene.addPreLayoutPulseListener(pulseListener);
+            }
+        });
+    }
+
+    /**
+     * Set the sensors on the page. Sensors that overlap a sensor placed before them are not shown.
+     *
+     * @param sensors Sensors on the page
+     */
+    void setSensors(Collection<SensorDescriptor> sensors) {
+        LinkedHashMap<Byte, Cell> previousCells = new LinkedHashMap<>(cells);
+        cells.clear();
+        dirtyCells.clear();
+        occupancyGrid = new OccupancyGrid(pageData.getRows(), pageData.getColumns());
+
+        for (SensorDescriptor sensorDescriptor : sensors) {
+            byte sensorId = sensorDescriptor.getUniqueId();
+            if (!occupancyGrid.isSpaceTaken(sensorDescriptor.getRow(), sensorDescriptor.getColumn(),
+                    sensorDescriptor.getRowSpan(), sensorDescriptor.getColumnSpan(), sensorId)) {
+                occupancyGrid.place(sensorId, sensorDescriptor.getRow(), sensorDescriptor.getColumn(),
+                        sensorDescriptor.getRowSpan(), sensorDescriptor.getColumnSpan());
+
+                // Keep the value of sensors that were already on the page
+                Cell previous = previousCells.get(sensorId);
+                Cell cell = new Cell(sensorDescriptor, cellOverlays, previous != null ? previous.value :
+                        sensorDescriptor.getInitialValue());
+                cells.put(sensorId, cell);
+            }
+        }
+
+        paintSensors();
+    }
+
+    /**
+     * Set the value of a sensor. The cell of the sensor is painted on the next pulse.
+     *
+     * @param sensorId ID of the sensor
+     * @param value    Value to set
+     * @return True if the sensor is on the page
+     */
+    boolean setSensorValue(byte sensorId, float value) {
+        Cell cell = cells.get(sensorId);
+        if (cell == null) {
+            return false;
+        }
+
+        if (cell.value != value) {
+            cell.value = value;
+            if (!cell.dirty) {
+                cell.dirty = true;
+                dirtyCells.add(cell);
+                schedulePaint();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Show or hide the alert border around the cell of a sensor. The cell is painted on the next pulse.
+     *
+     * @param sensorId ID of the sensor
+     * @param visible  True to show the alert border
+     */
+    void setAlertFlash(byte sensorId, boolean visible) {
+        Cell cell = cells.get(sensorId);
+        if (cell != null && cell.alertFlash != visible) {
+            cell.alertFlash = visible;
+            if (!cell.dirty) {
+                cell.dirty = true;
+                dirtyCells.add(cell);
+                schedulePaint();
+            }
+        }
+    }
+
+    /**
+     * Paint the sensors whose minimum and maximum have changed without their values changing on the next pulse
+     *
+     * @return True if any sensor is to be painted again
+     */
+    boolean repaintCellOverlays() {
+        boolean repaint = false;
+        for (Cell cell : cells.values()) {
+            if (cell.painter.isRollupStale()) {
+                repaint = true;
+                if (!cell.dirty) {
+                    cell.dirty = true;
+                    dirtyCells.add(cell);
+                }
+            }
+        }
+
+        if (repaint) {
+            schedulePaint();
+        }
+
+        return repaint;
+    }
+
+    /**
+     * Paint the whole page again, e.g. after the page data has changed
+     */
+    void invalidate() {
+        paintBackground();
+        paintSensors();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (backgroundLayer.getWidth() != width || backgroundLayer.getHeight() != height) {
+            backgroundLayer.setWidth(width);
+            backgroundLayer.setHeight(height);
+            sensorLayer.setWidth(width);
+            sensorLayer.setHeight(height);
+            invalidate();
+        }
+    }
+
+    private void schedulePaint() {
+        if (!paintScheduled) {
+            paintScheduled = true;
+            Platform.requestNextPulse();
+        }
+    }
+
+    private void paintDirtyCells() {
+        paintScheduled = false;
+        if (dirtyCells.isEmpty()) {
+            return;
+        }
+
+        GraphicsContext gc = sensorLayer.getGraphicsContext2D();
+        for (Cell cell : dirtyCells) {
+            paintCell(gc, cell, true);
+            cell.dirty = false;
+        }
+
+        dirtyCells.clear();
+    }
+
+    private void paintSensors() {
+        GraphicsContext gc = sensorLayer.getGraphicsContext2D();
+        gc.clearRect(0, 0, sensorLayer.getWidth(), sensorLayer.getHeight());
+        for (Cell cell : cells.values()) {
+            paintCell(gc, cell, false);
+            cell.dirty = false;
+        }
+
+        dirtyCells.clear();
+    }
+
+    private void paintCell(GraphicsContext gc, Cell cell, boolean clear) {
+        int rows = Math.max(1, pageData.getRows());
+        int columns = Math.max(1, pageData.getColumns());
+        double left = PAGE_PADDING + GRID_PADDING;
+        double top = gridTop + GRID_PADDING;
+        double cellWidth = (sensorLayer.getWidth() - left * 2.0 - GRID_GAP * (columns - 1)) / columns;
+        double cellHeight = (sensorLayer.getHeight() - top - PAGE_PADDING - GRID_PADDING - GRID_GAP * (rows - 1)) /
+                rows;
+
+        SensorDescriptor sensorDescriptor = cell.sensorDescriptor;
+        double x = snapPositionX(left + sensorDescriptor.getColumn() * (cellWidth + GRID_GAP));
+        double y = snapPositionY(top + sensorDescriptor.getRow() * (cellHeight + GRID_GAP));
+        double width = snapSizeX(cellWidth * sensorDescriptor.getColumnSpan() +
+                GRID_GAP * (sensorDescriptor.getColumnSpan() - 1));
+        double height = snapSizeY(cellHeight * sensorDescriptor.getRowSpan() +
+                GRID_GAP * (sensorDescriptor.getRowSpan() - 1));
+
+        if (clear) {
+            gc.clearRect(x, y, width, height);
+        }
+
+        cell.painter.paint(gc, x, y, width, height, cell.value);
+        if (cell.alertFlash) {
+            gc.setStroke(ALERT_COLOUR);
+            gc.setLineWidth(ALERT_BORDER_WIDTH);
+            gc.strokeRect(x + ALERT_BORDER_WIDTH / 2.0, y + ALERT_BORDER_WIDTH / 2.0, width - ALERT_BORDER_WIDTH,
+                    height - ALERT_BORDER_WIDTH);
+        }
+    }
+
+    private void paintBackground() {
+        double width = backgroundLayer.getWidth();
+        double height = backgroundLayer.getHeight();
+        GraphicsContext gc = backgroundLayer.getGraphicsContext2D();
+
+        gc.setFill(pageData.getColour());
+        gc.fillRect(0, 0, width, height);
+
+        String imageName = pageData.getBackgroundImage();
+        if (imageName != null && !imageName.isEmpty()) {
+            if (imageName.equals(backgroundImageName) && backgroundImage != null) {
+                paintBackgroundImage(gc, backgroundImage, width, height);
+            } else if (!imageName.equals(backgroundImageName)) {
+                backgroundImageName = imageName;
+                backgroundImage = null;
+
+                // The background image may have been changed again whilst this one was loading. A cached image is
+                // given straight away, while the background is still being painted, so it is painted here rather
+                // than painting the whole background again.
+                paintingBackground = true;
+                backgroundImageCache.load(imageName, image -> {
+                    if (imageName.equals(backgroundImageName)) {
+                        backgroundImage = image;
+                        if (!paintingBackground) {
+                            paintBackground();
+                        }
+                    }
+                });
+                paintingBackground = false;
+
+                if (backgroundImage != null) {
+                    paintBackgroundImage(gc, backgroundImage, width, height);
+                }
+            }
+        } else {
+            backgroundImageName = "";
+            backgroundImage = null;
+        }
+
+        gridTop = PAGE_PADDING;
+        if (pageData.isTitleEnabled()) {
+            gridTop = paintHeaderText(gc, pageData.getTitle(), TITLE_FONT_SIZE, pageData.getTitleAlignment(),
+                    pageData.getTitleColour(), gridTop, width);
+        }
+
+        if (pageData.isSubtitleEnabled()) {
+            gridTop = paintHeaderText(gc, pageData.getSubtitle(), SUBTITLE_FONT_SIZE, pageData.getSubtitleAlignment(),
+                    pageData.getSubtitleColour(), gridTop, width);
+        }
+    }
+
+    // Scale the image to cover the page, centred
+    private void paintBackgroundImage(GraphicsContext gc, Image image, double width, double height) {
+        double scale = Math.max(width / image.getWidth(), height / image.getHeight());
+        double imageWidth = image.getWidth() * scale;
+        double imageHeight = image.getHeight() * scale;
+        gc.drawImage(image, (width - imageWidth) / 2.0, (height - imageHeight) / 2.0, imageWidth, imageHeight);
+    }
+
+    private double paintHeaderText(GraphicsContext gc, String text, double fontSize, int alignment,
+                                   Color colour, double top, double width) {
+        double x;
+        switch (alignment) {
+            case Constants.TEXT_ALIGNMENT_LEFT:
+                gc.setTextAlign(TextAlignment.LEFT);
+                x = PAGE_PADDING;
+                break;
+            case Constants.TEXT_ALIGNMENT_RIGHT:
+                gc.setTextAlign(TextAlignment.RIGHT);
+                x = width - PAGE_PADDING;
+                break;
+            default:
+                gc.setTextAlign(TextAlignment.CENTER);
+                x = width / 2.0;
+                break;
+        }
+
+        gc.setTextBaseline(VPos.TOP);
+        gc.setFont(new Font(fontSize));
+        gc.setFill(colour);
+        gc.fillText(text, x, top);
+        return top + fontSize * LINE_SPACING;
+    }
+
+    private static class Cell {
+        private final SensorDescriptor sensorDescriptor;
+        private final GaugePainter painter;
+        private float value;
+        private boolean dirty;
+        private boolean alertFlash;
+
+        private Cell(SensorDescriptor sensorDescriptor, CellOverlays cellOverlays, float value) {
+            this.sensorDescriptor = sensorDescriptor;
+            this.painter = new GaugePainter(sensorDescriptor, cellOverlays);
+            this.value = value;
+            this.dirty = false;
+        }
+    }
+}
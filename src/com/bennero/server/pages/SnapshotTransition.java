@@ -0,0 +1,150 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.pages;
+
+import com.bennero.common.TransitionType;
+import javafx.animation.Transition;
+import javafx.collections.ObservableList;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import javafx.scene.transform.Transform;
+import javafx.stage.Window;
+
+/**
+ * SnapshotTransition transitions between two pages by animating still images of them instead of the live pages. The
+ * outgoing page and the incoming page (at its current values) are captured when the transition starts and only those
+ * two images are animated, so none of the gauges on either page are laid out or repainted during the transition. Once
+ * the transition has finished the live incoming page replaces the images.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see TransitionType
+ * @since 1.2
+ */
+public class SnapshotTransition {
+    private final StackPane container;
+    private final Node incoming;
+    private final ImageView incomingView;
+    private final ImageView outgoingView;
+    private final Transition transition;
+    private boolean finished;
+
+    public SnapshotTransition(StackPane container, Node incoming, Node outgoing, int transitionType,
+                              int transitionTime) {
+        this.container = container;
+        this.incoming = incoming;
+        this.finished = false;
+
+        ObservableList<Node> children = container.getChildren();
+
+        // The incoming page has to be in the scene so that it is styled and laid out like it would be when live. It
+        // goes underneath the outgoing page so it is never seen before the transition starts
+        if (!children.contains(incoming)) {
+            children.add(Math.max(children.indexOf(outgoing), 0), incoming);
+        }
+
+        outgoingView = capture(outgoing);
+        incomingView = capture(incoming);
+
+        // Swap the live pages for their images, the incoming image is placed directly above the outgoing image
+        children.remove(incoming);
+        int outgoingIndex = children.indexOf(outgoing);
+        if (outgoingIndex == -1) {
+            children.add(outgoingView);
+        } else {
+            children.set(outgoingIndex, outgoingView);
+        }
+        children.add(children.indexOf(outgoingView) + 1, incomingView);
+
+        transition = TransitionType.getTransition(transitionType, transitionTime, container, incomingView);
+        transition.setOnFinished(actionEvent -> finish());
+    }
+
+    /**
+     * Capture an image of a node at the resolution that its window renders at, which is lower than the scene size when
+     * the window renders at a fraction of the display resolution
+     *
+     * @param node Node to capture
+     * @return Image of the node
+     */
+    public static Image snapshot(Node node) {
+        Window window = node.getScene() == null ? null : node.getScene().getWindow();
+        if (window == null || window.getRenderScaleX() >= window.getOutputScaleX()) {
+            return node.snapshot(null, null);
+        }
+
+        double scale = window.getRenderScaleX() / window.getOutputScaleX();
+        SnapshotParameters snapshotParameters = new SnapshotParameters();
+        snapshotParameters.setTransform(Transform.scale(scale, scale));
+        return node.snapshot(snapshotParameters, null);
+    }
+
+    // Capture an image of a node, shown at the size of the node
+    private static ImageView capture(Node node) {
+        Bounds bounds = node.getLayoutBounds();
+        ImageView imageView = new ImageView(snapshot(node));
+        imageView.setFitWidth(bounds.getWidth());
+        imageView.setFitHeight(bounds.getHeight());
+        return imageView;
+    }
+
+    public Transition getTransition() {
+        return transition;
+    }
+
+    public void play() {
+        transition.play();
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Finish the transition immediately, replacing the images with the live incoming page. Has no effect if the
+     * transition has already finished.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+        transition.stop();
+
+        ObservableList<Node> children = container.getChildren();
+        children.remove(outgoingView);
+        children.remove(incoming);
+        int incomingIndex = children.indexOf(incomingView);
+        if (incomingIndex == -1) {
+            children.add(incoming);
+        } else {
+            children.set(incomingIndex, incoming);
+        }
+    }
+}
@@ -26,39 +26,115 @@ package com.bennero.server.pages;
 import com.bennero.common.logging.Logger;
 import javafx.animation.FadeTransition;
 import javafx.application.Platform;
-import javafx.scene.control.TextArea;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
 import javafx.util.Duration;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * TerminalOverlay is a developer/debug only class used to show logging information over the top of the hardware
  * monitor interface. It is useful for debugging the application whilst in fullscreen mode or on systems with no OS GUI
+ * <p>
+ * Only the most recent lines are kept (in a fixed size ring buffer) and only the lines that fit on screen have a
+ * label, so the overlay costs the same after hours of logging as it does at start up. Lines logged from any thread are
+ * queued and added together in one update on the JavaFX application thread.
  *
  * @author Christian Benner
  * @version %I%, %G%
  * @since 1.0
  */
-public class TerminalOverlay extends TextArea {
+public class TerminalOverlay extends VBox {
+    private static final int CAPACITY_LINES = 500;
+
+    private final String[] lines;
+    private final ConcurrentLinkedQueue<String> pendingLines;
+    private final AtomicBoolean flushScheduled;
+    private final FadeTransition fadeTransition;
+    private int nextLine;
+    private int lineCount;
+
     public TerminalOverlay() {
         // Create terminal UI
         setId("hw-debug-terminal");
-        setWrapText(true);
         setMouseTransparent(true);
+        setAlignment(Pos.BOTTOM_LEFT);
+        setFillWidth(true);
+
+        lines = new String[CAPACITY_LINES];
+        pendingLines = new ConcurrentLinkedQueue<>();
+        flushScheduled = new AtomicBoolean(false);
+        nextLine = 0;
+        lineCount = 0;
+
+        fadeTransition = new FadeTransition(Duration.seconds(1), this);
+        fadeTransition.setFromValue(1.0);
+        fadeTransition.setToValue(0.3);
+
+        heightProperty().addListener((observable, oldValue, newValue) -> resizeVisibleLines());
 
         Logger.addLogEventHandler(logEvent ->
         {
-            TerminalOverlay ref = this;
-
-            Platform.runLater(() ->
-            {
-                appendText(logEvent.getLogText() + "\n");
-                setScrollTop(0.0);
-                setScrollLeft(0.0);
-
-                FadeTransition transition = new FadeTransition(Duration.seconds(1), ref);
-                transition.setFromValue(1.0);
-                transition.setToValue(0.3);
-                transition.play();
-            });
+            pendingLines.add(logEvent.getLogText());
+
+            // Lines that are logged before the update has run are added by that same update
+            if (flushScheduled.compareAndSet(false, true)) {
+                Platform.runLater(this::flush);
+            }
         });
     }
+
+    private void flush() {
+        flushScheduled.set(false);
+
+        String line;
+        while ((line = pendingLines.poll()) != null) {
+            lines[nextLine] = line;
+            nextLine = (nextLine + 1) % lines.length;
+            lineCount = Math.min(lineCount + 1, lines.length);
+        }
+
+        updateVisibleLines();
+        fadeTransition.playFromStart();
+    }
+
+    private void resizeVisibleLines() {
+        if (getChildren().isEmpty()) {
+            getChildren().add(createLineLabel());
+        }
+
+        Label label = (Label) getChildren().get(0);
+        label.applyCss();
+        double lineHeight = Math.max(1.0, label.prefHeight(-1));
+        double height = getHeight() - getInsets().getTop() - getInsets().getBottom();
+        int visibleLines = Math.max(1, Math.min(lines.length, (int) (height / lineHeight)));
+
+        while (getChildren().size() < visibleLines) {
+            getChildren().add(createLineLabel());
+        }
+
+        if (getChildren().size() > visibleLines) {
+            getChildren().remove(visibleLines, getChildren().size());
+        }
+
+        updateVisibleLines();
+    }
+
+    private void updateVisibleLines() {
+        // The newest line is at the bottom
+        int visibleLines = getChildren().size();
+        for (int i = 0; i < visibleLines; i++) {
+            int age = visibleLines - 1 - i;
+            String text = age < lineCount ? lines[(nextLine - 1 - age + lines.length) % lines.length] : "";
+            ((Label) getChildren().get(i)).setText(text);
+        }
+    }
+
+    private Label createLineLabel() {
+        Label label = new Label();
+        label.setMaxWidth(Double.MAX_VALUE);
+        return label;
+    }
 }
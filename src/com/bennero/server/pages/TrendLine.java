@@ -0,0 +1,115 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+package com.bennero.server.pages;
+
+import com.bennero.server.data.SensorHistory;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * TrendLine paints the recent history of a sensor as a line behind the sensor, for the canvas based render modes. The
+ * line covers all of the values held in the sensor history, downsampled to a fixed number of points. The downsampled
+ * points are kept between paints and only downsampled again once enough new values have been recorded to fill a
+ * point, with the latest value always joined on to the end of the line.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see SensorHistory
+ * @see GaugePainter
+ * @since 1.2
+ */
+class TrendLine {
+    private static final int POINTS = 100;
+
+    private final SensorHistory sensorHistory;
+    private final byte sensorId;
+    private final long recordedPerPoint;
+    private final long[] times;
+    private final float[] values;
+    private int size;
+    private long recordedCount;
+
+    TrendLine(SensorHistory sensorHistory, byte sensorId) {
+        this.sensorHistory = sensorHistory;
+        this.sensorId = sensorId;
+        this.recordedPerPoint = Math.max(1, sensorHistory.getCapacity() / POINTS);
+        this.times = new long[POINTS];
+        this.values = new float[POINTS];
+        this.size = 0;
+        this.recordedCount = -1;
+    }
+
+    /**
+     * Paint the trend into an area of a canvas, with the oldest value on the left and the latest on the right
+     *
+     * @param gc     Graphics context of the canvas
+     * @param x      Left of the area
+     * @param y      Top of the area
+     * @param width  Width of the area
+     * @param height Height of the area
+     * @param max    Value at the top of the area, or 0 to scale to the largest value shown
+     * @param value  Latest value of the sensor
+     * @param colour Colour of the line
+     */
+    void paint(GraphicsContext gc, double x, double y, double width, double height, float max, float value,
+               Color colour) {
+        long recorded = sensorHistory.getRecordedCount(sensorId);
+        if (recordedCount < 0 || recorded - recordedCount >= recordedPerPoint || recorded < recordedCount) {
+            size = sensorHistory.downsample(sensorId, Long.MIN_VALUE, times, values);
+            recordedCount = recorded;
+        }
+
+        if (size < 2 || width <= 0 || height <= 0) {
+            return;
+        }
+
+        final long nowNs = System.nanoTime();
+        final double span = Math.max(1, nowNs - times[0]);
+        float scale = max;
+        if (scale <= 0.0f) {
+            scale = value;
+            for (int i = 0; i < size; i++) {
+                scale = Math.max(scale, values[i]);
+            }
+        }
+
+        if (scale <= 0.0f) {
+            return;
+        }
+
+        gc.setStroke(colour);
+        gc.setLineWidth(1.5);
+        gc.beginPath();
+        for (int i = 0; i < size; i++) {
+            double pointX = x + width * ((times[i] - times[0]) / span);
+            double pointY = y + height - height * Math.max(0.0, Math.min(1.0, values[i] / scale));
+            if (i == 0) {
+                gc.moveTo(pointX, pointY);
+            } else {
+                gc.lineTo(pointX, pointY);
+            }
+        }
+        gc.lineTo(x + width, y + height - height * Math.max(0.0, Math.min(1.0, value / scale)));
+        gc.stroke();
+    }
+}
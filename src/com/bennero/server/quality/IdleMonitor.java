@@ -0,0 +1,111 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.quality;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IdleMonitor detects when nothing meaningful has changed on the display for a while, so that rendering can be
+ * suspended until something does. Activity (a sensor update that visibly changes a sensor on screen, a page change, a
+ * key press) can be recorded from any thread. When there has been no activity for the idle timeout the idle handler is
+ * run, and the next activity after that runs the resume handler straight away. Both handlers run on the JavaFX
+ * application thread. An idle handler that finds the display can not be suspended yet (e.g. a transition is running)
+ * should record activity, which restarts the timeout.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+public class IdleMonitor {
+    // Class name used in logging
+    private static final String CLASS_NAME = IdleMonitor.class.getSimpleName();
+
+    private static final long MIN_CHECK_PERIOD_MS = 100;
+    private static final long MAX_CHECK_PERIOD_MS = 1000;
+
+    private final long idleTimeoutNs;
+    private final Runnable idleHandler;
+    private final Runnable resumeHandler;
+    private final AtomicLong lastActivityNs;
+    private final AtomicBoolean idle;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Create an idle monitor, it does not run until started
+     *
+     * @param idleTimeoutMs Time without activity before the display is idle
+     * @param idleHandler   Run on the JavaFX application thread when the display becomes idle
+     * @param resumeHandler Run on the JavaFX application thread on the first activity after becoming idle
+     */
+    public IdleMonitor(long idleTimeoutMs, Runnable idleHandler, Runnable resumeHandler) {
+        this.idleTimeoutNs = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.idleHandler = idleHandler;
+        this.resumeHandler = resumeHandler;
+        this.lastActivityNs = new AtomicLong(System.nanoTime());
+        this.idle = new AtomicBoolean(false);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, CLASS_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        long checkPeriodMs = Math.max(MIN_CHECK_PERIOD_MS,
+                Math.min(MAX_CHECK_PERIOD_MS, TimeUnit.NANOSECONDS.toMillis(idleTimeoutNs) / 4));
+        recordActivity();
+        scheduler.scheduleWithFixedDelay(this::check, checkPeriodMs, checkPeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isIdle() {
+        return idle.get();
+    }
+
+    /**
+     * Record a meaningful change to the display. Can be called from any thread.
+     */
+    public void recordActivity() {
+        lastActivityNs.set(System.nanoTime());
+        if (idle.get() && idle.compareAndSet(true, false)) {
+            Platform.runLater(resumeHandler);
+        }
+    }
+
+    private void check() {
+        if (!idle.get() && System.nanoTime() - lastActivityNs.get() >= idleTimeoutNs &&
+                idle.compareAndSet(false, true)) {
+            Platform.runLater(idleHandler);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.quality;
+
+import com.bennero.common.logging.LogLevel;
+import com.bennero.common.logging.Logger;
+import com.bennero.server.metrics.SampleWindow;
+import javafx.scene.Scene;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * QualityGovernor adapts the rendering work of the display to what the hardware can keep up with. It measures the CSS
+ * and layout part of each pulse (pre-layout to post-layout pulse listeners, so measuring does not cause any extra
+ * pulses) and once a second compares the 90th percentile against a budget. Animations and rendering are not measured:
+ * timing the start of a pulse takes an AnimationTimer, which would keep pulses running while the display is idle, and
+ * rendering runs on its own thread.
+ * <ul>
+ *     <li>Over budget: the quality level is stepped down, shortening then cutting page transitions and limiting how
+ *     often each sensor is animated. An update that arrives too soon is deferred to the end of the interval, so the
+ *     latest value of a sensor is always shown even if its updates stop.</li>
+ *     <li>Under half of the budget for several evaluations in a row: the quality level is stepped back up</li>
+ * </ul>
+ * The current level can be read from any thread. isUpdateDue(), recordUpdate() and deferUpdate() are called by the
+ * thread that receives sensor updates, the other methods must be called on the JavaFX application thread.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see QualityLevel
+ * @since 1.2
+ */
+public class QualityGovernor {
+    // Class name used in logging
+    private static final String CLASS_NAME = QualityGovernor.class.getSimpleName();
+
+    private static final int NUM_SENSOR_IDS = 256;
+    private static final int SAMPLE_CAPACITY = 240;
+    private static final long EVALUATION_INTERVAL_NS = 1_000_000_000L;
+    private static final int MIN_SAMPLES = 10;
+    private static final double BUDGET_PERCENTILE = 90.0;
+    private static final double HEADROOM_FRACTION = 0.5;
+    private static final int HEADROOM_EVALUATIONS = 5;
+
+    private final long budgetNs;
+    private final SampleWindow layoutDurations;
+    private final AtomicLongArray lastUpdateNs;
+    private final AtomicIntegerArray deferredUpdates;
+    private final ScheduledExecutorService deferredUpdateScheduler;
+    private final Runnable preLayoutPulseListener;
+    private final Runnable postLayoutPulseListener;
+    private volatile QualityLevel qualityLevel;
+    private Scene scene;
+    private long layoutStartNs;
+    private long lastEvaluationNs;
+    private int headroomEvaluations;
+
+    /**
+     * Create a quality governor, it does not change the quality level until attached to a scene
+     *
+     * @param budgetMs Time that the CSS and layout of a pulse should fit into
+     */
+    public QualityGovernor(double budgetMs) {
+        this.budgetNs = (long) (budgetMs * 1_000_000.0);
+        this.layoutDurations = new SampleWindow(SAMPLE_CAPACITY);
+        this.lastUpdateNs = new AtomicLongArray(NUM_SENSOR_IDS);
+        this.deferredUpdates = new AtomicIntegerArray(NUM_SENSOR_IDS);
+        this.deferredUpdateScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, CLASS_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.qualityLevel = QualityLevel.FULL;
+
+        preLayoutPulseListener = () -> layoutStartNs = System.nanoTime();
+        postLayoutPulseListener = () -> {
+            long nowNs = System.nanoTime();
+            layoutDurations.add(nowNs - layoutStartNs);
+            if (nowNs - lastEvaluationNs >= EVALUATION_INTERVAL_NS) {
+                evaluate();
+                lastEvaluationNs = nowNs;
+            }
+        };
+    }
+
+    public void attach(Scene scene) {
+        detach();
+        this.scene = scene;
+        lastEvaluationNs = System.nanoTime();
+        scene.addPreLayoutPulseListener(preLayoutPulseListener);
+        scene.addPostLayoutPulseListener(postLayoutPulseListener);
+    }
+
+    public void detach() {
+        if (scene != null) {
+            scene.removePreLayoutPulseListener(preLayoutPulseListener);
+            scene.removePostLayoutPulseListener(postLayoutPulseListener);
+            scene = null;
+            layoutDurations.reset();
+            headroomEvaluations = 0;
+            setQualityLevel(QualityLevel.FULL);
+        }
+    }
+
+    public QualityLevel getQualityLevel() {
+        return qualityLevel;
+    }
+
+    /**
+     * Check if an update to a sensor can be shown at the current quality level, limiting how often each sensor is
+     * animated. This does not use up the update, recordUpdate() should be called once the update is passed on.
+     *
+     * @param sensorId ID of the sensor
+     * @return True if the update can be shown
+     */
+    public boolean isUpdateDue(byte sensorId) {
+        final long minIntervalMs = qualityLevel.getMinUpdateIntervalMs();
+        if (minIntervalMs == 0) {
+            return true;
+        }
+
+        final long lastNs = lastUpdateNs.get(sensorId & 0xFF);
+        return lastNs == 0 || System.nanoTime() - lastNs >= minIntervalMs * 1_000_000L;
+    }
+
+    /**
+     * Record that an update to a sensor has been passed on to be shown, starting its next update interval
+     *
+     * @param sensorId ID of the sensor
+     */
+    public void recordUpdate(byte sensorId) {
+        lastUpdateNs.set(sensorId & 0xFF, System.nanoTime());
+    }
+
+    /**
+     * Defer an update that is not due yet to the end of the update interval of its sensor. Only one update is deferred
+     * for each sensor at a time, so the flush should show the latest value of the sensor rather than the value at the
+     * time it was deferred, read on the thread that applies it so that it can not overwrite a newer update.
+     *
+     * @param sensorId ID of the sensor
+     * @param flush    Run from the scheduler thread at the end of the update interval
+     */
+    public void deferUpdate(byte sensorId, Runnable flush) {
+        final int index = sensorId & 0xFF;
+        if (!deferredUpdates.compareAndSet(index, 0, 1)) {
+            return;
+        }
+
+        final long dueNs = lastUpdateNs.get(index) + qualityLevel.getMinUpdateIntervalMs() * 1_000_000L;
+        deferredUpdateScheduler.schedule(() -> {
+            deferredUpdates.set(index, 0);
+            flush.run();
+        }, Math.max(0, dueNs - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private void evaluate() {
+        if (layoutDurations.getSize() < MIN_SAMPLES) {
+            return;
+        }
+
+        long layoutNs = layoutDurations.getPercentile(BUDGET_PERCENTILE);
+        layoutDurations.reset();
+
+        if (layoutNs > budgetNs) {
+            headroomEvaluations = 0;
+            setQualityLevel(qualityLevel.lower());
+        } else if (layoutNs < budgetNs * HEADROOM_FRACTION) {
+            headroomEvaluations++;
+            if (headroomEvaluations >= HEADROOM_EVALUATIONS) {
+                headroomEvaluations = 0;
+                setQualityLevel(qualityLevel.higher());
+            }
+        } else {
+            headroomEvaluations = 0;
+        }
+    }
+
+    private void setQualityLevel(QualityLevel qualityLevel) {
+        if (this.qualityLevel != qualityLevel) {
+            Logger.logf(LogLevel.INFO, CLASS_NAME, "Render quality changed from %s to %s", this.qualityLevel,
+                    qualityLevel);
+            this.qualityLevel = qualityLevel;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.quality;
+
+/**
+ * QualityLevel defines how much rendering work the display does. Lower levels trade smoothness for a lighter load on
+ * the JavaFX application thread, and are stepped through by the QualityGovernor when pulses run over budget.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see QualityGovernor
+ * @since 1.2
+ */
+public enum QualityLevel {
+    // Page transitions as configured, every sensor update is shown
+    FULL(1.0, true, 0),
+
+    // Page transitions run in half of their time, each sensor is animated at most ten times a second
+    REDUCED(0.5, true, 100),
+
+    // Pages cut instead of transitioning, each sensor is animated at most four times a second
+    LOW(0.0, false, 250),
+
+    // Pages cut instead of transitioning, each sensor is animated at most once a second
+    MINIMAL(0.0, false, 1000);
+
+    private final double transitionTimeScale;
+    private final boolean transitionsAnimated;
+    private final long minUpdateIntervalMs;
+
+    QualityLevel(double transitionTimeScale, boolean transitionsAnimated, long minUpdateIntervalMs) {
+        this.transitionTimeScale = transitionTimeScale;
+        this.transitionsAnimated = transitionsAnimated;
+        this.minUpdateIntervalMs = minUpdateIntervalMs;
+    }
+
+    public double getTransitionTimeScale() {
+        return transitionTimeScale;
+    }
+
+    public boolean isTransitionsAnimated() {
+        return transitionsAnimated;
+    }
+
+    /**
+     * @return The shortest time between the updates shown for a sensor, 0 if every update is shown
+     */
+    public long getMinUpdateIntervalMs() {
+        return minUpdateIntervalMs;
+    }
+
+    public QualityLevel lower() {
+        return this == MINIMAL ? MINIMAL : values()[ordinal() + 1];
+    }
+
+    public QualityLevel higher() {
+        return this == FULL ? FULL : values()[ordinal() - 1];
+    }
+}
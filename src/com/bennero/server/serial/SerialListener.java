@@ -31,6 +31,7 @@ public class SerialListener {
     private EventHandler<RemovePageEvent> removePageMessageReceived;
     private EventHandler<RemoveSensorEvent> removeSensorMessageReceived;
     private EventHandler<SensorTransformationEvent> sensorTransformationMessageReceived;
+    private EventHandler<LayoutTransactionEvent> layoutTransactionMessageReceived;
     private EventHandler<FileTransferEvent> fileTransferEventHandler;
 
     public SerialListener(String port,
@@ -41,6 +42,7 @@ public class SerialListener {
                           EventHandler<SensorDataEvent> sensorDataMessageReceived,
                           EventHandler<RemoveSensorEvent> removeSensorMessageReceived,
                           EventHandler<SensorTransformationEvent> sensorTransformationMessageReceived,
+                          EventHandler<LayoutTransactionEvent> layoutTransactionMessageReceived,
                           EventHandler<FileTransferEvent> fileTransferEventHandler) {
         this.port = port;
         this.disconnectedEvent = disconnectedEvent;
@@ -50,6 +52,7 @@ public class SerialListener {
         this.sensorDataMessageReceived = sensorDataMessageReceived;
         this.removeSensorMessageReceived = removeSensorMessageReceived;
         this.sensorTransformationMessageReceived = sensorTransformationMessageReceived;
+        this.layoutTransactionMessageReceived = layoutTransactionMessageReceived;
         this.fileTransferEventHandler = fileTransferEventHandler;
         this.connectedUUID = null;
 
@@ -146,6 +149,10 @@ public class SerialListener {
             case MessageType.SENSOR_TRANSFORM:
                 sensorTransformationMessageReceived.handle(new SensorTransformationEvent(new SensorTransformationMessage(bytes)));
                 break;
+            case LayoutTransactionEvent.LAYOUT_BEGIN:
+            case LayoutTransactionEvent.LAYOUT_COMMIT:
+                layoutTransactionMessageReceived.handle(new LayoutTransactionEvent(type));
+                break;
             case MessageType.CONNECTION_REQUEST:
          //       handleConnectionRequest(processConnectionRequestMessageData(bytes));
                 break;
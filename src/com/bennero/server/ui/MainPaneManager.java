@@ -0,0 +1,240 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.ui;
+
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.layout.StackPane;
+
+/**
+ * MainPaneManager controls which nodes are attached to the main pane of the application so that the scene graph does
+ * not grow on a display that runs for days. Overlay controls (such as the disconnect button) are created once and
+ * re-used, always sitting above the content. At most two pages are ever attached and shown: the current page and the
+ * page that it is transitioning from. A third page, the next page to be shown, may be attached underneath them while
+ * it is prewarmed. Node counts are exposed so that growth can be monitored.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+public class MainPaneManager {
+    private final StackPane mainPane;
+    private final DisconnectButton disconnectButton;
+    private Node currentPage;
+    private Node prewarmedPage;
+
+    public MainPaneManager(StackPane mainPane, EventHandler<ActionEvent> disconnectEventHandler) {
+        this.mainPane = mainPane;
+        this.currentPage = null;
+
+        // Disconnect button in the top left corner that is toggled with the escape key
+        disconnectButton = new DisconnectButton(disconnectEventHandler);
+        disconnectButton.setVisible(false);
+        StackPane.setMargin(disconnectButton, new Insets(5, 5, 5, 5));
+        StackPane.setAlignment(disconnectButton, Pos.TOP_LEFT);
+    }
+
+    public DisconnectButton getDisconnectButton() {
+        return disconnectButton;
+    }
+
+    public boolean isDisconnectButtonAttached() {
+        return disconnectButton.getParent() == mainPane;
+    }
+
+    /**
+     * Replace everything on the main pane with a single node
+     *
+     * @param content             Node to show
+     * @param showDisconnectButton If the disconnect button overlay should be available on top of the content
+     */
+    public void setContent(Node content, boolean showDisconnectButton) {
+        currentPage = null;
+        prewarmedPage = null;
+        mainPane.getChildren().clear();
+        if (content != null) {
+            mainPane.getChildren().add(content);
+        }
+
+        if (showDisconnectButton) {
+            disconnectButton.setVisible(false);
+            mainPane.getChildren().add(disconnectButton);
+        }
+    }
+
+    public void setContent(Node content) {
+        setContent(content, false);
+    }
+
+    /**
+     * Attach a page as the current page, on top of the previous current page (which may be transitioning away) and
+     * below the overlays. Any other page that is still attached is removed. If the page is already attached (e.g. it
+     * has been prewarmed) it is moved to the top without leaving the scene, so its styling and layout are kept.
+     *
+     * @param page Page to attach
+     */
+    public void attachPage(Node page) {
+        ObservableList<Node> children = mainPane.getChildren();
+
+        // Keep only the page that is currently on top, it is the one that the new page transitions from
+        children.removeIf(node -> node != currentPage && node != page && !isOverlay(node));
+        if (page != currentPage) {
+            if (page.getParent() == mainPane) {
+                page.toFront();
+                if (isDisconnectButtonAttached()) {
+                    disconnectButton.toFront();
+                }
+            } else {
+                int index = isDisconnectButtonAttached() ? children.indexOf(disconnectButton) : children.size();
+                children.add(index, page);
+            }
+        }
+
+        currentPage = page;
+        prewarmedPage = null;
+
+        // The disconnect button is always available once pages are being shown
+        if (!isDisconnectButtonAttached()) {
+            disconnectButton.setVisible(false);
+            children.add(disconnectButton);
+        }
+    }
+
+    /**
+     * Attach a page underneath every other node so that it is styled and laid out in the scene before it is shown,
+     * without being seen. Replaces any page that was previously prewarmed.
+     *
+     * @param page Page to prewarm
+     */
+    public void prewarmPage(Node page) {
+        if (page == currentPage || page == prewarmedPage || page.getParent() == mainPane) {
+            return;
+        }
+
+        if (prewarmedPage != null) {
+            mainPane.getChildren().remove(prewarmedPage);
+        }
+
+        prewarmedPage = page;
+        mainPane.getChildren().add(0, page);
+    }
+
+    /**
+     * Detach a page from the main pane, unless it is the current page (e.g. it has been shown again before its
+     * transition away from the screen finished)
+     *
+     * @param page Page to detach
+     */
+    public void detachPage(Node page) {
+        if (page != currentPage) {
+            mainPane.getChildren().remove(page);
+        }
+    }
+
+    /**
+     * Replace an attached page with another in the same position (e.g. with a rebuilt version of the page)
+     *
+     * @param oldPage Page to replace
+     * @param newPage Page to replace it with
+     */
+    public void replacePage(Node oldPage, Node newPage) {
+        ObservableList<Node> children = mainPane.getChildren();
+        int index = children.indexOf(oldPage);
+        if (index != -1) {
+            children.set(index, newPage);
+            if (oldPage == currentPage) {
+                currentPage = newPage;
+            } else if (oldPage == prewarmedPage) {
+                prewarmedPage = newPage;
+            }
+        }
+    }
+
+    /**
+     * Remove a page from the main pane, even if it is the current page
+     *
+     * @param page Page to remove
+     */
+    public void removePage(Node page) {
+        if (page == currentPage) {
+            currentPage = null;
+        } else if (page == prewarmedPage) {
+            prewarmedPage = null;
+        }
+
+        mainPane.getChildren().remove(page);
+    }
+
+    public Node getCurrentPage() {
+        return currentPage;
+    }
+
+    public int getChildCount() {
+        return mainPane.getChildren().size();
+    }
+
+    /**
+     * @return Number of pages attached to be shown, not including a page that is being prewarmed
+     */
+    public int getAttachedPageCount() {
+        int count = 0;
+        for (Node node : mainPane.getChildren()) {
+            if (!isOverlay(node) && node != prewarmedPage) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Count every node in the main pane (including the main pane itself). This visits the whole scene graph so should
+     * only be used for monitoring.
+     *
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return countNodes(mainPane);
+    }
+
+    private boolean isOverlay(Node node) {
+        return node == disconnectButton;
+    }
+
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+
+        return count;
+    }
+}
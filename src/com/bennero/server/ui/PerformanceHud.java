@@ -0,0 +1,254 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.ui;
+
+import com.bennero.common.messages.MessageType;
+import com.bennero.server.event.LayoutTransactionEvent;
+import com.bennero.server.metrics.IngestMetrics;
+import com.bennero.server.metrics.RenderMetrics;
+import com.bennero.server.quality.QualityGovernor;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * PerformanceHud is an overlay that shows whether the display is keeping up, so that it can be seen at a glance if a
+ * slow display is limited by the network, by processing received messages (ingest) or by rendering. It shows:
+ * <ul>
+ *     <li>Render: frames per second, the worst pulse duration and the render quality level</li>
+ *     <li>Ingest: messages received per second by message type</li>
+ *     <li>FX queue: work waiting for the JavaFX application thread, and sensor updates conflated, filtered or
+ *     dropped per second</li>
+ *     <li>Memory: heap use and time spent in garbage collection</li>
+ * </ul>
+ * The HUD only measures while it is showing, so it costs nothing when hidden.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RenderMetrics
+ * @see IngestMetrics
+ * @since 1.2
+ */
+public class PerformanceHud extends VBox {
+    private static final Duration REFRESH_PERIOD = Duration.millis(500);
+    private static final int SPARKLINE_VALUES = 60;
+    private static final double SPARKLINE_WIDTH = 120;
+    private static final double SPARKLINE_HEIGHT = 16;
+    private static final int MESSAGE_TYPES = 256;
+
+    private final IngestMetrics ingestMetrics;
+    private final QualityGovernor qualityGovernor;
+    private final RenderMetrics renderMetrics;
+    private final Timeline refreshTimeline;
+    private final List<GarbageCollectorMXBean> garbageCollectors;
+
+    private final Label renderLabel;
+    private final Label ingestLabel;
+    private final Label queueLabel;
+    private final Label memoryLabel;
+    private final Sparkline fpsSparkline;
+    private final Sparkline pulseSparkline;
+    private final Sparkline ingestSparkline;
+    private final Sparkline heapSparkline;
+
+    private final long[] lastMessageCounts;
+    private long lastConflatedUpdates;
+    private long lastDroppedUpdates;
+    private long lastFilteredUpdates;
+    private long lastGcCount;
+    private long lastGcTimeMs;
+    private long lastRefreshNs;
+
+    public PerformanceHud(IngestMetrics ingestMetrics, QualityGovernor qualityGovernor) {
+        this.ingestMetrics = ingestMetrics;
+        this.qualityGovernor = qualityGovernor;
+        this.renderMetrics = new RenderMetrics(SPARKLINE_VALUES * 4);
+        this.garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+        this.lastMessageCounts = new long[MESSAGE_TYPES];
+
+        setId("hw-performance-hud");
+        setMouseTransparent(true);
+        setMaxSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        StackPane.setAlignment(this, Pos.TOP_LEFT);
+
+        renderLabel = new Label();
+        ingestLabel = new Label();
+        queueLabel = new Label();
+        memoryLabel = new Label();
+        fpsSparkline = new Sparkline(SPARKLINE_WIDTH, SPARKLINE_HEIGHT, SPARKLINE_VALUES, 60.0, Color.LIME);
+        pulseSparkline = new Sparkline(SPARKLINE_WIDTH, SPARKLINE_HEIGHT, SPARKLINE_VALUES, 16.7, Color.ORANGE);
+        ingestSparkline = new Sparkline(SPARKLINE_WIDTH, SPARKLINE_HEIGHT, SPARKLINE_VALUES, 10.0, Color.DEEPSKYBLUE);
+        heapSparkline = new Sparkline(SPARKLINE_WIDTH, SPARKLINE_HEIGHT, SPARKLINE_VALUES, 1.0, Color.VIOLET);
+
+        getChildren().addAll(renderLabel, new HBox(4, fpsSparkline, pulseSparkline), ingestLabel, ingestSparkline,
+                queueLabel, memoryLabel, heapSparkline);
+
+        refreshTimeline = new Timeline(new KeyFrame(REFRESH_PERIOD, event -> refresh()));
+        refreshTimeline.setCycleCount(Animation.INDEFINITE);
+
+        setVisible(false);
+    }
+
+    public boolean isShowing() {
+        return isVisible();
+    }
+
+    /**
+     * Show or hide the HUD. It must be in a scene before it can be shown.
+     *
+     * @param showing True to show the HUD
+     */
+    public void setShowing(boolean showing) {
+        if (showing == isVisible() || (showing && getScene() == null)) {
+            return;
+        }
+
+        setVisible(showing);
+        if (showing) {
+            startMeasuring();
+        } else {
+            refreshTimeline.stop();
+            renderMetrics.detach();
+        }
+    }
+
+    public void toggle() {
+        setShowing(!isVisible());
+    }
+
+    private void startMeasuring() {
+        renderMetrics.reset();
+        renderMetrics.attach(getScene());
+
+        for (int i = 0; i < MESSAGE_TYPES; i++) {
+            lastMessageCounts[i] = ingestMetrics.getMessageCount((byte) i);
+        }
+
+        lastConflatedUpdates = ingestMetrics.getConflatedUpdates();
+        lastDroppedUpdates = ingestMetrics.getDroppedUpdates();
+        lastFilteredUpdates = ingestMetrics.getFilteredUpdates();
+        lastGcCount = getGcCount();
+        lastGcTimeMs = getGcTimeMs();
+        lastRefreshNs = System.nanoTime();
+
+        fpsSparkline.clear();
+        pulseSparkline.clear();
+        ingestSparkline.clear();
+        heapSparkline.clear();
+        refreshTimeline.play();
+    }
+
+    private void refresh() {
+        long nowNs = System.nanoTime();
+        double seconds = Math.max(0.001, (nowNs - lastRefreshNs) / 1_000_000_000.0);
+        lastRefreshNs = nowNs;
+
+        // Render
+        double fps = renderMetrics.getFramesPerSecond();
+        double worstPulseMs = renderMetrics.getPulseDurations().getMax() / 1_000_000.0;
+        renderMetrics.reset();
+        renderLabel.setText(String.format("FPS %.1f  worst pulse %.1fms  quality %s", fps, worstPulseMs,
+                qualityGovernor.getQualityLevel()));
+        fpsSparkline.add(fps);
+        pulseSparkline.add(worstPulseMs);
+
+        // Ingest
+        StringBuilder ingest = new StringBuilder("Ingest/s");
+        double totalMessagesPerSecond = 0.0;
+        for (int i = 0; i < MESSAGE_TYPES; i++) {
+            long count = ingestMetrics.getMessageCount((byte) i);
+            long received = count - lastMessageCounts[i];
+            lastMessageCounts[i] = count;
+            if (received > 0) {
+                double perSecond = received / seconds;
+                totalMessagesPerSecond += perSecond;
+                ingest.append(String.format("  %s %.0f", getMessageTypeName((byte) i), perSecond));
+            }
+        }
+        ingestLabel.setText(ingest.toString());
+        ingestSparkline.add(totalMessagesPerSecond);
+
+        // FX queue
+        long conflatedUpdates = ingestMetrics.getConflatedUpdates();
+        long droppedUpdates = ingestMetrics.getDroppedUpdates();
+        long filteredUpdates = ingestMetrics.getFilteredUpdates();
+        queueLabel.setText(String.format("FX queue %d  conflated/s %.0f  filtered/s %.0f  dropped/s %.0f",
+                ingestMetrics.getFxQueueDepth(), (conflatedUpdates - lastConflatedUpdates) / seconds,
+                (filteredUpdates - lastFilteredUpdates) / seconds, (droppedUpdates - lastDroppedUpdates) / seconds));
+        lastConflatedUpdates = conflatedUpdates;
+        lastDroppedUpdates = droppedUpdates;
+        lastFilteredUpdates = filteredUpdates;
+
+        // Memory
+        Runtime runtime = Runtime.getRuntime();
+        long usedBytes = runtime.totalMemory() - runtime.freeMemory();
+        long gcCount = getGcCount();
+        long gcTimeMs = getGcTimeMs();
+        memoryLabel.setText(String.format("Heap %dMB/%dMB  GC %d (%dms)", usedBytes / (1024 * 1024),
+                runtime.maxMemory() / (1024 * 1024), gcCount - lastGcCount, gcTimeMs - lastGcTimeMs));
+        heapSparkline.add(usedBytes / (1024.0 * 1024.0));
+        lastGcCount = gcCount;
+        lastGcTimeMs = gcTimeMs;
+    }
+
+    private long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean garbageCollector : garbageCollectors) {
+            count += Math.max(0, garbageCollector.getCollectionCount());
+        }
+
+        return count;
+    }
+
+    private long getGcTimeMs() {
+        long timeMs = 0;
+        for (GarbageCollectorMXBean garbageCollector : garbageCollectors) {
+            timeMs += Math.max(0, garbageCollector.getCollectionTime());
+        }
+
+        return timeMs;
+    }
+
+    private static String getMessageTypeName(byte messageType) {
+        switch (messageType) {
+            case LayoutTransactionEvent.LAYOUT_BEGIN:
+                return "LAYOUT_BEGIN";
+            case LayoutTransactionEvent.LAYOUT_COMMIT:
+                return "LAYOUT_COMMIT";
+            default:
+                return MessageType.asString(messageType);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * ============================================ GNU GENERAL PUBLIC LICENSE =============================================
+ * Hardware Monitor for the remote monitoring of a systems hardware information
+ * Copyright (C) 2021  Christian Benner
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Additional terms included with this license are to:
+ * - Preserve legal notices and author attributions such as this one. Do not remove the original author license notices
+ *   from the program
+ * - Preserve the donation button and its link to the original authors donation page (christianbenner35@gmail.com)
+ * - Only break the terms if given permission from the original author christianbenner35@gmail.com
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ * =====================================================================================================================
+ */
+
+package com.bennero.server.ui;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Sparkline is a small line graph of the most recent values of a measurement. Values are kept in a fixed size ring
+ * buffer and the line is scaled to the largest value shown (or a minimum scale), so it has no axes or labels.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.2
+ */
+public class Sparkline extends Canvas {
+    private final double[] values;
+    private final double minimumScale;
+    private final Color colour;
+    private int next;
+    private int size;
+
+    /**
+     * Create a sparkline
+     *
+     * @param width        Width in pixels
+     * @param height       Height in pixels
+     * @param capacity     Number of values shown
+     * @param minimumScale Value that the top of the sparkline represents when all values are smaller than it
+     * @param colour       Colour of the line
+     */
+    public Sparkline(double width, double height, int capacity, double minimumScale, Color colour) {
+        super(width, height);
+        this.values = new double[capacity];
+        this.minimumScale = minimumScale;
+        this.colour = colour;
+        this.next = 0;
+        this.size = 0;
+    }
+
+    public void add(double value) {
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (size < values.length) {
+            size++;
+        }
+
+        draw();
+    }
+
+    public void clear() {
+        next = 0;
+        size = 0;
+        draw();
+    }
+
+    private void draw() {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, getWidth(), getHeight());
+        if (size < 2) {
+            return;
+        }
+
+        double scale = minimumScale;
+        for (int i = 0; i < size; i++) {
+            scale = Math.max(scale, values[i]);
+        }
+
+        // Oldest value on the left, the newest on the right
+        double step = getWidth() / (values.length - 1);
+        double startX = getWidth() - (size - 1) * step;
+        gc.setStroke(colour);
+        gc.setLineWidth(1.0);
+        gc.beginPath();
+        for (int i = 0; i < size; i++) {
+            double value = values[(next - size + i + values.length) % values.length];
+            double x = startX + i * step;
+            double y = getHeight() - 1 - (value / scale) * (getHeight() - 2);
+            if (i == 0) {
+                gc.moveTo(x, y);
+            } else {
+                gc.lineTo(x, y);
+            }
+        }
+        gc.stroke();
+    }
+}
@@ -34,6 +34,7 @@ module HardwareMonitor
     requires javafx.base;
     requires javafx.graphics;
     requires javafx.web;
+    requires java.management;
     requires com.fazecast.jSerialComm;
     requires HardwareMonitorCommon;
 }
\ No newline at end of file